@@ -57,6 +57,11 @@ public class OneVsAllDecoder extends AbstractMultiDecoder
 		m_model = model;
 	}
 	
+	public OneVsAllModel getModel()
+	{
+		return m_model;
+	}
+	
 	public JIntDoubleTuple predict(int[] x)
 	{
 		return predictAux(m_model.getScores(x));
@@ -80,8 +80,15 @@ public class DepNode
 	
 	/** Initializes the node as a null node. */
 	public DepNode()
+	{
+		reset();
+	}
+	
+	/** Reinitializes the node as a null node so that it can be reused. */
+	public void reset()
 	{
 		init(DepLib.NULL_ID, FtrLib.TAG_NULL, FtrLib.TAG_NULL, FtrLib.TAG_NULL, null, DepLib.NULL_HEAD_ID, FtrLib.TAG_NULL, 0, false, null, null, null, null, null, null, false, null, null);
+		pbLoc = null;
 	}
 	
 //	==================================== Construct ====================================
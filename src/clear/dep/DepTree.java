@@ -49,6 +49,8 @@ public class DepTree extends ArrayList<DepNode> implements ITree<DepNode>
 	public int    n_trans;
 	/** Global score excluding scores from nodes (e.g. SHIFT scores) */
 	public double d_score;
+	/** Nodes removed by {@link DepTree#reset()} to be reused */
+	private ArrayList<DepNode> a_spare;
 	
 	/**
 	 * Initializes the dependency tree.
@@ -76,6 +78,34 @@ public class DepTree extends ArrayList<DepNode> implements ITree<DepNode>
 		d_score = score;
 	}
 	
+	/**
+	 * Removes all nodes except for the root so that the tree can be reused.
+	 * The removed nodes are kept and returned by {@link DepTree#nextNode()}.
+	 */
+	public void reset()
+	{
+		int i, size = size();
+		
+		if (a_spare == null)	a_spare = new ArrayList<DepNode>(size);
+		for (i=size-1; i>0; i--)	a_spare.add(remove(i));
+		
+		get(DepLib.ROOT_ID).reset();
+		get(DepLib.ROOT_ID).toRoot();
+		init(0, 0d);
+	}
+	
+	/** @return a node removed by {@link DepTree#reset()}, reinitialized as a null node; or a new node if there is none. */
+	public DepNode nextNode()
+	{
+		if (a_spare == null || a_spare.isEmpty())
+			return new DepNode();
+		
+		DepNode node = a_spare.remove(a_spare.size()-1);
+		node.reset();
+		
+		return node;
+	}
+	
 	public void copy(DepTree tree)
 	{
 		for (int i=1; i<size(); i++)
@@ -23,6 +23,7 @@
 */
 package clear.engine;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -39,11 +40,14 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
+import clear.decode.AbstractMultiDecoder;
 import clear.decode.OneVsAllDecoder;
 import clear.ftr.map.DepFtrMap;
+import clear.ftr.map.DepHashFtrMap;
 import clear.ftr.map.SRLFtrMap;
 import clear.ftr.xml.DepFtrXml;
 import clear.ftr.xml.SRLFtrXml;
+import clear.model.OneVsAllModel;
 import clear.parse.AbstractDepParser;
 import clear.parse.AbstractSRLParser;
 import clear.parse.SRLParser;
@@ -89,16 +93,9 @@ abstract public class AbstractCommon
 	
 	public void init()
 	{
-		DocumentBuilderFactory dFactory = DocumentBuilderFactory.newInstance();
-		
 		try
 		{
-			DocumentBuilder builder = dFactory.newDocumentBuilder();
-			Document        doc     = builder.parse(new File(s_configFile));
-			
-			e_config = doc.getDocumentElement();
-			initCommonElements();
-			initElements();
+			initConfig();
 		}
 		catch (Exception e)
 		{
@@ -107,6 +104,18 @@ abstract public class AbstractCommon
 		}
 	}
 	
+	/** Reads {@link AbstractCommon#s_configFile}; unlike {@link AbstractCommon#init()}, errors are thrown to the caller. */
+	protected void initConfig() throws Exception
+	{
+		DocumentBuilderFactory dFactory = DocumentBuilderFactory.newInstance();
+		DocumentBuilder        builder  = dFactory.newDocumentBuilder();
+		Document               doc      = builder.parse(new File(s_configFile));
+		
+		e_config = doc.getDocumentElement();
+		initCommonElements();
+		initElements();
+	}
+	
 	/** Initializes <common> elements. */	
 	protected void initCommonElements()
 	{
@@ -160,12 +169,13 @@ abstract public class AbstractCommon
 			else if (zEntry.getName().equals(ENTRY_LEXICA))
 			{
 				System.out.println("- loading lexica");
-				map = new DepFtrMap(new BufferedReader(new InputStreamReader(zin)));
+				BufferedReader reader = new BufferedReader(new InputStreamReader(zin));
+				map = DepHashFtrMap.isHashed(reader) ? new DepHashFtrMap(reader) : new DepFtrMap(reader);
 			}
 			else if (zEntry.getName().equals(ENTRY_MODEL))
 			{
 				System.out.println("- loading model");
-				decoder = new OneVsAllDecoder(new BufferedReader(new InputStreamReader(zin)));
+				decoder = new OneVsAllDecoder(new OneVsAllModel(new BufferedInputStream(zin)));
 			}
 			else if (zEntry.getName().equals(ENTRY_PARSER))
 			{
@@ -174,6 +184,13 @@ abstract public class AbstractCommon
 			}
 		}
 		
+		zin.close();
+		return getDepParser(algorithm, xml, map, decoder);
+	}
+	
+	/** @return a new predicting parser of <code>algorithm</code> sharing <code>xml</code>, <code>map</code> and <code>decoder</code>. */
+	static protected AbstractDepParser getDepParser(String algorithm, DepFtrXml xml, DepFtrMap map, AbstractMultiDecoder decoder)
+	{
 		if      (algorithm.equals(AbstractDepParser.ALG_SHIFT_EAGER))
 			return new ShiftEagerParser(AbstractDepParser.FLAG_PREDICT, xml, map, decoder);
 		else if (algorithm.equals(AbstractDepParser.ALG_SHIFT_POP))
@@ -219,7 +236,7 @@ abstract public class AbstractCommon
 			{
 				int i = Integer.parseInt(entry.substring(entry.lastIndexOf(".")+1));
 				System.out.println("- loading model");
-				decoder[i] = new OneVsAllDecoder(new BufferedReader(new InputStreamReader(zin)));
+				decoder[i] = new OneVsAllDecoder(new OneVsAllModel(new BufferedInputStream(zin)));
 			}
 		}
 		
@@ -32,18 +32,23 @@ import org.kohsuke.args4j.Option;
 import org.w3c.dom.Element;
 
 import clear.model.AbstractModel;
+import clear.model.OneVsAllModel;
 import clear.train.AbstractTrainer;
 import clear.train.BinaryTrainer;
+import clear.train.MulticlassTrainer;
 import clear.train.OneVsAllTrainer;
+import clear.train.algorithm.AveragedPerceptron;
 import clear.train.algorithm.IAlgorithm;
+import clear.train.algorithm.IMultiAlgorithm;
+import clear.train.algorithm.IWarmStartAlgorithm;
+import clear.train.algorithm.LibLinearCS;
+import clear.train.algorithm.LibLinearL1;
 import clear.train.algorithm.LibLinearL2;
 import clear.train.algorithm.RRM;
+import clear.train.kernel.AbstractInstanceStore;
 import clear.train.kernel.AbstractKernel;
 import clear.train.kernel.NoneKernel;
 import clear.util.tuple.JIntObjectTuple;
-import clear.util.tuple.JObjectObjectTuple;
-
-import com.carrotsearch.hppc.IntArrayList;
 
 /**
  * Trains dependency parser.
@@ -54,18 +59,68 @@ abstract public class AbstractTrain extends AbstractCommon
 {
 	@Option(name="-m", usage="model file", required=false, metaVar="OPTIONAL")
 	protected String s_modelFile    = null;
+	@Option(name="-threads", usage="# of threads to extract features and train models with; overrides <threads> in the configuration file", required=false, metaVar="OPTIONAL")
+	protected int    i_threadsOption = 0;
 	
 	protected final String TAG_CLASSIFY           = "classify";
 	protected final String TAG_CLASSIFY_ALGORITHM = "algorithm";
+	protected final String TAG_CLASSIFY_STORE     = "store";
+	protected final String TAG_CLASSIFY_THREADS   = "threads";
+	protected final String TAG_CLASSIFY_DEDUP     = "dedup";
+	protected final String TAG_CLASSIFY_MODEL     = "model";
 
-	protected byte kernel_type  = AbstractKernel.KERNEL_NONE;
-	protected byte trainer_type = AbstractTrainer.ST_ONE_VS_ALL;
+	protected byte   kernel_type  = AbstractKernel.KERNEL_NONE;
+	protected byte   trainer_type = AbstractTrainer.ST_ONE_VS_ALL;
+	/** Type of stores for training instances ({@link AbstractInstanceStore#STORE_*}) */
+	protected byte   i_storeType  = AbstractInstanceStore.STORE_MEMORY;
+	/** Directory of spill files for {@link AbstractInstanceStore#STORE_DISK} */
+	protected String s_storeDir   = null;
+	/** Number of threads to extract features and train models with */
+	protected int    i_numThreads = 1;
+	/** If true, identical training instances are merged before training */
+	protected boolean b_dedup     = false;
+	/** If true, one-vs-all models are saved in the binary format */
+	protected boolean b_binaryModel = false;
+	/** Model whose weights are used to initialize learning algorithms; if <code>null</code>, training starts from scratch */
+	protected OneVsAllModel m_initModel = null;
+	
+	protected ArrayList<AbstractInstanceStore> a_yx;
 	
-	protected ArrayList<JObjectObjectTuple<IntArrayList, ArrayList<int[]>>> a_yx;
+	/** Name of the algorithm last created by {@link AbstractTrain#getAlgorithm()} */
+	private String s_algorithmName    = null;
+	/** Options of the algorithm last created by {@link AbstractTrain#getAlgorithm()} */
+	private String s_algorithmOptions = null;
+	
+	/** Initializes <classify> elements used before training models. */
+	protected void initConfig() throws Exception
+	{
+		super.initConfig();
+		
+		Element eTrain = getElement(e_config, TAG_CLASSIFY);
+		Element element;
+		
+		if (eTrain != null && (element = getElement(eTrain, TAG_CLASSIFY_STORE)) != null)
+		{
+			i_storeType = AbstractInstanceStore.getStoreType(element.getTextContent().trim());
+			if (element.hasAttribute("dir"))	s_storeDir = element.getAttribute("dir").trim();
+		}
+		
+		if (eTrain != null && (element = getElement(eTrain, TAG_CLASSIFY_THREADS)) != null)
+			i_numThreads = Integer.parseInt(element.getTextContent().trim());
+		
+		if (i_threadsOption > 0)	i_numThreads = i_threadsOption;
+		
+		if (eTrain != null && (element = getElement(eTrain, TAG_CLASSIFY_DEDUP)) != null)
+			b_dedup = Boolean.parseBoolean(element.getTextContent().trim());
+		
+		if (eTrain != null && (element = getElement(eTrain, TAG_CLASSIFY_MODEL)) != null)
+			b_binaryModel = element.getTextContent().trim().equals("binary");
+	}
 	
 	protected AbstractModel trainModel(int index, JarArchiveOutputStream zout) throws Exception
 	{
 		JIntObjectTuple<IAlgorithm> tup = getAlgorithm();
+		printAlgorithm(tup);
 		
 		if (tup.object == null)
 		{
@@ -92,7 +147,23 @@ abstract public class AbstractTrain extends AbstractCommon
 		
 		NoneKernel kernel = new NoneKernel();
 		kernel.add(a_yx.get(index));
-		AbstractTrainer trainer = (trainer_type == AbstractTrainer.ST_BINARY) ? new BinaryTrainer(fout, algorithm, kernel, numThreads) : new OneVsAllTrainer(fout, algorithm, kernel, numThreads);
+		if (b_dedup)	kernel.deduplicate(AbstractInstanceStore.create(i_storeType, s_storeDir));
+		// keeps weights of features in the initial model that do not appear in the training instances
+		if (m_initModel != null)	kernel.D = Math.max(kernel.D, m_initModel.n_features);
+		AbstractTrainer trainer;
+		
+		if (trainer_type == AbstractTrainer.ST_BINARY)
+			trainer = new BinaryTrainer(fout, algorithm, kernel, numThreads);
+		else
+		{
+			if (trainer_type == AbstractTrainer.ST_MULTICLASS || algorithm instanceof IMultiAlgorithm)
+				trainer = new MulticlassTrainer(algorithm, kernel);
+			else
+				trainer = new OneVsAllTrainer(algorithm, kernel, numThreads);
+			
+			trainer.setBinaryModel(b_binaryModel);
+			trainer.train(fout);
+		}
 		
 		long time = System.currentTimeMillis() - st;
 		System.out.printf("- duration: %d h, %d m\n", time/(1000*3600), time/(1000*60));
@@ -107,7 +178,11 @@ abstract public class AbstractTrain extends AbstractCommon
 		return trainer.getModel();
 	}
 	
-	private JIntObjectTuple<IAlgorithm> getAlgorithm()
+	/**
+	 * Call {@link AbstractTrain#printAlgorithm(JIntObjectTuple)} to print the algorithm and its options.
+	 * @return the number of threads and the learning algorithm specified in the configuration file.
+	 */
+	protected JIntObjectTuple<IAlgorithm> getAlgorithm()
 	{
 		Element eTrain  = getElement(e_config, TAG_CLASSIFY);
 		Element element = getElement(eTrain, TAG_CLASSIFY_ALGORITHM);
@@ -120,7 +195,10 @@ abstract public class AbstractTrain extends AbstractCommon
 		if (name.equals(IAlgorithm.LIBLINEAR_L2))
 		{
 			byte lossType = 1;
-			double c = 0.1, eps = 0.1, bias = -1;
+			double c = 0.1, eps = 0.1, bias = -1, heldOut = 0;
+			int maxIter = 1000, patience = 5;
+			long seed = -1;
+			boolean hogwild = false, verbose = false;
 			
 			if ((tmp = element.getAttribute("l").trim()).length() > 0)
 				lossType = Byte.parseByte(tmp);
@@ -134,16 +212,63 @@ abstract public class AbstractTrain extends AbstractCommon
 			if ((tmp = element.getAttribute("b").trim()).length() > 0)
 				bias = Double.parseDouble(tmp);
 			
-			algorithm = new LibLinearL2(lossType, c, eps, bias);
+			if ((tmp = element.getAttribute("h").trim()).length() > 0)
+				hogwild = tmp.equals("1");
+			
+			if ((tmp = element.getAttribute("i").trim()).length() > 0)
+				maxIter = Integer.parseInt(tmp);
+			
+			if ((tmp = element.getAttribute("r").trim()).length() > 0)
+				seed = Long.parseLong(tmp);
+			
+			if ((tmp = element.getAttribute("t").trim()).length() > 0)
+				heldOut = Double.parseDouble(tmp);
+			
+			if ((tmp = element.getAttribute("p").trim()).length() > 0)
+				patience = Integer.parseInt(tmp);
+			
+			if ((tmp = element.getAttribute("v").trim()).length() > 0)
+				verbose = tmp.equals("1");
+			
+			LibLinearL2 lib = new LibLinearL2(lossType, c, eps, bias, hogwild);
+			lib.setMaxIterations(maxIter);
+			lib.setShuffle(seed);
+			lib.setEarlyStopping(heldOut, patience);
+			lib.setVerbose(verbose);
+			algorithm = lib;
 			
 			options.append("loss_type = ");	options.append(lossType);
 			options.append(", c = ");		options.append(c);
 			options.append(", eps = ");		options.append(eps);
 			options.append(", bias = ");	options.append(bias);
+			options.append(", hogwild = ");	options.append(hogwild);
+			options.append(", max_iter = ");	options.append(maxIter);
+			options.append(", seed = ");	options.append(seed);
+			options.append(", heldout = ");	options.append(heldOut);
+			options.append(", patience = ");	options.append(patience);
+		}
+		else if (name.equals(IAlgorithm.LIBLINEAR_L1))
+		{
+			double c = 0.1, eps = 0.1, bias = -1;
+			
+			if ((tmp = element.getAttribute("c").trim()).length() > 0)
+				c = Double.parseDouble(tmp);
+			
+			if ((tmp = element.getAttribute("e").trim()).length() > 0)
+				eps = Double.parseDouble(tmp);
+			
+			if ((tmp = element.getAttribute("b").trim()).length() > 0)
+				bias = Double.parseDouble(tmp);
+			
+			algorithm = new LibLinearL1(c, eps, bias);
+			
+			options.append("c = ");			options.append(c);
+			options.append(", eps = ");		options.append(eps);
+			options.append(", bias = ");	options.append(bias);
 		}
 		else if (name.equals(IAlgorithm.RRM))
 		{
-			int k = 40;
+			int k = 40, sample = 0;
 			double mu = 1.0, eta = 0.001, c = 0.1;
 			
 			if ((tmp = element.getAttribute("k").trim()).length() > 0)
@@ -158,25 +283,86 @@ abstract public class AbstractTrain extends AbstractCommon
 			if ((tmp = element.getAttribute("c").trim()).length() > 0)
 				c = Double.parseDouble(tmp);
 			
-			algorithm = new RRM(k, mu, eta, c);
+			if ((tmp = element.getAttribute("s").trim()).length() > 0)
+				sample = Integer.parseInt(tmp);
+			
+			RRM rrm = new RRM(k, mu, eta, c);
+			rrm.setF1Sample(sample);
+			algorithm = rrm;
 			
 			options.append("K = ");		options.append(k);
 			options.append(", mu = ");	options.append(mu);
 			options.append(", eta = ");	options.append(eta);
 			options.append(", c = ");	options.append(c);
+			options.append(", sample = ");	options.append(sample);
+		}
+		else if (name.equals(IAlgorithm.LIBLINEAR_CS))
+		{
+			double c = 0.1, eps = 0.1, bias = -1;
+			int maxIter = 1000;
+			long seed = 0;
+			
+			if ((tmp = element.getAttribute("c").trim()).length() > 0)
+				c = Double.parseDouble(tmp);
+			
+			if ((tmp = element.getAttribute("e").trim()).length() > 0)
+				eps = Double.parseDouble(tmp);
+			
+			if ((tmp = element.getAttribute("b").trim()).length() > 0)
+				bias = Double.parseDouble(tmp);
+			
+			if ((tmp = element.getAttribute("i").trim()).length() > 0)
+				maxIter = Integer.parseInt(tmp);
+			
+			if ((tmp = element.getAttribute("r").trim()).length() > 0)
+				seed = Long.parseLong(tmp);
+			
+			LibLinearCS cs = new LibLinearCS(c, eps, bias);
+			cs.setMaxIterations(maxIter);
+			cs.setSeed(seed);
+			algorithm = cs;
+			
+			options.append("c = ");			options.append(c);
+			options.append(", eps = ");		options.append(eps);
+			options.append(", bias = ");	options.append(bias);
+			options.append(", max_iter = ");	options.append(maxIter);
+			options.append(", seed = ");	options.append(seed);
+		}
+		else if (name.equals(IAlgorithm.PERCEPTRON))
+		{
+			int k = 10;
+			
+			if ((tmp = element.getAttribute("k").trim()).length() > 0)
+				k = Integer.parseInt(tmp);
+			
+			algorithm = new AveragedPerceptron(k);
+			options.append("epochs = ");	options.append(k);
 		}
 		
-		int numThreads = 1;
+		int numThreads = i_numThreads;
 		
-		element = getElement(eTrain, "threads");
-		if (element != null)	numThreads = Integer.parseInt(element.getTextContent().trim());
+		if (m_initModel != null && algorithm instanceof IWarmStartAlgorithm)
+		{
+			((IWarmStartAlgorithm)algorithm).setInitialModel(m_initModel);
+			options.append(", warm_start = true");
+		}
 		
-		System.out.println("\n* Train model");
-		System.out.println("- algorithm: "+name);
-		System.out.println("- options  : "+options.toString());
-		System.out.println("- threads  : "+numThreads);
-		System.out.println();
+		s_algorithmName    = name;
+		s_algorithmOptions = options.toString();
 		
 		return new JIntObjectTuple<IAlgorithm>(numThreads, algorithm);
 	}
+	
+	/** Prints the algorithm returned by {@link AbstractTrain#getAlgorithm()}. */
+	protected void printAlgorithm(JIntObjectTuple<IAlgorithm> tup)
+	{
+		if (m_initModel != null && !(tup.object instanceof IWarmStartAlgorithm))
+			System.err.println("Warm start is not supported by the algorithm: "+s_algorithmName);
+		
+		System.out.println("\n* Train model");
+		System.out.println("- algorithm: "+s_algorithmName);
+		System.out.println("- options  : "+s_algorithmOptions);
+		System.out.println("- threads  : "+tup.index);
+		System.out.println();
+	}
 }
@@ -0,0 +1,402 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import clear.dep.DepTree;
+import clear.reader.AbstractReader;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Long-running dependency parsing server on localhost.
+ * Models are loaded once; sentences from concurrent requests are grouped into micro-batches and parsed by worker threads.
+ * <ul>
+ * <li><code>POST /parse</code>: sentences are separated by blank lines; each line contains either a form or a form and a part-of-speech tag delimited by a tab.
+ * Returns dependency trees in the {@link AbstractReader#FORMAT_DEP} format, separated by blank lines.</li>
+ * <li><code>GET /stats</code>: returns queue depth, batch sizes and latency percentiles.</li>
+ * </ul>
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/13/2011
+ */
+public class DepServer
+{
+	@Option(name="-c", usage="configuration file", required=true, metaVar="REQUIRED")
+	private String s_configFile = null;
+	@Option(name="-m", usage="model file", required=true, metaVar="REQUIRED")
+	private String s_modelFile  = null;
+	@Option(name="-p", usage="port (default = 8080)", required=false, metaVar="OPTIONAL")
+	private int    i_port       = 8080;
+	@Option(name="-t", usage="# of parsing threads (default = 2)", required=false, metaVar="OPTIONAL")
+	private int    n_threads    = 2;
+	@Option(name="-b", usage="max # of sentences per batch (default = 32)", required=false, metaVar="OPTIONAL")
+	private int    n_batch      = 32;
+	@Option(name="-w", usage="max milliseconds to wait for filling a batch (default = 2)", required=false, metaVar="OPTIONAL")
+	private long   n_wait       = 2;
+	@Option(name="-q", usage="max # of sentences waiting to be parsed; requests with more sentences than this are rejected with 413, requests that do not fit in the remaining queue with 503 (default = 4096)", required=false, metaVar="OPTIONAL")
+	private int    n_queue      = 4096;
+	
+	/** Number of latencies kept for percentiles */
+	static private final int LATENCY_WINDOW = 8192;
+	
+	private HttpServer                  g_server;
+	private ExecutorService             g_workers;
+	private ExecutorService             g_handlers;
+	private BlockingQueue<SentenceTask> q_tasks;
+	
+	private long[] a_latencies;
+	private int    n_latencies;
+	private long   n_requests;
+	private long   n_sentences;
+	private long   n_batches;
+	private int    n_maxBatch;
+	
+	public DepServer(String[] args)
+	{
+		CmdLineParser cmd = new CmdLineParser(this);
+		
+		try
+		{
+			cmd.parseArgument(args);
+			start(new ParserSession(s_configFile, s_modelFile));
+			System.out.println("* Listening: http://localhost:"+i_port+"/parse");
+		}
+		catch (CmdLineException e)
+		{
+			System.err.println(e.getMessage());
+			cmd.printUsage(System.err);
+		}
+		catch (Exception e) {e.printStackTrace();}
+	}
+	
+	/**
+	 * Creates a server using an already loaded session.
+	 * Call {@link DepServer#start(ParserSession)} to run it.
+	 */
+	public DepServer(int port, int numThreads, int batchSize, long waitMillis)
+	{
+		i_port    = port;
+		n_threads = numThreads;
+		n_batch   = batchSize;
+		n_wait    = waitMillis;
+	}
+	
+	/** Sets the max number of sentences waiting to be parsed; must be called before {@link DepServer#start(ParserSession)}. */
+	public void setQueueSize(int size)
+	{
+		n_queue = size;
+	}
+	
+	/** Starts the server; <code>session</code> is forked for each parsing thread. */
+	public void start(ParserSession session) throws IOException
+	{
+		q_tasks     = new LinkedBlockingQueue<SentenceTask>(n_queue);
+		a_latencies = new long[LATENCY_WINDOW];
+		g_workers   = Executors.newFixedThreadPool(n_threads);
+		
+		for (int i=0; i<n_threads; i++)
+			g_workers.execute(new BatchWorker(session.fork()));
+		
+		g_server = HttpServer.create(new InetSocketAddress("localhost", i_port), 0);
+		g_server.createContext("/parse", new ParseHandler());
+		g_server.createContext("/stats", new StatsHandler());
+		g_handlers  = Executors.newCachedThreadPool();
+		g_server.setExecutor(g_handlers);
+		g_server.start();
+	}
+	
+	/** Stops accepting requests and shuts down the parsing threads. */
+	public void stop()
+	{
+		g_server.stop(0);
+		g_handlers.shutdownNow();
+		g_workers.shutdownNow();
+	}
+	
+	/** @return the port this server is bound to. */
+	public int getPort()
+	{
+		return g_server.getAddress().getPort();
+	}
+	
+//	=============================== Statistics ===============================
+	
+	synchronized private void addBatch(int size)
+	{
+		n_batches++;
+		n_sentences += size;
+		n_maxBatch   = Math.max(n_maxBatch, size);
+	}
+	
+	synchronized private void addLatency(long nanos)
+	{
+		a_latencies[(int)(n_requests % LATENCY_WINDOW)] = nanos;
+		n_requests++;
+		n_latencies = (int)Math.min(n_requests, LATENCY_WINDOW);
+	}
+	
+	/** @return statistics as "key: value" lines. */
+	synchronized public String getStats()
+	{
+		long[] latencies = Arrays.copyOf(a_latencies, n_latencies);
+		Arrays.sort(latencies);
+		
+		StringBuilder build = new StringBuilder();
+		
+		build.append("queue_depth: ");	build.append(q_tasks.size());	build.append("\n");
+		build.append("requests: ");		build.append(n_requests);		build.append("\n");
+		build.append("sentences: ");	build.append(n_sentences);		build.append("\n");
+		build.append("batches: ");		build.append(n_batches);		build.append("\n");
+		build.append("batch_avg: ");	build.append((n_batches == 0) ? 0 : (double)n_sentences / n_batches);	build.append("\n");
+		build.append("batch_max: ");	build.append(n_maxBatch);		build.append("\n");
+		
+		for (int p : new int[]{50, 90, 99})
+		{
+			build.append("latency_p");	build.append(p);	build.append("_ms: ");
+			build.append((latencies.length == 0) ? 0 : latencies[Math.min(latencies.length-1, latencies.length * p / 100)] / 1e6);
+			build.append("\n");
+		}
+		
+		return build.toString();
+	}
+	
+//	=============================== Tasks ===============================
+	
+	/** Sentence to be parsed, belonging to a request. */
+	private class SentenceTask
+	{
+		ArrayList<String> a_forms;
+		ArrayList<String> a_tags;
+		DepTree           d_tree;
+		CountDownLatch    c_done;
+		
+		SentenceTask(ArrayList<String> forms, ArrayList<String> tags)
+		{
+			a_forms = forms;
+			a_tags  = tags;
+		}
+	}
+	
+	/**
+	 * Takes micro-batches of sentences from the queue and parses them with its own session.
+	 * Every sentence taken is counted down even if parsing fails, so requests never wait for a dead worker.
+	 */
+	private class BatchWorker implements Runnable
+	{
+		ParserSession g_session;
+		
+		BatchWorker(ParserSession session)
+		{
+			g_session = session;
+		}
+		
+		public void run()
+		{
+			ArrayList<SentenceTask> batch = new ArrayList<SentenceTask>(n_batch);
+			SentenceTask task;
+			long deadline, wait;
+			
+			try
+			{
+				while (true)
+				{
+					batch.add(q_tasks.take());
+					deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(n_wait);
+					
+					while (batch.size() < n_batch)
+					{
+						q_tasks.drainTo(batch, n_batch - batch.size());
+						if (batch.size() >= n_batch || (wait = deadline - System.nanoTime()) <= 0)	break;
+						if ((task = q_tasks.poll(wait, TimeUnit.NANOSECONDS)) == null)					break;
+						batch.add(task);
+					}
+					
+					addBatch(batch.size());
+					
+					for (SentenceTask t : batch)
+					{
+						try
+						{
+							t.d_tree = (t.a_tags == null) ? g_session.parse(t.a_forms) : g_session.parse(t.a_forms, t.a_tags);
+						}
+						catch (Throwable e) {e.printStackTrace();}
+						finally
+						{
+							t.c_done.countDown();
+						}
+					}
+					
+					batch.clear();
+				}
+			}
+			catch (InterruptedException e) {}
+		}
+	}
+	
+//	=============================== Handlers ===============================
+	
+	private class ParseHandler implements HttpHandler
+	{
+		public void handle(HttpExchange exchange) throws IOException
+		{
+			long st = System.nanoTime();
+			
+			if (!exchange.getRequestMethod().equals("POST"))
+			{
+				respond(exchange, 405, "POST sentences to /parse\n");
+				return;
+			}
+			
+			ArrayList<SentenceTask> tasks = readTasks(new BufferedReader(new InputStreamReader(exchange.getRequestBody(), "UTF-8")));
+			CountDownLatch          done  = new CountDownLatch(tasks.size());
+			
+			for (SentenceTask task : tasks)
+				task.c_done = done;
+			
+			// this request can never fit in the queue, so retrying does not help
+			if (tasks.size() > n_queue)
+			{
+				respond(exchange, 413, "too many sentences in a request: "+tasks.size()+" > "+n_queue+"\n");
+				return;
+			}
+			
+			// all sentences of a request are queued or none; only handlers add to the queue, so its capacity cannot shrink in between
+			synchronized (q_tasks)
+			{
+				if (q_tasks.remainingCapacity() < tasks.size())
+				{
+					respond(exchange, 503, "too many sentences waiting to be parsed; try again later\n");
+					return;
+				}
+				
+				q_tasks.addAll(tasks);
+			}
+			
+			try
+			{
+				done.await();
+			}
+			catch (InterruptedException e)
+			{
+				respond(exchange, 503, "interrupted\n");
+				return;
+			}
+			
+			StringBuilder build = new StringBuilder();
+			
+			for (SentenceTask task : tasks)
+			{
+				if (task.d_tree == null)
+				{
+					respond(exchange, 500, "failed to parse: "+task.a_forms+"\n");
+					return;
+				}
+				
+				build.append(task.d_tree);
+				build.append("\n\n");
+			}
+			
+			addLatency(System.nanoTime() - st);
+			respond(exchange, 200, build.toString());
+		}
+		
+		/** Sentences are separated by blank lines; each line is "form" or "form\tpos". */
+		private ArrayList<SentenceTask> readTasks(BufferedReader fin) throws IOException
+		{
+			ArrayList<SentenceTask> tasks = new ArrayList<SentenceTask>();
+			ArrayList<String> forms = new ArrayList<String>();
+			ArrayList<String> tags  = new ArrayList<String>();
+			String   line;
+			String[] tmp;
+			
+			while (true)
+			{
+				line = fin.readLine();
+				
+				if (line == null || line.trim().isEmpty())
+				{
+					if (!forms.isEmpty())
+					{
+						tasks.add(new SentenceTask(forms, (tags.size() == forms.size()) ? tags : null));
+						forms = new ArrayList<String>();
+						tags  = new ArrayList<String>();
+					}
+					
+					if (line == null)	break;
+					continue;
+				}
+				
+				tmp = line.trim().split(AbstractReader.FIELD_DELIM);
+				forms.add(tmp[0]);
+				if (tmp.length > 1)	tags.add(tmp[1]);
+			}
+			
+			return tasks;
+		}
+	}
+	
+	private class StatsHandler implements HttpHandler
+	{
+		public void handle(HttpExchange exchange) throws IOException
+		{
+			respond(exchange, 200, getStats());
+		}
+	}
+	
+	private void respond(HttpExchange exchange, int code, String body) throws IOException
+	{
+		byte[] bytes = body.getBytes("UTF-8");
+		
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+		exchange.sendResponseHeaders(code, bytes.length);
+		
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+	
+	static public void main(String[] args)
+	{
+		new DepServer(args);
+	}
+}
@@ -27,6 +27,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.compress.archivers.jar.JarArchiveEntry;
 import org.apache.commons.compress.archivers.jar.JarArchiveOutputStream;
@@ -36,18 +42,28 @@ import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 
 import clear.decode.OneVsAllDecoder;
-import clear.dep.DepNode;
 import clear.dep.DepTree;
 import clear.ftr.map.DepFtrMap;
+import clear.ftr.map.DepHashFtrMap;
 import clear.ftr.xml.DepFtrXml;
+import clear.ftr.xml.FtrTemplate;
 import clear.model.OneVsAllModel;
 import clear.parse.AbstractDepParser;
 import clear.parse.AbstractParser;
 import clear.parse.ShiftEagerParser;
 import clear.parse.ShiftPopParser;
+import clear.reader.AbstractDepReader;
 import clear.reader.AbstractReader;
 import clear.reader.CoNLLXReader;
 import clear.reader.DepReader;
+import clear.reader.DepTreeStream;
+import clear.train.algorithm.IAlgorithm;
+import clear.train.algorithm.IOnlineAlgorithm;
+import clear.train.kernel.AbstractInstanceStore;
+import clear.train.kernel.BinaryInstanceWriter;
+import clear.util.tuple.JIntObjectTuple;
+
+import com.carrotsearch.hppc.IntArrayList;
 
 /**
  * Trains conditional dependency parser.
@@ -62,10 +78,27 @@ public class DepTrain extends AbstractTrain
 	private String s_trainFile  = null;
 	@Option(name="-n", usage="bootstrapping level (default = 2)", required=false, metaVar="OPTIONAL")
 	private int    n_boot       = 2;
+	@Option(name="-d", usage="probability of following predicted transitions for dynamic-oracle training with online algorithms; replaces bootstrapping (default = 0: off)", required=false, metaVar="OPTIONAL")
+	private double d_explore    = 0;
+	@Option(name="-w", usage="model file to start training from; its lexica are extended by the training file (default = null: from scratch)", required=false, metaVar="OPTIONAL")
+	private String s_initFile   = null;
+	@Option(name="-x", usage="file to save training instances of the first round in the binary format, e.g. for MLSweep (default = null)", required=false, metaVar="OPTIONAL")
+	private String s_instanceFile = null;
+	@Option(name="-hash", usage="if positive, feature indices are hashed into 2^hash dimensions and no lexicon pass is made (default = 0: lexica)", required=false, metaVar="OPTIONAL")
+	private int    i_hashBits   = 0;
+	
+	/** Maximum number of trees read ahead of the parser */
+	static private final int PREFETCH_SIZE = 32;
+	/** Maximum number of trees in memory */
+	static private final int POOL_SIZE     = PREFETCH_SIZE * 2;
+	/** Number of trees parsed together by each thread */
+	static private final int CHUNK_SIZE    = 256;
 	
 	private DepFtrXml     t_xml   = null;
 	private DepFtrMap     t_map   = null;
 	private OneVsAllModel m_model = null;
+	/** Online learner if the algorithm learns while parsing; otherwise, <code>null</code> */
+	private IOnlineAlgorithm m_online = null;
 	
 	public void initElements() {}
 	
@@ -107,24 +140,45 @@ public class DepTrain extends AbstractTrain
 	{
 		printConfig();
 		
+		if (i_hashBits > 0)
+		{
+			if (s_initFile != null)
+				throw new IllegalArgumentException("Feature hashing cannot start from a model with lexica: "+s_initFile);
+			
+			t_xml = new DepFtrXml(s_featureXml);
+		}
+		else
+			trainDepParser(AbstractParser.FLAG_TRAIN_LEXICON , null);
+		
+		// batch algorithms are created and printed by trainModel() for every model they train
+		JIntObjectTuple<IAlgorithm> tup = getAlgorithm();
+		
+		if (tup.object instanceof IOnlineAlgorithm)
+		{
+			m_online = (IOnlineAlgorithm)tup.object;
+			printAlgorithm(tup);
+		}
+		
+		if (i_hashBits > 0 && m_online != null)
+			throw new IllegalArgumentException("Feature hashing is not supported by online algorithms, which need the number of labels in advance.");
+		
 		String modelFile = s_modelFile;
 		JarArchiveOutputStream zout = new JarArchiveOutputStream(new FileOutputStream(modelFile));
 		
-		trainDepParser(AbstractParser.FLAG_TRAIN_LEXICON , null);
 		trainDepParser(AbstractParser.FLAG_TRAIN_INSTANCE, zout);
-		m_model = (OneVsAllModel)trainModel(0, zout);
+		if (s_instanceFile != null)	saveInstances();
+		m_model = trainModel(zout);
 		a_yx    = null;
 		zout.flush();	zout.close();
 		
-		for (int i=1; i<=n_boot; i++)
+		for (int i=1; i<=n_boot && !isDynamic(); i++)
 		{
 			modelFile = s_modelFile + ".boot" + i;
 			System.out.print("\n== Bootstrapping: "+i+" ==\n");
 
 			zout = new JarArchiveOutputStream(new FileOutputStream(modelFile));
 			trainDepParser(AbstractParser.FLAG_TRAIN_BOOST, zout);
-			m_model = null;
-			m_model = (OneVsAllModel)trainModel(0, zout);
+			m_model = trainModel(zout);
 			a_yx    = null;
 			zout.flush();	zout.close();
 		}
@@ -132,6 +186,58 @@ public class DepTrain extends AbstractTrain
 		new File(ENTRY_LEXICA).delete();
 	}
 	
+	/** Saves training instances of the first round to {@link DepTrain#s_instanceFile} in the binary format. */
+	private void saveInstances() throws Exception
+	{
+		if (m_online != null)
+		{
+			System.err.println("Training instances are not kept by online algorithms: "+s_instanceFile);
+			return;
+		}
+		
+		System.out.println("- saving instances: "+s_instanceFile);
+		AbstractInstanceStore store = a_yx.get(0);
+		
+		store.trimToSize();
+		BinaryInstanceWriter.write(store, s_instanceFile);
+	}
+	
+	/**
+	 * Labels and n-gram counts of {@link DepHashFtrMap} depend on the order instances are seen,
+	 * so this pass is made by a single thread to keep the model independent from the number of threads.
+	 * @return true if <code>flag</code> is the pass in which hashed features and labels are counted.
+	 */
+	private boolean isCounting(byte flag)
+	{
+		return flag == ShiftPopParser.FLAG_TRAIN_INSTANCE && i_hashBits > 0;
+	}
+	
+	/** @return true if the parser is trained with dynamic oracles instead of bootstrapping. */
+	private boolean isDynamic()
+	{
+		return m_online != null && d_explore > 0;
+	}
+	
+	/** Trains a model from the saved training instances, or retrieves the model from the online learner. */
+	private OneVsAllModel trainModel(JarArchiveOutputStream zout) throws Exception
+	{
+		if (m_online == null)
+		{
+			m_model = null;
+			return (OneVsAllModel)trainModel(0, zout);
+		}
+		
+		OneVsAllModel model = m_online.getModel();
+		
+		zout.putArchiveEntry(new JarArchiveEntry(ENTRY_MODEL));
+		PrintStream fout = new PrintStream(zout);
+		model.setBinary(b_binaryModel);
+		model.save(fout, i_numThreads);
+		fout.flush();	zout.closeArchiveEntry();
+		
+		return model;
+	}
+	
 	/** Trains the dependency parser. */
 	private void trainDepParser(byte flag, JarArchiveOutputStream zout) throws Exception
 	{
@@ -150,12 +256,26 @@ public class DepTrain extends AbstractTrain
 		else if (flag == ShiftPopParser.FLAG_TRAIN_INSTANCE)
 		{
 			System.out.println("\n* Print training instances");
-			System.out.println("- loading lexica");
 			
-			if (s_depParser.equals(AbstractDepParser.ALG_SHIFT_EAGER))
-				parser = new ShiftEagerParser(flag, t_xml, ENTRY_LEXICA);
-			else if (s_depParser.equals(AbstractDepParser.ALG_SHIFT_POP))
-				parser = new ShiftPopParser  (flag, t_xml, ENTRY_LEXICA);
+			if (i_hashBits > 0)
+			{
+				System.out.println("- hashing features: 2^"+i_hashBits);
+				DepHashFtrMap map = new DepHashFtrMap(t_xml, i_hashBits);
+				
+				if (s_depParser.equals(AbstractDepParser.ALG_SHIFT_EAGER))
+					parser = new ShiftEagerParser(flag, t_xml, map, null);
+				else if (s_depParser.equals(AbstractDepParser.ALG_SHIFT_POP))
+					parser = new ShiftPopParser  (flag, t_xml, map, null);
+			}
+			else
+			{
+				System.out.println("- loading lexica");
+				
+				if (s_depParser.equals(AbstractDepParser.ALG_SHIFT_EAGER))
+					parser = new ShiftEagerParser(flag, t_xml, ENTRY_LEXICA);
+				else if (s_depParser.equals(AbstractDepParser.ALG_SHIFT_POP))
+					parser = new ShiftPopParser  (flag, t_xml, ENTRY_LEXICA);
+			}
 		}
 		else if (flag == ShiftPopParser.FLAG_TRAIN_BOOST)
 		{
@@ -168,35 +288,60 @@ public class DepTrain extends AbstractTrain
 				parser = new ShiftPopParser  (flag, t_xml, t_map, decoder);
 		}
 		
-		AbstractReader<DepNode, DepTree> reader = null;
-		DepTree tree;	int n;
-		
-		if      (s_format.equals(AbstractReader.FORMAT_DEP))	reader = new DepReader   (s_trainFile, true);
-		else if (s_format.equals(AbstractReader.FORMAT_CONLLX))	reader = new CoNLLXReader(s_trainFile, true);
-
-		parser.setLanguage(s_language);
-		reader.setLanguage(s_language);
+		initParser(parser);
 		
-		for (n=0; (tree = reader.nextTree()) != null; n++)
+		if (flag != ShiftPopParser.FLAG_TRAIN_LEXICON && m_online != null)
 		{
-			parser.parse(tree);
+			m_online.init(parser.getDepFtrMap().getLabelSize());
+			parser.setOnlineAlgorithm(0, m_online);
 			
-			if (n % 1000 == 0)
-				System.out.printf("\r- parsing: %dK", n/1000);
+			for (int epoch=1; epoch<=m_online.getEpochs(); epoch++)
+			{
+				System.out.println("- epoch: "+epoch);
+				
+				// after the first epoch, explore transitions predicted by the model being learned
+				if (epoch == 2 && isDynamic())
+				{
+					System.out.println("- dynamic oracle: "+d_explore);
+					decoder = new OneVsAllDecoder(m_online.getCurrentModel());
+					
+					if (s_depParser.equals(AbstractDepParser.ALG_SHIFT_EAGER))
+						parser = new ShiftEagerParser(ShiftPopParser.FLAG_TRAIN_BOOST, t_xml, parser.getDepFtrMap(), decoder);
+					else if (s_depParser.equals(AbstractDepParser.ALG_SHIFT_POP))
+						parser = new ShiftPopParser  (ShiftPopParser.FLAG_TRAIN_BOOST, t_xml, parser.getDepFtrMap(), decoder);
+					
+					initParser(parser);
+					parser.setOnlineAlgorithm(0, m_online);
+					parser.setExploration(d_explore);
+				}
+				
+				parse(parser);
+			}
 		}
-		
-		System.out.println("\r- parsing: "+n);
+		else if (i_numThreads > 1 && !isCounting(flag))
+			parse(flag, parser);
+		else
+			parse(parser);
 		
 		if (flag == ShiftPopParser.FLAG_TRAIN_LEXICON)
 		{
 			System.out.println("- saving");
-			parser.saveTags(ENTRY_LEXICA);
+			if (s_initFile != null)	extendLexica(parser);
+			else					parser.saveTags(ENTRY_LEXICA);
 			t_xml = parser.getDepFtrXml();
 		}
 		else if (flag == ShiftPopParser.FLAG_TRAIN_INSTANCE || flag == ShiftPopParser.FLAG_TRAIN_BOOST)
 		{
 			a_yx = parser.a_trans;
 			
+			if (flag == ShiftPopParser.FLAG_TRAIN_INSTANCE && i_hashBits > 0)
+			{
+				DepHashFtrMap map = (DepHashFtrMap)parser.getDepFtrMap();
+				map.setCounting(false);
+				map.save(ENTRY_LEXICA);
+				System.out.println("- labels: "+map.getLabelSize());
+			}
+			
 			zout.putArchiveEntry(new JarArchiveEntry(ENTRY_PARSER));
 			PrintStream fout = new PrintStream(zout);
 			fout.print(s_depParser);
@@ -215,6 +360,233 @@ public class DepTrain extends AbstractTrain
 		}
 	}
 	
+	/**
+	 * Extends lexica of the initial model with the ones collected by <code>parser</code> and saves them to {@link AbstractCommon#ENTRY_LEXICA}.
+	 * Weights of the initial model are moved to the extended feature indices and used to initialize the learning algorithm.
+	 */
+	private void extendLexica(AbstractDepParser parser) throws Exception
+	{
+		System.out.println("- extending lexica of "+s_initFile);
+		
+		AbstractDepParser init = getDepParser(s_initFile);
+		DepFtrMap map = init.getDepFtrMap();
+		
+		if (!isSameTemplates(init.getDepFtrXml(), parser.getDepFtrXml()))
+			throw new IllegalArgumentException("The feature templates are different from the ones of "+s_initFile);
+		
+		IntArrayList oldSizes = parser.getFeatureBlockSizes(map);
+		map.extend(parser.getDepFtrMap(), parser.getDepFtrXml());
+		IntArrayList newSizes = parser.getFeatureBlockSizes(map);
+		map.saveIndexed(ENTRY_LEXICA);
+		
+		int[] indices = new int[getFeatureSize(oldSizes)];
+		int   b, k, oldBegin, newBegin;
+		
+		for (b=0, oldBegin=1, newBegin=1; b<oldSizes.size(); b++)
+		{
+			for (k=0; k<oldSizes.get(b); k++)
+				indices[oldBegin+k] = newBegin+k;
+			
+			oldBegin += oldSizes.get(b);
+			newBegin += newSizes.get(b);
+		}
+		
+		m_initModel = ((OneVsAllDecoder)init.getDecoder()).getModel();
+		m_initModel.remapFeatures(indices, getFeatureSize(newSizes));
+		System.out.println("- features: "+indices.length+" -> "+m_initModel.n_features);
+	}
+	
+	/** @return true if <code>xml1</code> and <code>xml2</code> contain the same n-gram templates in the same order. */
+	private boolean isSameTemplates(DepFtrXml xml1, DepFtrXml xml2)
+	{
+		FtrTemplate[][] templates1 = xml1.a_ngram_templates;
+		FtrTemplate[][] templates2 = xml2.a_ngram_templates;
+		int i, j;
+		
+		if (templates1.length != templates2.length)	return false;
+		
+		for (j=0; j<templates1.length; j++)
+		{
+			if (templates1[j].length != templates2[j].length)	return false;
+			
+			for (i=0; i<templates1[j].length; i++)
+				if (!templates1[j][i].toString().equals(templates2[j][i].toString()))	return false;
+		}
+		
+		return true;
+	}
+	
+	/** @return the number of features including the bias, given sizes of feature blocks. */
+	private int getFeatureSize(IntArrayList sizes)
+	{
+		int i, size = 1;
+		
+		for (i=0; i<sizes.size(); i++)
+			size += sizes.get(i);
+		
+		return size;
+	}
+	
+	private void initParser(AbstractDepParser parser)
+	{
+		parser.setLanguage(s_language);
+		parser.setInstanceStore(i_storeType, s_storeDir);
+	}
+	
+	/** Parses all trees in the training file. */
+	private void parse(AbstractDepParser parser) throws Exception
+	{
+		DepTreeStream stream = openStream(POOL_SIZE);
+		DepTree tree;	int n;
+		
+		for (n=0; stream.hasNext(); n++)
+		{
+			tree = stream.next();
+			parser.parse(tree);
+			stream.release(tree);
+			
+			if (n % 1000 == 0)
+				System.out.printf("\r- parsing: %dK", n/1000);
+		}
+		
+		System.out.println("\r- parsing: "+n);
+	}
+	
+	/**
+	 * Parses all trees in the training file using {@link DepTrain#i_numThreads} threads.
+	 * Trees are split into chunks of consecutive trees; each chunk is parsed by a copy of <code>parser</code>
+	 * and its lexica or training instances are merged to <code>parser</code> in the order of the chunks. 
+	 */
+	private void parse(final byte flag, final AbstractDepParser parser) throws Exception
+	{
+		int maxChunks = i_numThreads * 2;
+		DepTreeStream stream = openStream((maxChunks + 2) * CHUNK_SIZE + PREFETCH_SIZE + 2);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(i_numThreads);
+		ArrayDeque<Future<Object>> results = new ArrayDeque<Future<Object>>();
+		ThreadLocal<AbstractDepParser> parsers = new ThreadLocal<AbstractDepParser>()
+		{
+			protected AbstractDepParser initialValue()
+			{
+				return copyParser(flag, parser);
+			}
+		};
+		
+		ArrayList<DepTree> chunk;
+		int n = 0;
+		
+		try
+		{
+			while (stream.hasNext())
+			{
+				chunk = new ArrayList<DepTree>(CHUNK_SIZE);
+				while (chunk.size() < CHUNK_SIZE && stream.hasNext())	chunk.add(stream.next());
+				
+				results.add(executor.submit(new ParseTask(flag, parsers, stream, chunk)));
+				if (results.size() > maxChunks)	merge(flag, parser, results.poll().get());
+				
+				if ((n / 1000) != (n + chunk.size()) / 1000)
+					System.out.printf("\r- parsing: %dK", (n + chunk.size())/1000);
+				
+				n += chunk.size();
+			}
+			
+			while (!results.isEmpty())
+				merge(flag, parser, results.poll().get());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		
+		System.out.println("\r- parsing: "+n);
+	}
+	
+	private DepTreeStream openStream(int poolSize)
+	{
+		AbstractDepReader reader = null;
+		
+		if      (s_format.equals(AbstractReader.FORMAT_DEP))	reader = new DepReader   (s_trainFile, true);
+		else if (s_format.equals(AbstractReader.FORMAT_CONLLX))	reader = new CoNLLXReader(s_trainFile, true);
+		
+		reader.setLanguage(s_language);
+		return new DepTreeStream(reader, poolSize, PREFETCH_SIZE);
+	}
+	
+	/** @return a parser sharing feature templates, mappings and the decoder with <code>parser</code>. */
+	private AbstractDepParser copyParser(byte flag, AbstractDepParser parser)
+	{
+		AbstractDepParser copy = null;
+		
+		if (flag == ShiftPopParser.FLAG_TRAIN_LEXICON)
+		{
+			if (s_depParser.equals(AbstractDepParser.ALG_SHIFT_EAGER))
+				copy = new ShiftEagerParser(flag, s_featureXml);
+			else if (s_depParser.equals(AbstractDepParser.ALG_SHIFT_POP))
+				copy = new ShiftPopParser  (flag, s_featureXml);
+		}
+		else
+		{
+			if (s_depParser.equals(AbstractDepParser.ALG_SHIFT_EAGER))
+				copy = new ShiftEagerParser(flag, parser.getDepFtrXml(), parser.getDepFtrMap(), parser.getDecoder());
+			else if (s_depParser.equals(AbstractDepParser.ALG_SHIFT_POP))
+				copy = new ShiftPopParser  (flag, parser.getDepFtrXml(), parser.getDepFtrMap(), parser.getDecoder());
+		}
+		
+		copy.setLanguage(s_language);
+		return copy;
+	}
+	
+	/** Merges lexica or training instances of a chunk to <code>parser</code>. */
+	private void merge(byte flag, AbstractDepParser parser, Object result)
+	{
+		if (flag == ShiftPopParser.FLAG_TRAIN_LEXICON)
+			parser.getDepFtrMap().merge((DepFtrMap)result);
+		else
+			parser.a_trans.get(0).addAll((AbstractInstanceStore)result);
+	}
+	
+	/** Parses a chunk of trees and returns its lexica or training instances. */
+	private class ParseTask implements Callable<Object>
+	{
+		private byte                           i_flag;
+		private ThreadLocal<AbstractDepParser> t_parsers;
+		private DepTreeStream                  s_trees;
+		private ArrayList<DepTree>             a_chunk;
+		
+		public ParseTask(byte flag, ThreadLocal<AbstractDepParser> parsers, DepTreeStream stream, ArrayList<DepTree> chunk)
+		{
+			i_flag    = flag;
+			t_parsers = parsers;
+			s_trees   = stream;
+			a_chunk   = chunk;
+		}
+		
+		public Object call()
+		{
+			AbstractDepParser parser = t_parsers.get();
+			
+			if (i_flag == ShiftPopParser.FLAG_TRAIN_LEXICON)
+				parser.setDepFtrMap(new DepFtrMap(parser.getDepFtrXml()));
+			else
+				parser.setInstanceStore(AbstractInstanceStore.STORE_MEMORY, null);
+			
+			for (DepTree tree : a_chunk)
+			{
+				parser.parse(tree);
+				s_trees.release(tree);
+			}
+			
+			if (i_flag == ShiftPopParser.FLAG_TRAIN_LEXICON)
+				return parser.getDepFtrMap();
+			
+			AbstractInstanceStore store = parser.a_trans.get(0);
+			store.trimToSize();
+			
+			return store;
+		}
+	}
+	
 	protected void printConfig()
 	{
 		System.out.println("* Configurations");
@@ -225,6 +597,9 @@ public class DepTrain extends AbstractTrain
 		System.out.println("- train_file : "+s_trainFile);
 		System.out.println("- model_file : "+s_modelFile);
 		System.out.println("- n_boots    : "+n_boot);
+		if (d_explore > 0)	System.out.println("- explore    : "+d_explore);
+		if (s_initFile != null)	System.out.println("- init_model : "+s_initFile);
+		if (i_hashBits > 0)		System.out.println("- hash_bits  : "+i_hashBits);
 	}
 	
 	static public void main(String[] args)
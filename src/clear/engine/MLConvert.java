@@ -0,0 +1,114 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.engine;
+
+import java.io.BufferedReader;
+
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import clear.train.kernel.AbstractKernel;
+import clear.train.kernel.BinaryInstanceWriter;
+import clear.util.DSUtil;
+import clear.util.IOUtil;
+
+/**
+ * Converts an instance file in the text format to the binary format read by {@link MLTrain} and {@link MLPredict}.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/22/2011
+ */
+public class MLConvert
+{
+	@Option(name="-i", usage="instance file in the text format", required=true, metaVar="REQUIRED")
+	String s_inputFile;
+	@Option(name="-o", usage="instance file in the binary format", required=true, metaVar="REQUIRED")
+	String s_outputFile;
+	
+	public MLConvert(String[] args)
+	{
+		CmdLineParser cmd = new CmdLineParser(this);
+		
+		try
+		{
+			cmd.parseArgument(args);
+			
+			long st = System.currentTimeMillis();
+			BufferedReader       fin  = IOUtil.createBufferedFileReader(s_inputFile);
+			BinaryInstanceWriter fout = null;
+			
+			String line;
+			String[] tok, tmp;	int y, i, n;	int[] x;	double[] v;
+			
+			System.out.println("* Converting: "+s_inputFile);
+			
+			for (n=0; (line = fin.readLine()) != null; n++)
+			{
+				tok = line.split(AbstractKernel.COL_DELIM);
+				y   = Integer.parseInt(tok[0]);
+				
+				// binary if the first instance has no feature value
+				if (fout == null)
+					fout = new BinaryInstanceWriter(s_outputFile, !line.contains(AbstractKernel.FTR_DELIM));
+				
+				if (!line.contains(AbstractKernel.FTR_DELIM))
+					fout.add(y, DSUtil.toIntArray(tok, 1), null);
+				else
+				{
+					x = new int   [tok.length-1];
+					v = new double[tok.length-1];
+					
+					for (i=1; i<tok.length; i++)
+					{
+						tmp    = tok[i].split(AbstractKernel.FTR_DELIM);
+						x[i-1] = Integer.parseInt  (tmp[0]);
+						v[i-1] = Double.parseDouble(tmp[1]);
+					}
+					
+					fout.add(y, x, v);
+				}
+				
+				if (n%100000 == 0)	System.out.print("\r- instances : "+(n/1000)+"K");
+			}
+			
+			fin.close();
+			if (fout != null)	fout.close();
+			
+			long time = System.currentTimeMillis() - st;
+			System.out.println("\r- instances : "+n);
+			System.out.printf("* Converting time: %d hours, %d minutes, %d seconds\n", time/(1000*3600), time/(1000*60), time/1000);
+		}
+		catch (CmdLineException e)
+		{
+			System.err.println(e.getMessage());
+			cmd.printUsage(System.err);
+		}
+		catch (Exception e) {e.printStackTrace();}
+	}
+	
+	static public void main(String[] args)
+	{
+		new MLConvert(args);
+	}
+}
@@ -23,9 +23,24 @@
 */
 package clear.engine;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.apache.commons.compress.utils.IOUtils;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
@@ -34,26 +49,35 @@ import clear.decode.AbstractDecoder;
 import clear.decode.BinaryDecoder;
 import clear.decode.OneVsAllDecoder;
 import clear.train.AbstractTrainer;
+import clear.train.kernel.AbstractInstanceStore;
 import clear.train.kernel.AbstractKernel;
+import clear.train.kernel.BinaryInstanceStore;
 import clear.util.DSUtil;
 import clear.util.IOUtil;
 import clear.util.tuple.JIntDoubleTuple;
+import clear.util.tuple.JIntIntTuple;
+
+import com.carrotsearch.hppc.IntArrayList;
 
 /**
  * Predicts using a classifier.
+ * With multiple threads, the input file is split into chunks (at line boundaries for text files)
+ * that are predicted in parallel by the same decoder; results of the chunks are concatenated in order.
  * @author Jinho D. Choi
- * <b>Last update:</b> 11/8/2010
+ * <b>Last update:</b> 9/22/2011
  */
 public class MLPredict
 {
-	@Option(name="-i", usage="input file", required=true, metaVar="REQUIRED")
+	@Option(name="-i", usage="input file in the text or binary format (see MLConvert)", required=true, metaVar="REQUIRED")
 	String s_inputFile;
 	@Option(name="-o", usage="output file", required=true, metaVar="REQUIRED")
 	String s_outputFile;
 	@Option(name="-m", usage="model file", required=true, metaVar="REQUIRED")
 	String s_modelFile;
-	@Option(name="-s", usage="strategy ::= "+AbstractTrainer.ST_BINARY+" (binary) | "+AbstractTrainer.ST_ONE_VS_ALL+" (one-vs-all; default)", metaVar="OPTIONAL")
+	@Option(name="-s", usage="strategy ::= "+AbstractTrainer.ST_BINARY+" (binary) | "+AbstractTrainer.ST_ONE_VS_ALL+" (one-vs-all; default) | "+AbstractTrainer.ST_MULTICLASS+" (multi-class)", metaVar="OPTIONAL")
 	byte   i_strategy = AbstractTrainer.ST_ONE_VS_ALL;
+	@Option(name="-n", usage="# of threads to predict with (default = 1)", metaVar="OPTIONAL")
+	int    i_numThreads = 1;
 	
 	public MLPredict(String[] args)
 	{
@@ -73,31 +97,43 @@ public class MLPredict
 			else	// One-vs-all
 				decode = new OneVsAllDecoder(s_modelFile);
 			
-			BufferedReader fin  = IOUtil.createBufferedFileReader(s_inputFile);
-			PrintStream    fout = IOUtil.createPrintFileStream(s_outputFile);
-			String line;	String[] tok;	int y;
-			JIntDoubleTuple res;
-			int correct = 0, total;
-			
 			System.out.println("* Predicting   : "+s_inputFile);
-			for (total = 0; (line = fin.readLine()) != null; total++)
+			long pt = System.currentTimeMillis();
+			
+			BinaryInstanceStore store = BinaryInstanceStore.isBinaryFile(s_inputFile) ? new BinaryInstanceStore(s_inputFile) : null;
+			JIntIntTuple result;
+			
+			// compressed text cannot be split by byte offsets, so it is read by a single thread
+			if (i_numThreads > 1 && store == null && IOUtil.isCompressed(s_inputFile))
+			{
+				System.out.println("- compressed input is predicted by one thread");
+				i_numThreads = 1;
+			}
+			
+			if (i_numThreads > 1)
+				result = predictParallel(decode, store);
+			else
 			{
-				tok = line.split(AbstractKernel.COL_DELIM);
-				y   = Integer.parseInt (tok[0]);
+				PrintStream fout = IOUtil.createPrintFileStream(s_outputFile);
 				
-				if (!line.contains(":"))
-					res = decode.predict(DSUtil.toIntArray(tok, 1));
+				if (store != null)
+					result = predict(decode, store, 0, store.size(), fout);
 				else
-					res = decode.predict(DSUtil.toJIntDoubleArray(tok, 1));
+				{
+					BufferedReader fin = IOUtil.createBufferedFileReader(s_inputFile);
+					result = predict(decode, fin, fout);
+					fin.close();
+				}
 				
-				fout.println(res.i+" "+res.d);
-				if (res.i == y)	correct++;
+				fout.close();
 			}
 			
-			fout.close();
-			
+			int correct = result.int1, total = result.int2;
 			long time = System.currentTimeMillis() - st;
+			long ptime = Math.max(1, System.currentTimeMillis() - pt);
+			
 			System.out.printf("* Accuracy     : %f (%d/%d)\n", (double)correct/total, correct, total);
+			System.out.printf("* Throughput   : %.1f instances/sec, threads = %d\n", total * 1000d / ptime, i_numThreads);
 			System.out.printf("* Decoding time: %d hours, %d minutes, %d seconds\n", time/(1000*3600), time/(1000*60), time/1000);
 		}
 		catch (CmdLineException e)
@@ -108,6 +144,235 @@ public class MLPredict
 		catch (Exception e) {e.printStackTrace();}
 	}
 	
+	/**
+	 * Predicts instances in <code>fin</code> and prints the results to <code>fout</code>.
+	 * @return the number of correctly predicted instances and the total number of instances
+	 */
+	private JIntIntTuple predict(AbstractDecoder decode, BufferedReader fin, PrintStream fout) throws IOException
+	{
+		String line;	String[] tok;	int y;
+		JIntDoubleTuple res;
+		int correct = 0, total;
+		
+		for (total = 0; (line = fin.readLine()) != null; total++)
+		{
+			tok = line.split(AbstractKernel.COL_DELIM);
+			y   = Integer.parseInt (tok[0]);
+			
+			if (!line.contains(":"))
+				res = decode.predict(DSUtil.toIntArray(tok, 1));
+			else
+				res = decode.predict(DSUtil.toJIntDoubleArray(tok, 1));
+			
+			fout.println(res.i+" "+res.d);
+			if (res.i == y)	correct++;
+		}
+		
+		return new JIntIntTuple(correct, total);
+	}
+	
+	/**
+	 * Predicts instances in <code>store[begin:end]</code> and prints the results to <code>fout</code>.
+	 * @return the number of correctly predicted instances and the total number of instances
+	 */
+	private JIntIntTuple predict(AbstractDecoder decode, AbstractInstanceStore store, int begin, int end, PrintStream fout)
+	{
+		int[]    x = new int   [store.getMaxLength()];
+		double[] v = new double[x.length];
+		int      i, j, n, correct = 0;
+		
+		IntArrayList               list   = new IntArrayList(x.length);
+		ArrayList<JIntDoubleTuple> tuples = new ArrayList<JIntDoubleTuple>(x.length);
+		JIntDoubleTuple res;
+		
+		for (i=begin; i<end; i++)
+		{
+			n = store.getX(i, x);
+			
+			if (store.isBinary())
+			{
+				list.clear();
+				list.add(x, 0, n);
+				res = decode.predict(list);
+			}
+			else
+			{
+				store.getV(i, v);
+				tuples.clear();
+				for (j=0; j<n; j++)	tuples.add(new JIntDoubleTuple(x[j], v[j]));
+				res = decode.predict(tuples);
+			}
+			
+			fout.println(res.i+" "+res.d);
+			if (res.i == store.getY(i))	correct++;
+		}
+		
+		return new JIntIntTuple(correct, end - begin);
+	}
+	
+	/**
+	 * Splits the input into {@link MLPredict#i_numThreads} chunks predicted in parallel.
+	 * Each chunk is printed to a temporary file; the files are concatenated to the output file in order.
+	 * @param store binary instances; if null, the input file is in the uncompressed text format
+	 */
+	private JIntIntTuple predictParallel(AbstractDecoder decode, BinaryInstanceStore store) throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(i_numThreads);
+		ArrayList<Future<JIntIntTuple>> results = new ArrayList<Future<JIntIntTuple>>(i_numThreads);
+		ArrayList<File> files = new ArrayList<File>(i_numThreads);
+		long[] bounds = (store != null) ? getBounds(store.size()) : getLineBounds();
+		int i, correct = 0, total = 0;
+		File file;
+		
+		try
+		{
+			for (i=0; i<i_numThreads; i++)
+			{
+				file = File.createTempFile("clear-p", ".txt");
+				file.deleteOnExit();
+				files.add(file);
+				results.add(executor.submit(new PredictTask(decode, store, bounds[i], bounds[i+1], file)));
+			}
+			
+			for (Future<JIntIntTuple> result : results)
+			{
+				correct += result.get().int1;
+				total   += result.get().int2;
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		
+		OutputStream fout = IOUtil.createOutputStream(s_outputFile);
+		
+		for (File f : files)
+		{
+			FileInputStream fin = new FileInputStream(f);
+			IOUtils.copy(fin, fout);
+			fin.close();
+			f.delete();
+		}
+		
+		fout.close();
+		return new JIntIntTuple(correct, total);
+	}
+	
+	/** @return boundaries of {@link MLPredict#i_numThreads} chunks of <code>size</code> instances. */
+	private long[] getBounds(int size)
+	{
+		long[] bounds = new long[i_numThreads+1];
+		
+		for (int i=0; i<=i_numThreads; i++)
+			bounds[i] = (long)size * i / i_numThreads;
+		
+		return bounds;
+	}
+	
+	/** @return byte offsets of {@link MLPredict#i_numThreads} chunks of the input file, where each chunk begins at a line. */
+	private long[] getLineBounds() throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(s_inputFile, "r");
+		long[] bounds = new long[i_numThreads+1];
+		long   size   = file.length(), pos;
+		int    i, c;
+		
+		bounds[i_numThreads] = size;
+		
+		for (i=1; i<i_numThreads; i++)
+		{
+			pos = Math.max(size * i / i_numThreads, bounds[i-1]);
+			
+			if (pos > 0)
+			{
+				// the chunk begins after the first newline at or after pos-1
+				file.seek(pos - 1);
+				while ((c = file.read()) >= 0 && c != '\n');
+				pos = file.getFilePointer();
+			}
+			
+			bounds[i] = pos;
+		}
+		
+		file.close();
+		return bounds;
+	}
+	
+	/** Predicts a chunk of the input file. */
+	private class PredictTask implements Callable<JIntIntTuple>
+	{
+		private AbstractDecoder     c_decode;
+		private BinaryInstanceStore s_store;
+		private long                l_begin, l_end;
+		private File                f_output;
+		
+		/** @param store binary instances; if null, <code>begin</code> and <code>end</code> are byte offsets of the text input file */
+		public PredictTask(AbstractDecoder decode, BinaryInstanceStore store, long begin, long end, File output)
+		{
+			c_decode = decode;
+			s_store  = store;
+			l_begin  = begin;
+			l_end    = end;
+			f_output = output;
+		}
+		
+		public JIntIntTuple call() throws Exception
+		{
+			PrintStream  fout = new PrintStream(new BufferedOutputStream(new FileOutputStream(f_output), 1 << 16));
+			JIntIntTuple result;
+			
+			if (s_store != null)
+				result = predict(c_decode, s_store, (int)l_begin, (int)l_end, fout);
+			else
+			{
+				BufferedReader fin = new BufferedReader(new InputStreamReader(new RangeInputStream(s_inputFile, l_begin, l_end)), 1 << 16);
+				result = predict(c_decode, fin, fout);
+				fin.close();
+			}
+			
+			fout.close();
+			return result;
+		}
+	}
+	
+	/** Reads bytes of a file in <code>[begin, end)</code>. */
+	static private class RangeInputStream extends InputStream
+	{
+		private FileInputStream f_in;
+		private long            n_remaining;
+		
+		public RangeInputStream(String filename, long begin, long end) throws IOException
+		{
+			f_in = new FileInputStream(filename);
+			f_in.getChannel().position(begin);
+			n_remaining = end - begin;
+		}
+		
+		public int read() throws IOException
+		{
+			if (n_remaining <= 0)	return -1;
+			n_remaining--;
+			
+			return f_in.read();
+		}
+		
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			if (n_remaining <= 0)	return -1;
+			
+			int n = f_in.read(b, off, (int)Math.min(len, n_remaining));
+			if (n > 0)	n_remaining -= n;
+			
+			return n;
+		}
+		
+		public void close() throws IOException
+		{
+			f_in.close();
+		}
+	}
+	
 	static public void main(String[] args)
 	{
 		new MLPredict(args);
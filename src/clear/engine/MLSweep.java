@@ -0,0 +1,368 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.engine;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import clear.decode.OneVsAllDecoder;
+import clear.model.OneVsAllModel;
+import clear.train.AbstractTrainer;
+import clear.train.MulticlassTrainer;
+import clear.train.OneVsAllTrainer;
+import clear.train.algorithm.AveragedPerceptron;
+import clear.train.algorithm.IAlgorithm;
+import clear.train.algorithm.IMultiAlgorithm;
+import clear.train.algorithm.LibLinearCS;
+import clear.train.algorithm.LibLinearL1;
+import clear.train.algorithm.LibLinearL2;
+import clear.train.algorithm.RRM;
+import clear.train.kernel.AbstractInstanceStore;
+import clear.train.kernel.NoneKernel;
+import clear.train.kernel.SubsetInstanceStore;
+import clear.util.IOUtil;
+import clear.util.tuple.JIntDoubleTuple;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+/**
+ * Evaluates combinations of hyperparameters using k-fold cross-validation.
+ * Instances are loaded once (e.g., a binary instance file saved by <code>DepTrain -x</code>) and shared by all folds;
+ * each pair of a setting and a fold is trained by one thread.
+ * As in {@link clear.experiment.generateCV}, the <code>i</code>'th fold consists of consecutive instances.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/22/2011
+ */
+public class MLSweep
+{
+	@Option(name="-i", usage="instance file in the text or binary format (see MLConvert, DepTrain -x)", required=true, metaVar="REQUIRED")
+	String s_instanceFile;
+	@Option(name="-o", usage="file to save the results table (default = null: standard output only)", metaVar="OPTIONAL")
+	String s_outputFile = null;
+	@Option(name="-a", usage="algorithm ::= "+IAlgorithm.LIBLINEAR_L2+" (default) | "+IAlgorithm.LIBLINEAR_L1+" | "+IAlgorithm.RRM+" | "+IAlgorithm.LIBLINEAR_CS+" | "+IAlgorithm.PERCEPTRON, metaVar="OPTIONAL")
+	String s_algorithm = IAlgorithm.LIBLINEAR_L2;
+	@Option(name="-k", usage="# of folds (default = 5)", metaVar="OPTIONAL")
+	int    i_folds = 5;
+	@Option(name="-n", usage="# of threads; each trains one setting on one fold (default = 2)", metaVar="OPTIONAL")
+	int    i_numThreads = 2;
+	@Option(name="-memory", usage="memory budget in megabytes; limits the number of concurrent trainings (default = 0: no limit)", metaVar="OPTIONAL")
+	int    i_memory = 0;
+	
+	@Option(name="-L", usage="LIB: loss type ::= 1 (L1-loss; default) | 2 (L2-loss)", metaVar="OPTIONAL")
+	byte   i_lossType = 1;
+	@Option(name="-C", usage="LIB, L1, CS: penalties\nRRM: regularizations (default = 0.1)", metaVar="OPTIONAL")
+	String s_c = "0.1";
+	@Option(name="-E", usage="LIB, L1, CS: termination criteria (default = 0.1)\nRRM: learning rates (default = 0.001)", metaVar="OPTIONAL")
+	String s_e = null;
+	@Option(name="-B", usage="LIB, L1, CS: biases (default = -1)", metaVar="OPTIONAL")
+	String s_b = "-1";
+	@Option(name="-K", usage="RRM: max # of iterations\nPERCEPTRON: # of epochs (default = 40)", metaVar="OPTIONAL")
+	String s_k = "40";
+	@Option(name="-M", usage="RRM: initial weights (default = 1.0)", metaVar="OPTIONAL")
+	String s_mu = "1.0";
+	
+	/** Delimiter between values of a hyperparameter (e.g., -C 0.05,0.1,0.2) */
+	static private final String VALUE_DELIM = ",";
+	
+	public MLSweep(String[] args)
+	{
+		CmdLineParser cmd = new CmdLineParser(this);
+		
+		try
+		{
+			cmd.parseArgument(args);
+			if (s_e == null)	s_e = s_algorithm.equals(IAlgorithm.RRM) ? "0.001" : "0.1";
+			
+			NoneKernel kernel = new NoneKernel(s_instanceFile);
+			AbstractInstanceStore store = kernel.a_instances;
+			ArrayList<Setting> settings = getSettings();
+			
+			int concurrency = getConcurrency(kernel);
+			System.out.println("\n* Sweeping: "+settings.size()+" settings x "+i_folds+" folds, "+concurrency+" concurrent trainings");
+			
+			ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+			ArrayList<Future<double[]>> results = new ArrayList<Future<double[]>>();
+			int f;
+			
+			try
+			{
+				for (Setting setting : settings)
+					for (f=0; f<i_folds; f++)
+						results.add(executor.submit(new FoldTask(store, setting, f)));
+				
+				printResults(settings, results);
+			}
+			finally
+			{
+				executor.shutdownNow();
+			}
+		}
+		catch (CmdLineException e)
+		{
+			System.err.println(e.getMessage());
+			cmd.printUsage(System.err);
+		}
+		catch (Exception e) {e.printStackTrace();}
+	}
+	
+	/** @return all combinations of hyperparameters used by the algorithm. */
+	private ArrayList<Setting> getSettings()
+	{
+		ArrayList<Setting> settings = new ArrayList<Setting>();
+		double[] cs = toArray(s_c), es = toArray(s_e), bs = toArray(s_b), ks = toArray(s_k), mus = toArray(s_mu);
+		
+		if (s_algorithm.equals(IAlgorithm.RRM))
+		{
+			for (double k : ks) for (double mu : mus) for (double e : es) for (double c : cs)
+				settings.add(new Setting(c, e, 0, (int)k, mu));
+		}
+		else if (s_algorithm.equals(IAlgorithm.PERCEPTRON))
+		{
+			for (double k : ks)
+				settings.add(new Setting(0, 0, 0, (int)k, 0));
+		}
+		else
+		{
+			for (double c : cs) for (double e : es) for (double b : bs)
+				settings.add(new Setting(c, e, b, 0, 0));
+		}
+		
+		return settings;
+	}
+	
+	private double[] toArray(String values)
+	{
+		String[] tok = values.split(VALUE_DELIM);
+		double[] arr = new double[tok.length];
+		
+		for (int i=0; i<tok.length; i++)
+			arr[i] = Double.parseDouble(tok[i].trim());
+		
+		return arr;
+	}
+	
+	/** @return the number of concurrent trainings within {@link MLSweep#i_memory}. */
+	private int getConcurrency(NoneKernel kernel)
+	{
+		if (i_memory <= 0)	return i_numThreads;
+		
+		// model (L x D) + weight and work buffers of a label (D + N)
+		long perTask = 8L * kernel.L * kernel.D + 8L * kernel.D + 17L * kernel.N;
+		long budget  = (long)i_memory * 1024 * 1024;
+		
+		return (int)Math.max(1, Math.min(i_numThreads, budget / perTask));
+	}
+	
+	/** Waits for all trainings and prints the accuracy of each fold, the overall accuracy and training time of each setting. */
+	private void printResults(ArrayList<Setting> settings, ArrayList<Future<double[]>> results) throws Exception
+	{
+		PrintStream fout = (s_outputFile != null) ? IOUtil.createPrintFileStream(s_outputFile) : null;
+		StringBuilder build = new StringBuilder();
+		int i, f;
+		
+		build.append(String.format("%-32s", "setting"));
+		for (f=0; f<i_folds; f++)	build.append(String.format(" %8s", "fold"+f));
+		build.append(String.format(" %8s %8s %8s", "acc", "stdev", "time(s)"));
+		
+		printLine(build.toString(), fout);
+		
+		for (i=0; i<settings.size(); i++)
+		{
+			double[] accs = new double[i_folds];
+			double correct = 0, total = 0, time = 0, mean = 0, var = 0;
+			double[] result;
+			
+			for (f=0; f<i_folds; f++)
+			{
+				result  = results.get(i * i_folds + f).get();
+				accs[f] = (result[1] > 0) ? result[0] / result[1] : 0;
+				correct += result[0];
+				total   += result[1];
+				time    += result[2];
+				mean    += accs[f] / i_folds;
+			}
+			
+			for (f=0; f<i_folds; f++)
+				var += (accs[f] - mean) * (accs[f] - mean) / i_folds;
+			
+			build.setLength(0);
+			build.append(String.format("%-32s", settings.get(i)));
+			for (f=0; f<i_folds; f++)	build.append(String.format(" %8.4f", accs[f]));
+			build.append(String.format(" %8.4f %8.4f %8.1f", correct / total, Math.sqrt(var), time / 1000));
+			
+			printLine(build.toString(), fout);
+		}
+		
+		if (fout != null)	fout.close();
+	}
+	
+	private void printLine(String line, PrintStream fout)
+	{
+		System.out.println(line);
+		if (fout != null)	fout.println(line);
+	}
+	
+	/** @return a new algorithm with the hyperparameters of <code>setting</code>. */
+	private IAlgorithm getAlgorithm(Setting setting)
+	{
+		if (s_algorithm.equals(IAlgorithm.RRM))
+			return new RRM(setting.k, setting.mu, setting.e, setting.c);
+		else if (s_algorithm.equals(IAlgorithm.LIBLINEAR_L1))
+			return new LibLinearL1(setting.c, setting.e, setting.b);
+		else if (s_algorithm.equals(IAlgorithm.LIBLINEAR_CS))
+			return new LibLinearCS(setting.c, setting.e, setting.b);
+		else if (s_algorithm.equals(IAlgorithm.PERCEPTRON))
+			return new AveragedPerceptron(setting.k);
+		else
+			return new LibLinearL2(i_lossType, setting.c, setting.e, setting.b);
+	}
+	
+	/** Combination of hyperparameters. */
+	private class Setting
+	{
+		double c, e, b, mu;
+		int    k;
+		
+		public Setting(double c, double e, double b, int k, double mu)
+		{
+			this.c  = c;
+			this.e  = e;
+			this.b  = b;
+			this.k  = k;
+			this.mu = mu;
+		}
+		
+		public String toString()
+		{
+			if (s_algorithm.equals(IAlgorithm.RRM))
+				return "k="+k+" mu="+mu+" eta="+e+" c="+c;
+			else if (s_algorithm.equals(IAlgorithm.PERCEPTRON))
+				return "epochs="+k;
+			else
+				return "c="+c+" e="+e+" b="+b;
+		}
+	}
+	
+	/** Trains a setting on all folds but one and evaluates on the remaining fold. */
+	private class FoldTask implements Callable<double[]>
+	{
+		private AbstractInstanceStore s_store;
+		private Setting               t_setting;
+		private int                   i_fold;
+		
+		public FoldTask(AbstractInstanceStore store, Setting setting, int fold)
+		{
+			s_store   = store;
+			t_setting = setting;
+			i_fold    = fold;
+		}
+		
+		/** @return the number of correctly predicted instances, the number of test instances and training time in milliseconds. */
+		public double[] call() throws Exception
+		{
+			int size = s_store.size(), stop = (int)Math.ceil((double)size / i_folds), i;
+			IntArrayList trn = new IntArrayList(size), tst = new IntArrayList(stop);
+			
+			for (i=0; i<size; i++)
+			{
+				if (i / stop == i_fold)	tst.add(i);
+				else					trn.add(i);
+			}
+			
+			long st = System.currentTimeMillis();
+			
+			NoneKernel kernel = new NoneKernel();
+			kernel.add(new SubsetInstanceStore(s_store, trn.toArray()));
+			
+			IAlgorithm algorithm = getAlgorithm(t_setting);
+			AbstractTrainer trainer;
+			
+			if (algorithm instanceof IMultiAlgorithm)
+				trainer = new MulticlassTrainer((PrintStream)null, algorithm, kernel);
+			else
+			{
+				// folds are trained in parallel, so their progress is not reported
+				trainer = new OneVsAllTrainer(algorithm, kernel, 1);
+				trainer.setListener(null);
+				trainer.train((PrintStream)null);
+			}
+			
+			long time = System.currentTimeMillis() - st;
+			System.out.println("- "+t_setting+", fold "+i_fold+": "+time+" ms");
+			
+			return new double[]{evaluate((OneVsAllModel)trainer.getModel(), tst), tst.size(), time};
+		}
+		
+		/** @return the number of correctly predicted instances in <code>indices</code>. */
+		private int evaluate(OneVsAllModel model, IntArrayList indices)
+		{
+			OneVsAllDecoder decoder = new OneVsAllDecoder(model);
+			
+			int[]    x = new int   [s_store.getMaxLength()];
+			double[] v = new double[x.length];
+			int      i, j, n, idx, correct = 0;
+			
+			IntArrayList               list   = new IntArrayList(x.length);
+			ArrayList<JIntDoubleTuple> tuples = new ArrayList<JIntDoubleTuple>(x.length);
+			JIntDoubleTuple res;
+			
+			for (i=0; i<indices.size(); i++)
+			{
+				idx = indices.get(i);
+				n   = s_store.getX(idx, x);
+				
+				if (s_store.isBinary())
+				{
+					list.clear();
+					list.add(x, 0, n);
+					res = decoder.predict(list);
+				}
+				else
+				{
+					s_store.getV(idx, v);
+					tuples.clear();
+					for (j=0; j<n; j++)	tuples.add(new JIntDoubleTuple(x[j], v[j]));
+					res = decoder.predict(tuples);
+				}
+				
+				if (res.i == s_store.getY(idx))	correct++;
+			}
+			
+			return correct;
+		}
+	}
+	
+	static public void main(String[] args)
+	{
+		new MLSweep(args);
+	}
+}
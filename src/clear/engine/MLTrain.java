@@ -27,12 +27,21 @@ import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 
+import clear.model.OneVsAllModel;
 import clear.train.AbstractTrainer;
 import clear.train.BinaryTrainer;
+import clear.train.MulticlassTrainer;
 import clear.train.OneVsAllTrainer;
+import clear.train.algorithm.AveragedPerceptron;
 import clear.train.algorithm.IAlgorithm;
+import clear.train.algorithm.IMultiAlgorithm;
+import clear.train.algorithm.IWarmStartAlgorithm;
+import clear.train.algorithm.LibLinearCS;
+import clear.train.algorithm.LibLinearL1;
 import clear.train.algorithm.LibLinearL2;
 import clear.train.algorithm.RRM;
+import clear.train.kernel.BinaryInstanceStore;
+import clear.train.kernel.InstanceStore;
 import clear.train.kernel.NoneKernel;
 
 /**
@@ -42,29 +51,52 @@ import clear.train.kernel.NoneKernel;
  */
 public class MLTrain
 {
-	@Option(name="-i", usage="instance file", required=true, metaVar="REQUIRED")
+	@Option(name="-i", usage="instance file in the text or binary format (see MLConvert)", required=true, metaVar="REQUIRED")
 	String s_instanceFile;
 	@Option(name="-m", usage="model file", required=true, metaVar="REQUIRED")
 	String s_modelFile;
-	@Option(name="-a", usage="algorithm ::= "+IAlgorithm.LIBLINEAR_L2+" (LibLinear L2-SVM; default) |\n              "+IAlgorithm.RRM+" (Robust Risk Minimization)", metaVar="OPTIONAL")
+	@Option(name="-a", usage="algorithm ::= "+IAlgorithm.LIBLINEAR_L2+" (LibLinear L2-SVM; default) |\n              "+IAlgorithm.LIBLINEAR_L1+" (LibLinear L1-regularized L2-SVM; sparse model) |\n              "+IAlgorithm.RRM+" (Robust Risk Minimization) |\n              "+IAlgorithm.LIBLINEAR_CS+" (LibLinear multi-class SVM by Crammer and Singer) |\n              "+IAlgorithm.PERCEPTRON+" (averaged perceptron)", metaVar="OPTIONAL")
 	String s_algorithm = IAlgorithm.LIBLINEAR_L2;
-	@Option(name="-s", usage="strategy ::= "+AbstractTrainer.ST_BINARY+" (binary) | "+AbstractTrainer.ST_ONE_VS_ALL+" (one-vs-all; default)", metaVar="OPTIONAL")
+	@Option(name="-s", usage="strategy ::= "+AbstractTrainer.ST_BINARY+" (binary) | "+AbstractTrainer.ST_ONE_VS_ALL+" (one-vs-all; default) | "+AbstractTrainer.ST_MULTICLASS+" (multi-class)", metaVar="OPTIONAL")
 	byte   i_strategy = AbstractTrainer.ST_ONE_VS_ALL;
 	@Option(name="-n", usage="# of threads to train with (default = 2)", metaVar="OPTIONAL")
 	int    i_numThreads = 2;
 	
+	@Option(name="-d", usage="1 to merge identical instances before training (default = 0)", metaVar="OPTIONAL")
+	byte   i_dedup = 0;
+	@Option(name="-l", usage="1 to copy instances in a binary instance file into memory instead of training on the mapped file; faster but uses more memory (default = 0)", metaVar="OPTIONAL")
+	byte   i_load = 0;
+	@Option(name="-b", usage="1 to save the model in the binary format; one-vs-all and multi-class only (default = 0)", metaVar="OPTIONAL")
+	byte   i_binaryModel = 0;
+	@Option(name="-w", usage="LIB, PERCEPTRON: one-vs-all model file whose weights are used as initial weights (default = null)", metaVar="OPTIONAL")
+	String s_initFile = null;
+	
 	@Option(name="-L", usage="LIB: loss type ::= 1 (L1-loss; default) | 2 (L2-loss)", metaVar="OPTIONAL")
 	byte   i_lossType = 1;
-	@Option(name="-E", usage="LIB: termination criterion (default = 0.1)\nRRM: learning rate (default = 0.001)", metaVar="OPTIONAL")
+	@Option(name="-E", usage="LIB, L1, CS: termination criterion (default = 0.1)\nRRM: learning rate (default = 0.001)", metaVar="OPTIONAL")
 	double d_e = 0.1;
-	@Option(name="-B", usage="LIB: bias (default = -1)", metaVar="OPTIONAL")
+	@Option(name="-B", usage="LIB, L1, CS: bias (default = -1)", metaVar="OPTIONAL")
 	double d_bias = -1;
-	@Option(name="-C", usage="LIB: penalty (default = 0.1)\nRRM: regularization (default = 0.1)", metaVar="OPTIONAL")
+	@Option(name="-H", usage="LIB: 1 to train labels with many instances using all threads; not deterministic (default = 0)", metaVar="OPTIONAL")
+	byte   i_hogwild = 0;
+	@Option(name="-I", usage="LIB: max # of epochs per label (default = 1000)\nCS: max # of epochs (default = 1000)", metaVar="OPTIONAL")
+	int    i_maxIter = 1000;
+	@Option(name="-R", usage="LIB: seed to shuffle instances in each epoch; if negative, no shuffling (default = -1)\nCS: seed to shuffle instances in each epoch; if negative, 0 is used", metaVar="OPTIONAL")
+	long   l_seed = -1;
+	@Option(name="-T", usage="LIB: portion of instances held out for early stopping (default = 0: no early stopping)", metaVar="OPTIONAL")
+	double d_heldOut = 0;
+	@Option(name="-P", usage="LIB: # of epochs without improving held-out accuracy before stopping (default = 5)", metaVar="OPTIONAL")
+	int    i_patience = 5;
+	@Option(name="-V", usage="LIB: 1 to print statistics of every epoch (default = 0)", metaVar="OPTIONAL")
+	byte   i_verbose = 0;
+	@Option(name="-C", usage="LIB, L1, CS: penalty (default = 0.1)\nRRM: regularization (default = 0.1)", metaVar="OPTIONAL")
 	double d_c = 0.1;
-	@Option(name="-K", usage="RRM: max # of iterations (default = 40)", metaVar="OPTIONAL")
+	@Option(name="-K", usage="RRM: max # of iterations (default = 40)\nPERCEPTRON: # of epochs (default = 40)", metaVar="OPTIONAL")
 	int    i_K = 40;
 	@Option(name="-M", usage="RRM: initial weights (default = 1.0)", metaVar="OPTIONAL")
 	double d_mu = 1.0;
+	@Option(name="-S", usage="RRM: max # of instances to measure F1 score after each round (default = 0: all)", metaVar="OPTIONAL")
+	int    n_f1Sample = 0;
 	
 	public MLTrain(String[] args)
 	{
@@ -77,20 +109,78 @@ public class MLTrain
 			long st = System.currentTimeMillis();
 			IAlgorithm algorithm;
 			
-			if (s_algorithm == IAlgorithm.LIBLINEAR_L2)
+			if (s_algorithm.equals(IAlgorithm.LIBLINEAR_L2))
+			{
+				LibLinearL2 lib = new LibLinearL2(i_lossType, d_c, d_e, d_bias, i_hogwild == 1);
+				lib.setMaxIterations(i_maxIter);
+				lib.setShuffle(l_seed);
+				lib.setEarlyStopping(d_heldOut, i_patience);
+				lib.setVerbose(i_verbose == 1);
+				algorithm = lib;
+			}
+			else if (s_algorithm.equals(IAlgorithm.LIBLINEAR_L1))
+			{
+				algorithm = new LibLinearL1(d_c, d_e, d_bias);
+			}
+			else if (s_algorithm.equals(IAlgorithm.LIBLINEAR_CS))
 			{
-				algorithm = new LibLinearL2(i_lossType, d_c, d_e, d_bias);
+				LibLinearCS cs = new LibLinearCS(d_c, d_e, d_bias);
+				cs.setMaxIterations(i_maxIter);
+				cs.setSeed(Math.max(0, l_seed));
+				algorithm = cs;
+			}
+			else if (s_algorithm.equals(IAlgorithm.PERCEPTRON))
+			{
+				algorithm = new AveragedPerceptron(i_K);
 			}
 			else	// RRM
 			{
 				d_e = 0.001;
-				algorithm = new RRM(i_K, d_mu, d_e, d_c);
+				RRM rrm = new RRM(i_K, d_mu, d_e, d_c);
+				rrm.setF1Sample(n_f1Sample);
+				algorithm = rrm;
+			}
+			
+			NoneKernel kernel;
+			
+			if (i_load == 1 && BinaryInstanceStore.isBinaryFile(s_instanceFile))
+			{
+				InstanceStore store = new InstanceStore(false);
+				store.addAll(new BinaryInstanceStore(s_instanceFile));
+				
+				kernel = new NoneKernel();
+				kernel.add(store);
+			}
+			else
+				kernel = new NoneKernel(s_instanceFile);
+			
+			if (i_dedup == 1)	kernel.deduplicate(new InstanceStore(false));
+			
+			if (s_initFile != null)
+			{
+				OneVsAllModel model = new OneVsAllModel(s_initFile);
+				kernel.D = Math.max(kernel.D, model.n_features);
+				
+				if (algorithm instanceof IWarmStartAlgorithm)
+					((IWarmStartAlgorithm)algorithm).setInitialModel(model);
+				else
+					System.err.println("Warm start is not supported by the algorithm: "+s_algorithm);
 			}
 			
 			if (i_strategy == AbstractTrainer.ST_BINARY)
-				new BinaryTrainer(s_modelFile, algorithm, new NoneKernel(s_instanceFile));
-			else	// One-vs-all
-				new OneVsAllTrainer(s_modelFile, algorithm, new NoneKernel(s_instanceFile), i_numThreads);
+				new BinaryTrainer(s_modelFile, algorithm, kernel);
+			else
+			{
+				AbstractTrainer trainer;
+				
+				if (i_strategy == AbstractTrainer.ST_MULTICLASS || algorithm instanceof IMultiAlgorithm)
+					trainer = new MulticlassTrainer(algorithm, kernel);
+				else	// One-vs-all
+					trainer = new OneVsAllTrainer(algorithm, kernel, i_numThreads);
+				
+				trainer.setBinaryModel(i_binaryModel == 1);
+				trainer.train(s_modelFile);
+			}
 			
 			long time = System.currentTimeMillis() - st;
 			System.out.printf("\n* Training time: %d hours, %d minutes\n", time/(1000*3600), time/(1000*60));
@@ -100,6 +190,7 @@ public class MLTrain
 			System.err.println(e.getMessage());
 			cmd.printUsage(System.err);
 		}
+		catch (Exception e) {e.printStackTrace();}
 	}
 	
 	static public void main(String[] args)
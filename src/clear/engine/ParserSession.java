@@ -0,0 +1,176 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.engine;
+
+import java.util.List;
+
+import org.w3c.dom.Element;
+
+import clear.dep.DepNode;
+import clear.dep.DepTree;
+import clear.helper.POSTagger;
+import clear.parse.AbstractDepParser;
+import clear.parse.Lemmatizer;
+import clear.parse.ShiftPopParser;
+
+/**
+ * In-process dependency parsing session.
+ * Models are loaded once by the constructor; {@link ParserSession#parse(List)} does no file or console I/O.
+ * A session is thread-confined: use {@link ParserSession#fork()} to get a session for another thread,
+ * which shares the feature templates, lexica and model of this session.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/12/2011
+ */
+public class ParserSession extends AbstractCommon
+{
+	/** Part-of-speech tagger (shared across forked sessions) */
+	private POSTagger  g_postagger  = null;
+	/** Lemmatizer (shared across forked sessions) */
+	private Lemmatizer g_lemmatizer = null;
+	/** Dependency parser (one per session) */
+	private AbstractDepParser g_parser;
+	
+	/**
+	 * Loads the configuration and the dependency model.
+	 * @param configFile configuration file (the same one used by {@link DepPredict})
+	 * @param modelFile  dependency model file
+	 */
+	public ParserSession(String configFile, String modelFile) throws Exception
+	{
+		s_configFile = configFile;
+		initConfig();
+		
+		g_parser = getDepParser(modelFile);
+		g_parser.setLanguage(s_language);
+	}
+	
+	private ParserSession(ParserSession session)
+	{
+		s_configFile  = session.s_configFile;
+		s_language    = session.s_language;
+		s_format      = session.s_format;
+		s_depParser   = session.s_depParser;
+		e_config      = session.e_config;
+		g_postagger   = session.g_postagger;
+		g_lemmatizer  = session.g_lemmatizer;
+		
+		AbstractDepParser parser = session.g_parser;
+		String algorithm = (parser instanceof ShiftPopParser) ? AbstractDepParser.ALG_SHIFT_POP : AbstractDepParser.ALG_SHIFT_EAGER;
+		
+		g_parser = getDepParser(algorithm, parser.getDepFtrXml(), parser.getDepFtrMap(), parser.getDecoder());
+		g_parser.setLanguage(s_language);
+	}
+	
+	/** @return a new session sharing the models of this session, to be confined to another thread. */
+	public ParserSession fork()
+	{
+		return new ParserSession(this);
+	}
+	
+	protected void initElements()
+	{
+		Element ePredict = getElement(e_config, TAG_PREDICT);
+		Element element;
+		
+		if (ePredict == null)	return;
+		
+		if ((element = getElement(ePredict, TAG_PREDICT_POS_MODEL)) != null)
+			g_postagger = new POSTagger(element.getTextContent().trim());
+		
+		if ((element = getElement(ePredict, TAG_PREDICT_MORPH_DICT)) != null)
+			g_lemmatizer = new Lemmatizer(element.getTextContent().trim());
+	}
+	
+	/**
+	 * Part-of-speech tags, lemmatizes and parses <code>tokens</code>.
+	 * Requires <code>pos_model</code> in the configuration file.
+	 * @param tokens word forms of a sentence
+	 * @return the dependency tree of <code>tokens</code>
+	 */
+	public DepTree parse(List<String> tokens)
+	{
+		if (g_postagger == null)
+			throw new IllegalStateException("'"+TAG_PREDICT_POS_MODEL+"' is not specified in "+s_configFile);
+		
+		DepTree tree = toDepTree(tokens, null);
+		
+		synchronized (g_postagger)
+		{
+			g_postagger.postag(tree);
+		}
+		
+		return parseAux(tree);
+	}
+	
+	/**
+	 * Lemmatizes and parses <code>tokens</code> that are already part-of-speech tagged.
+	 * @param tokens word forms of a sentence
+	 * @param tags   part-of-speech tags of <code>tokens</code>
+	 * @return the dependency tree of <code>tokens</code>
+	 */
+	public DepTree parse(List<String> tokens, List<String> tags)
+	{
+		if (tokens.size() != tags.size())
+			throw new IllegalArgumentException("# of tokens ("+tokens.size()+") != # of tags ("+tags.size()+")");
+		
+		return parseAux(toDepTree(tokens, tags));
+	}
+	
+	/**
+	 * Parses <code>tree</code> whose nodes already contain forms, lemmas and part-of-speech tags.
+	 * @return <code>tree</code> with heads and dependency labels
+	 */
+	public DepTree parse(DepTree tree)
+	{
+		g_parser.parse(tree);
+		return tree;
+	}
+	
+	private DepTree parseAux(DepTree tree)
+	{
+		if (g_lemmatizer != null)	g_lemmatizer.lemmatize(tree);
+		else						Lemmatizer.defaultLemmatize(tree);
+		
+		return parse(tree);
+	}
+	
+	private DepTree toDepTree(List<String> tokens, List<String> tags)
+	{
+		DepTree tree = new DepTree();
+		DepNode node;
+		int i, n = tokens.size();
+		
+		for (i=0; i<n; i++)
+		{
+			node      = new DepNode();
+			node.id   = i+1;
+			node.form = tokens.get(i);
+			if (tags != null)	node.pos = tags.get(i);
+			
+			tree.add(node);
+		}
+		
+		return tree;
+	}
+}
@@ -172,6 +172,7 @@ public class DepDevelop extends AbstractTrain
 		DepTree tree;	int n;
 		
 		parser.setLanguage(s_language);
+		parser.setInstanceStore(i_storeType, s_storeDir);
 		reader.setLanguage(s_language);
 		
 		for (n=0; (tree = reader.nextTree()) != null; n++)
@@ -177,6 +177,7 @@ public class SRLDevelop extends AbstractTrain
 		DepTree tree;	int n;
 		
 		labeler.setLanguage(s_language);
+		labeler.setInstanceStore(i_storeType, s_storeDir);
 		reader.setLanguage(s_language);
 		
 		for (n=0; (tree = reader.nextTree()) != null; n++)
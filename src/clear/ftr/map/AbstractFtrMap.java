@@ -94,7 +94,70 @@ abstract public class AbstractFtrMap
 	{
 		map.put(key, map.get(key)+1);
 	}
+	
+	/** Adds counts of labels and features collected in <code>map</code>, which uses the same feature templates. */
+	public void merge(AbstractFtrMap map)
+	{
+		int i;
+		
+		mergeKeys(m_label, map.m_label);
+		
+		for (i=0; i<m_ngram.size(); i++)
+			mergeKeys(m_ngram.get(i), map.m_ngram.get(i));
+		
+		for (i=0; i<m_extra.size(); i++)
+			mergeKeys(m_extra.get(i), map.m_extra.get(i));
+	}
+	
+	protected void mergeKeys(ObjectIntOpenHashMap<String> map, ObjectIntOpenHashMap<String> counts)
+	{
+		String key;
+		
+		for (ObjectCursor<String> str : counts.keys())
+		{
+			key = str.value;
+			map.put(key, map.get(key)+counts.get(key));
+		}
+	}
 
+	/**
+	 * Adds labels and features in <code>map</code> whose counts are greater than the cutoffs in <code>xml</code>.
+	 * This map must be loaded from a lexicon file; new labels and features are indexed after the existing ones
+	 * so that indices of the existing ones do not change.
+	 * @param map map containing counts of labels and features (e.g., collected from new training data)
+	 */
+	public void extend(AbstractFtrMap map, AbstractFtrXml xml)
+	{
+		int i;
+		
+		for (ObjectCursor<String> str : map.m_label.keys())
+		{
+			if (map.m_label.get(str.value) > xml.n_cutoff_label && !m_label.containsKey(str.value))
+			{
+				a_label.add(str.value);
+				m_label.put(str.value, a_label.size());
+			}
+		}
+		
+		for (i=0; i<m_ngram.size(); i++)
+			n_ngram[i] = extendKeys(m_ngram.get(i), map.m_ngram.get(i), xml.n_cutoff_ngram);
+		
+		for (i=0; i<m_extra.size(); i++)
+			n_extra[i] = extendKeys(m_extra.get(i), map.m_extra.get(i), xml.n_cutoff_extra);
+	}
+	
+	/** @return the size of <code>map</code> after adding keys in <code>counts</code> whose counts are greater than <code>cutoff</code>. */
+	protected int extendKeys(ObjectIntOpenHashMap<String> map, ObjectIntOpenHashMap<String> counts, int cutoff)
+	{
+		for (ObjectCursor<String> str : counts.keys())
+		{
+			if (counts.get(str.value) > cutoff && !map.containsKey(str.value))
+				map.put(str.value, map.size()+1);
+		}
+		
+		return map.size();
+	}
+	
 //	=========================== Save ===========================
 
 	public void save(AbstractFtrXml xml, String lexiconFile)
@@ -139,6 +202,42 @@ abstract public class AbstractFtrMap
 			saveHashMap(fout, m_extra.get(i), xml.n_cutoff_extra);
 	}
 	
+	/**
+	 * Saves this map loaded from a lexicon file (e.g., after {@link AbstractFtrMap#extend(AbstractFtrMap, AbstractFtrXml)}).
+	 * Labels and features are saved in the order of their indices so that loading the file gives the same indices.
+	 */
+	public void saveIndexed(String lexiconFile)
+	{
+		try
+		{
+			PrintStream fout = IOUtil.createPrintFileStream(lexiconFile);
+			int i;
+			
+			fout.println(a_label.size());
+			for (String label : a_label)	fout.println(label);
+			
+			fout.println(m_ngram.size());
+			for (i=0; i<m_ngram.size(); i++)	saveIndexedMap(fout, m_ngram.get(i));
+			
+			fout.println(m_extra.size());
+			for (i=0; i<m_extra.size(); i++)	saveIndexedMap(fout, m_extra.get(i));
+			
+			fout.close();
+		}
+		catch (Exception e) {e.printStackTrace();}
+	}
+	
+	protected void saveIndexedMap(PrintStream fout, ObjectIntOpenHashMap<String> map)
+	{
+		String[] keys = new String[map.size()];
+		
+		for (ObjectCursor<String> str : map.keys())
+			keys[map.get(str.value)-1] = str.value;
+		
+		fout.println(keys.length);
+		for (String key : keys)	fout.println(key);
+	}
+	
 	protected void saveHashMap(PrintStream fout, ObjectIntOpenHashMap<String> map, int cutoff)
 	{
 		String key;	int value;
@@ -280,6 +379,12 @@ abstract public class AbstractFtrMap
 		return map;
 	}
 	
+	/** @return the number of labels. */
+	public int getLabelSize()
+	{
+		return a_label.size();
+	}
+	
 	public String indexToLabel(int index)
 	{
 		return a_label.get(index);
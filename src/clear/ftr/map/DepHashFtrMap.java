@@ -0,0 +1,284 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.ftr.map;
+
+import java.io.BufferedReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import clear.ftr.xml.DepFtrXml;
+import clear.util.IOUtil;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.ObjectIntOpenHashMap;
+
+/**
+ * Dependency feature map whose feature indices are hashes of feature strings; no lexicon pass is needed.
+ * N-gram and punctuation features are given 31-bit hash values as their indices in feature blocks of size {@link DepHashFtrMap#BLOCK_SIZE},
+ * and the resulting indices are hashed again into <code>[1, 2^bits]</code> by {@link DepHashFtrMap#hashFeatureArray(IntArrayList)}.
+ * Labels are indexed in the order they are first seen more than the label cutoff times.
+ * During training, n-gram features seen no more than the n-gram cutoff times are dropped,
+ * where the counts are estimated by a count-min sketch instead of storing feature strings.
+ * Punctuation is recognized by forms consisting of neither letters nor digits.
+ * Label indices and cutoffs depend on the order instances are seen, so instances must be collected by a single thread
+ * while counting (see {@link DepHashFtrMap#setCounting(boolean)}); lookups after counting are thread-safe.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/22/2011
+ */
+public class DepHashFtrMap extends DepFtrMap
+{
+	/** First line of lexicon files saved by this map */
+	static public final String HASH_HEADER = "hash";
+	/** Size of each feature block; indices are allowed to overflow */
+	static public final int    BLOCK_SIZE  = 0x61C88647;
+	
+	/** Number of rows in the count-min sketch */
+	static private final int SKETCH_DEPTH = 4;
+	/** Maximum number of bits of the width of the count-min sketch */
+	static private final int SKETCH_BITS  = 20;
+	
+	/** Feature indices are in <code>[1, 2^i_bits]</code> */
+	private int i_bits;
+	private int n_cutoff_label;
+	private int n_cutoff_ngram;
+	/** Number of bits of the width of {@link DepHashFtrMap#a_sketch} */
+	private int i_sketchBits;
+	/** Count-min sketch of n-gram features; null if there is no cutoff or not training */
+	private AtomicIntegerArray a_sketch;
+	/** Counts of labels not yet indexed; null if not training */
+	private ObjectIntOpenHashMap<String> m_labelCount;
+	/** If true, n-gram features and labels are counted */
+	private volatile boolean b_count;
+	
+	/** For training: hashes features into <code>2^bits</code> dimensions. */
+	public DepHashFtrMap(DepFtrXml xml, int bits)
+	{
+		super(xml);
+		
+		if (bits < 1 || bits > 30)
+			throw new IllegalArgumentException("The number of bits must be in [1, 30]: "+bits);
+		
+		i_bits         = bits;
+		n_cutoff_label = xml.n_cutoff_label;
+		n_cutoff_ngram = xml.n_cutoff_ngram;
+		a_label        = new ArrayList<String>();
+		m_labelCount   = new ObjectIntOpenHashMap<String>();
+		b_count        = true;
+		initBlocks(xml.a_ngram_templates.length);
+		
+		if (n_cutoff_ngram > 0)
+		{
+			i_sketchBits = Math.min(bits, SKETCH_BITS);
+			a_sketch     = new AtomicIntegerArray(SKETCH_DEPTH << i_sketchBits);
+		}
+	}
+	
+	/** For decoding: loads a lexicon file saved by {@link DepHashFtrMap#save(String)}. */
+	public DepHashFtrMap(BufferedReader fin)
+	{
+		super(fin);
+	}
+	
+	private void initBlocks(int nNgram)
+	{
+		n_ngram = new int[nNgram];
+		n_extra = new int[]{BLOCK_SIZE};
+		Arrays.fill(n_ngram, BLOCK_SIZE);
+	}
+	
+	/** @return true if <code>fin</code> begins with a lexicon file saved by this map; <code>fin</code> is not moved. */
+	static public boolean isHashed(BufferedReader fin) throws Exception
+	{
+		fin.mark(HASH_HEADER.length() + 2);
+		String line = fin.readLine();
+		fin.reset();
+		
+		return HASH_HEADER.equals(line);
+	}
+	
+	/** Stops counting features and labels so that no more labels are added (e.g., after collecting training instances). */
+	public void setCounting(boolean count)
+	{
+		b_count = count;
+	}
+	
+	/** @return the number of features including the bias. */
+	public int getFeatureSize()
+	{
+		return (1 << i_bits) + 1;
+	}
+	
+	/** Replaces feature indices in <code>arr</code> with their hash values, and sorts them removing duplicates. */
+	public void hashFeatureArray(IntArrayList arr)
+	{
+		int[] buffer = arr.buffer;
+		int   i, j, n = arr.size();
+		
+		for (i=0; i<n; i++)
+			buffer[i] = (mix(buffer[i]) >>> (32 - i_bits)) + 1;
+		
+		Arrays.sort(buffer, 0, n);
+		
+		for (i=1, j=1; i<n; i++)
+			if (buffer[i] != buffer[j-1])	buffer[j++] = buffer[i];
+		
+		if (n > 0)	arr.elementsCount = j;
+	}
+	
+//	=========================== Lookup ===========================
+	
+	/** @return the hash value of <code>ftr</code> for the <code>index</code>'th n-gram templates, or -1 if it is not seen enough. */
+	public int ngramToIndex(int index, String ftr)
+	{
+		int hash = hash(ftr, index);
+		
+		if (a_sketch != null && count(hash) <= n_cutoff_ngram)
+			return -1;
+		
+		return hash & Integer.MAX_VALUE;
+	}
+	
+	/** @return the hash value of <code>ftr</code> if it is punctuation; otherwise, -1. */
+	public int extraToIndex(int index, String ftr)
+	{
+		return isPunctuation(ftr) ? hash(ftr, ~index) & Integer.MAX_VALUE : -1;
+	}
+	
+	/** While counting, labels seen more than the label cutoff times are added. */
+	synchronized public int labelToIndex(String label)
+	{
+		int index = m_label.get(label);
+		if (index > 0 || !b_count)	return index - 1;
+		
+		int count = m_labelCount.get(label) + 1;
+		
+		if (count > n_cutoff_label)
+		{
+			a_label.add(label);
+			m_label.put(label, a_label.size());
+			m_labelCount.remove(label);
+			return a_label.size() - 1;
+		}
+		
+		m_labelCount.put(label, count);
+		return -1;
+	}
+	
+	/** @return true if <code>form</code> consists of neither letters nor digits. */
+	private boolean isPunctuation(String form)
+	{
+		int i, n = form.length();
+		
+		for (i=0; i<n; i++)
+			if (Character.isLetterOrDigit(form.charAt(i)))	return false;
+		
+		return n > 0;
+	}
+	
+	/**
+	 * Increments the count of <code>hash</code> if counting.
+	 * @return the estimated count of <code>hash</code>.
+	 */
+	private int count(int hash)
+	{
+		int r, slot, count, min = Integer.MAX_VALUE;
+		
+		for (r=0; r<SKETCH_DEPTH; r++)
+		{
+			slot  = (r << i_sketchBits) + (mix(hash + r * BLOCK_SIZE) >>> (32 - i_sketchBits));
+			count = b_count ? a_sketch.incrementAndGet(slot) : a_sketch.get(slot);
+			if (count < min)	min = count;
+		}
+		
+		return min;
+	}
+	
+	/** @return the MurmurHash3 value of <code>str</code>. */
+	static private int hash(String str, int seed)
+	{
+		int i, k, h = seed, n = str.length();
+		
+		for (i=0; i<n; i++)
+		{
+			k  = str.charAt(i) * 0xcc9e2d51;
+			k  = Integer.rotateLeft(k, 15) * 0x1b873593;
+			h ^= k;
+			h  = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;
+		}
+		
+		return mix(h ^ n);
+	}
+	
+	/** Finalization mix of MurmurHash3. */
+	static private int mix(int h)
+	{
+		h ^= h >>> 16;	h *= 0x85ebca6b;
+		h ^= h >>> 13;	h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		
+		return h;
+	}
+	
+//	=========================== Save/Load ===========================
+	
+	/** Saves the number of bits, the number of n-gram templates and labels; no feature is saved. */
+	public void save(String lexiconFile)
+	{
+		try
+		{
+			PrintStream fout = IOUtil.createPrintFileStream(lexiconFile);
+			
+			fout.println(HASH_HEADER);
+			fout.println(i_bits);
+			fout.println(n_ngram.length);
+			fout.println(a_label.size());
+			for (String label : a_label)	fout.println(label);
+			
+			fout.close();
+		}
+		catch (Exception e) {e.printStackTrace();}
+	}
+	
+	protected void loadDefault(BufferedReader fin) throws Exception
+	{
+		fin.readLine();
+		i_bits = Integer.parseInt(fin.readLine());
+		initBlocks(Integer.parseInt(fin.readLine()));
+		
+		int i, n = Integer.parseInt(fin.readLine());
+		String key;
+		
+		a_label = new ArrayList<String>(n);
+		m_label = new ObjectIntOpenHashMap<String>(n);
+		
+		for (i=1; i<=n; i++)
+		{
+			key = fin.readLine();
+			a_label.add(key);
+			m_label.put(key, i);
+		}
+	}
+}
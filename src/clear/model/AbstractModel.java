@@ -25,6 +25,11 @@ package clear.model;
 
 import java.io.BufferedReader;
 import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import clear.train.kernel.AbstractKernel;
 
@@ -35,6 +40,9 @@ import clear.train.kernel.AbstractKernel;
  */
 abstract public class AbstractModel
 {
+	/** Line separator printed by {@link PrintStream#println()} */
+	static private final byte[] LINE_SEPARATOR = System.getProperty("line.separator").getBytes();
+	
 	public int      n_features;
 	public int      n_labels;
 	public int[]    a_labels;
@@ -123,21 +131,78 @@ abstract public class AbstractModel
 	
 	protected void printVector(PrintStream fout, double[] vector) throws Exception
 	{
-		StringBuilder build;
-		int i = 0, j;
+		printVector(fout, vector, 1);
+	}
+	
+	/**
+	 * Prints every <code>n_features</code> values of <code>vector</code> as a line.
+	 * Each line is formatted into bytes and written directly to <code>fout</code>, so no string of a whole line is kept.
+	 * If <code>numThreads</code> is greater than 1, lines are formatted in parallel and written in order.
+	 */
+	protected void printVector(PrintStream fout, final double[] vector, int numThreads) throws Exception
+	{
+		int begin, n = vector.length;
 		
-		while (i < vector.length)
+		if (numThreads <= 1)
 		{
-			build = new StringBuilder();
+			StringBuilder build = new StringBuilder();
+			
+			for (begin=0; begin<n; begin+=n_features)
+				fout.write(formatLine(vector, begin, build));
 			
-			for (j=0; j<n_features; j++)
+			return;
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		ArrayDeque<Future<byte[]>> lines = new ArrayDeque<Future<byte[]>>();
+		
+		try
+		{
+			for (begin=0; begin<n; begin+=n_features)
 			{
-				build.append(vector[i++]);
-				build.append(' ');
+				final int b = begin;
+				
+				lines.add(executor.submit(new Callable<byte[]>()
+				{
+					public byte[] call()
+					{
+						return formatLine(vector, b, new StringBuilder());
+					}
+				}));
+				
+				// keeps at most two lines per thread in memory
+				if (lines.size() >= numThreads * 2)	fout.write(lines.poll().get());
 			}
+			
+			while (!lines.isEmpty())
+				fout.write(lines.poll().get());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+	
+	/** @return bytes of a line containing <code>vector[begin:begin+n_features]</code>; <code>build</code> is used as a buffer. */
+	private byte[] formatLine(double[] vector, int begin, StringBuilder build)
+	{
+		int i, end = begin + n_features;
+		build.setLength(0);
 		
-			fout.println(build.toString());
+		for (i=begin; i<end; i++)
+		{
+			build.append(vector[i]);
+			build.append(' ');
 		}
+		
+		// values consist of ASCII characters only
+		byte[] bytes = new byte[build.length() + LINE_SEPARATOR.length];
+		
+		for (i=build.length()-1; i>=0; i--)
+			bytes[i] = (byte)build.charAt(i);
+		
+		System.arraycopy(LINE_SEPARATOR, 0, bytes, build.length(), LINE_SEPARATOR.length);
+		return bytes;
 	}
 	
 	static public double logistic(double score)
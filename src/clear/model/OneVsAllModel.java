@@ -23,8 +23,15 @@
 */
 package clear.model;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -41,6 +48,20 @@ import com.carrotsearch.hppc.IntArrayList;
  */
 public class OneVsAllModel extends AbstractMultiModel
 {
+	/** First line of models saved in the sparse format */
+	static public final String SPARSE_HEADER = "sparse";
+	
+	/** First four bytes of models saved in the binary format ("CLRM") */
+	static public final int    BINARY_MAGIC   = 0x434C524D;
+	static public final int    BINARY_VERSION = 1;
+	/** Number of weights converted to bytes at once in the binary format */
+	static private final int   BINARY_CHUNK   = 1 << 13;
+	
+	/** If true, only non-zero weights are saved */
+	private boolean b_sparse = false;
+	/** If true, the model is saved in the binary format */
+	private boolean b_binary = false;
+	
 	public OneVsAllModel(AbstractKernel kernel)
 	{
 		super(kernel);
@@ -56,6 +77,13 @@ public class OneVsAllModel extends AbstractMultiModel
 		super(fin);
 	}
 	
+	/** Loads a model in the text or the binary format from <code>in</code>, which must support {@link InputStream#mark(int)}. */
+	public OneVsAllModel(InputStream in)
+	{
+		super(0, 0, null, null);
+		load(in);
+	}
+	
 	public OneVsAllModel(int nLabels, int nFeatures, int[] aLabels, double[] dWeights)
 	{
 		super(nLabels, nFeatures, aLabels, dWeights);
@@ -73,14 +101,43 @@ public class OneVsAllModel extends AbstractMultiModel
 	{
 		try
 		{
-			BufferedReader fin = IOUtil.createBufferedFileReader(modelFile);
+			InputStream in = IOUtil.createInputStream(modelFile);
+			if (!in.markSupported())	in = new BufferedInputStream(in);
 			
-			loadAux(fin);
-			fin.close();
+			load(in);
+			in.close();
+		}
+		catch (Exception e) {e.printStackTrace();}
+	}
+	
+	public void load(InputStream in)
+	{
+		try
+		{
+			if (isBinaryModel(in))	loadBinary(new DataInputStream(in));
+			else				loadAux(new BufferedReader(new InputStreamReader(in, "UTF-8")));
 		}
 		catch (Exception e) {e.printStackTrace();}
 	}
 	
+	/** @return true if <code>in</code> begins with {@link OneVsAllModel#BINARY_MAGIC}; <code>in</code> is not moved. */
+	static public boolean isBinaryModel(InputStream in) throws Exception
+	{
+		DataInputStream din = new DataInputStream(in);
+		boolean binary;
+		
+		in.mark(4);
+		
+		try
+		{
+			binary = din.readInt() == BINARY_MAGIC;
+		}
+		catch (Exception e) {binary = false;}
+		
+		in.reset();
+		return binary;
+	}
+	
 	public void load(BufferedReader fin)
 	{
 		try
@@ -90,24 +147,60 @@ public class OneVsAllModel extends AbstractMultiModel
 		catch (Exception e) {e.printStackTrace();}
 	}
 	
+	/** Models in both the dense and the sparse formats are loaded into dense weights. */
 	public void loadAux(BufferedReader fin) throws Exception
 	{
-		n_labels   = Integer.parseInt(fin.readLine());
+		String line = fin.readLine();
+		b_sparse = line.equals(SPARSE_HEADER);
+		if (b_sparse)	line = fin.readLine();
+		
+		n_labels   = Integer.parseInt(line);
 		n_features = Integer.parseInt(fin.readLine());
 		a_labels   = new int[n_labels];
 		d_weights  = new double[n_labels * n_features];
 		
-		readLabels (fin);
-		readWeights(fin);
+		readLabels(fin);
+		
+		if (b_sparse)	readSparseWeights(fin);
+		else			readWeights(fin);
+	}
+	
+	/**
+	 * Reads weights saved by {@link OneVsAllModel#printSparseWeights(PrintStream)}:
+	 * the number of features with non-zero weights, then a line per feature, "index label:weight label:weight ...",
+	 * where <code>label</code> is the index of the label.
+	 */
+	private void readSparseWeights(BufferedReader fin) throws Exception
+	{
+		int n = Integer.parseInt(fin.readLine()), i, j, k, begin;
+		String[] tmp;
+		
+		for (i=0; i<n; i++)
+		{
+			tmp   = fin.readLine().split(" ");
+			begin = Integer.parseInt(tmp[0]) * n_labels;
+			
+			for (j=1; j<tmp.length; j++)
+			{
+				k = tmp[j].indexOf(':');
+				d_weights[begin + Integer.parseInt(tmp[j].substring(0, k))] = Double.parseDouble(tmp[j].substring(k+1));
+			}
+		}
 	}
 	
 	public void save(String modelFile)
+	{
+		save(modelFile, 1);
+	}
+	
+	/** @param numThreads number of threads to format weights in the text format */
+	public void save(String modelFile, int numThreads)
 	{
 		try
 		{
 			PrintStream fout = IOUtil.createPrintFileStream(modelFile);
 			
-			saveAux(fout);
+			saveAux(fout, numThreads);
 			fout.flush();
 			fout.close();
 		}
@@ -115,20 +208,198 @@ public class OneVsAllModel extends AbstractMultiModel
 	}
 	
 	public void save(PrintStream fout)
+	{
+		save(fout, 1);
+	}
+	
+	/** @param numThreads number of threads to format weights in the text format */
+	public void save(PrintStream fout, int numThreads)
 	{
 		try
 		{
-			saveAux(fout);
+			saveAux(fout, numThreads);
 		}
 		catch (Exception e) {e.printStackTrace();}
 	}
 	
-	private void saveAux(PrintStream fout) throws Exception
+	private void saveAux(PrintStream fout, int numThreads) throws Exception
 	{
+		if (b_binary)
+		{
+			saveBinary(fout);
+			return;
+		}
+		
+		if (b_sparse)	fout.println(SPARSE_HEADER);
 		fout.println(n_labels);
 		fout.println(n_features);
-		printLabels (fout);
-		printWeights(fout);
+		printLabels(fout);
+		
+		if (b_sparse)	printSparseWeights(fout);
+		else			printVector(fout, d_weights, numThreads);
+	}
+	
+//	=========================== Binary ===========================
+	
+	/**
+	 * Saves this model in the binary format: {@link OneVsAllModel#BINARY_MAGIC}, {@link OneVsAllModel#BINARY_VERSION},
+	 * whether or not sparse, the numbers of labels and features, labels, then weights in the order of {@link OneVsAllModel#d_weights}.
+	 * If sparse, weights are preceded by the number of features having non-zero weights, and weights of each feature by its index.
+	 * Values are big-endian.
+	 */
+	private void saveBinary(OutputStream out) throws Exception
+	{
+		DataOutputStream dout = new DataOutputStream(out);
+		ByteBuffer buffer = ByteBuffer.allocate(BINARY_CHUNK * 8);
+		int i, n = 0;
+		
+		dout.writeInt(BINARY_MAGIC);
+		dout.writeInt(BINARY_VERSION);
+		dout.writeBoolean(b_sparse);
+		dout.writeInt(n_labels);
+		dout.writeInt(n_features);
+		for (i=0; i<n_labels; i++)	dout.writeInt(a_labels[i]);
+		
+		if (b_sparse)
+		{
+			for (i=0; i<n_features; i++)
+				if (!isZero(i))	n++;
+			
+			dout.writeInt(n);
+			
+			for (i=0; i<n_features; i++)
+			{
+				if (isZero(i))	continue;
+				dout.writeInt(i);
+				writeDoubles(dout, i * n_labels, n_labels, buffer);
+			}
+		}
+		else
+			writeDoubles(dout, 0, d_weights.length, buffer);
+		
+		dout.flush();
+	}
+	
+	/** Writes <code>d_weights[begin:begin+length]</code> through <code>buffer</code>. */
+	private void writeDoubles(DataOutputStream dout, int begin, int length, ByteBuffer buffer) throws Exception
+	{
+		int n, end = begin + length;
+		
+		for (; begin<end; begin+=n)
+		{
+			n = Math.min(BINARY_CHUNK, end - begin);
+			buffer.clear();
+			buffer.asDoubleBuffer().put(d_weights, begin, n);
+			dout.write(buffer.array(), 0, n * 8);
+		}
+	}
+	
+	private void loadBinary(DataInputStream din) throws Exception
+	{
+		if (din.readInt() != BINARY_MAGIC || din.readInt() != BINARY_VERSION)
+			throw new IllegalArgumentException("Unsupported binary model");
+		
+		ByteBuffer buffer = ByteBuffer.allocate(BINARY_CHUNK * 8);
+		int i, n;
+		
+		b_sparse   = din.readBoolean();
+		b_binary   = true;
+		n_labels   = din.readInt();
+		n_features = din.readInt();
+		a_labels   = new int[n_labels];
+		d_weights  = new double[n_labels * n_features];
+		
+		for (i=0; i<n_labels; i++)	a_labels[i] = din.readInt();
+		
+		if (b_sparse)
+		{
+			n = din.readInt();
+			
+			for (i=0; i<n; i++)
+				readDoubles(din, din.readInt() * n_labels, n_labels, buffer);
+		}
+		else
+			readDoubles(din, 0, d_weights.length, buffer);
+	}
+	
+	/** Reads <code>d_weights[begin:begin+length]</code> through <code>buffer</code>. */
+	private void readDoubles(DataInputStream din, int begin, int length, ByteBuffer buffer) throws Exception
+	{
+		int n, end = begin + length;
+		
+		for (; begin<end; begin+=n)
+		{
+			n = Math.min(BINARY_CHUNK, end - begin);
+			din.readFully(buffer.array(), 0, n * 8);
+			buffer.clear();
+			buffer.asDoubleBuffer().get(d_weights, begin, n);
+		}
+	}
+	
+	/** Prints weights of features having at least one non-zero weight. */
+	private void printSparseWeights(PrintStream fout) throws Exception
+	{
+		StringBuilder build = new StringBuilder();
+		int i, j, begin, n = 0;
+		
+		for (i=0; i<n_features; i++)
+			if (!isZero(i))	n++;
+		
+		fout.println(n);
+		
+		for (i=0; i<n_features; i++)
+		{
+			if (isZero(i))	continue;
+			begin = i * n_labels;
+			
+			build.setLength(0);
+			build.append(i);
+			
+			for (j=0; j<n_labels; j++)
+			{
+				if (d_weights[begin+j] == 0)	continue;
+				
+				build.append(' ');
+				build.append(j);
+				build.append(':');
+				build.append(d_weights[begin+j]);
+			}
+			
+			fout.println(build.toString());
+		}
+	}
+	
+	/** @return true if all weights of feature <code>index</code> are 0. */
+	private boolean isZero(int index)
+	{
+		int i, begin = index * n_labels;
+		
+		for (i=0; i<n_labels; i++)
+			if (d_weights[begin+i] != 0)	return false;
+		
+		return true;
+	}
+	
+	/** If <code>sparse</code> is true, only non-zero weights are saved so that sparse models are smaller and faster to load. */
+	public void setSparse(boolean sparse)
+	{
+		b_sparse = sparse;
+	}
+	
+	public boolean isSparse()
+	{
+		return b_sparse;
+	}
+	
+	/** If <code>binary</code> is true, the model is saved in the binary format, which is faster to save and load. */
+	public void setBinary(boolean binary)
+	{
+		b_binary = binary;
+	}
+	
+	public boolean isBinary()
+	{
+		return b_binary;
 	}
 	
 	private int getBeginIndex(int label, int index)
@@ -144,6 +415,45 @@ public class OneVsAllModel extends AbstractMultiModel
 			d_weights[getBeginIndex(label, i)] = weight[i];
 	}
 	
+	/**
+	 * Copies weights of <code>label</code> to <code>weight</code>; features not in this model are left unchanged.
+	 * @param label label (not the index of the label)
+	 * @return false if <code>label</code> is not in this model.
+	 */
+	public boolean getWeight(int label, double[] weight)
+	{
+		int i, j, n = Math.min(n_features, weight.length);
+		
+		for (j=0; j<n_labels; j++)
+		{
+			if (a_labels[j] == label)
+			{
+				for (i=0; i<n; i++)
+					weight[i] = d_weights[getBeginIndex(j, i)];
+				
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Moves weights of each feature <code>i</code> to feature <code>indices[i]</code>.
+	 * @param nFeatures number of features after moving
+	 */
+	public void remapFeatures(int[] indices, int nFeatures)
+	{
+		double[] weights = new double[nFeatures * n_labels];
+		int i, n = Math.min(n_features, indices.length);
+		
+		for (i=0; i<n; i++)
+			System.arraycopy(d_weights, i * n_labels, weights, indices[i] * n_labels, n_labels);
+		
+		n_features = nFeatures;
+		d_weights  = weights;
+	}
+	
 	public double[] getScores(int[] x)
 	{
 		double[] scores = Arrays.copyOf(d_weights, n_labels);
@@ -12,6 +12,9 @@ import com.carrotsearch.hppc.IntArrayList;
 
 public class SupportVectorModel
 {
+	/** Maximum number of characters buffered before printing */
+	static private final int FLUSH_SIZE = 1 << 16;
+	
 	public int        n_sv;
 	public boolean    b_binary;
 	public double[]   d_alpha;
@@ -94,6 +97,7 @@ public class SupportVectorModel
 		{
 			build.append(d_alpha[i]);
 			build.append(" ");
+			flush(fout, build);
 		}
 		
 		fout.println(build.toString());
@@ -127,11 +131,22 @@ public class SupportVectorModel
 			}
 			
 			build.append("\n");
+			flush(fout, build);
 		}
 		
 		fout.print(build.toString());
 	}
 	
+	/** Prints <code>build</code> and clears it if it is longer than {@link SupportVectorModel#FLUSH_SIZE}. */
+	private void flush(PrintStream fout, StringBuilder build)
+	{
+		if (build.length() > FLUSH_SIZE)
+		{
+			fout.print(build.toString());
+			build.setLength(0);
+		}
+	}
+	
 	public double getScore(int[] x, double gamma, double coef, int degree)
 	{
 		double score = 0, scala;
@@ -25,6 +25,7 @@ package clear.parse;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Random;
 import java.util.regex.Matcher;
 
 import clear.decode.AbstractMultiDecoder;
@@ -33,7 +34,9 @@ import clear.dep.DepLib;
 import clear.dep.DepNode;
 import clear.dep.DepTree;
 import clear.ftr.map.DepFtrMap;
+import clear.ftr.map.DepHashFtrMap;
 import clear.ftr.xml.DepFtrXml;
+import clear.ftr.xml.FtrTemplate;
 import clear.ftr.xml.FtrToken;
 import clear.morph.MorphKr;
 import clear.reader.DepReader;
@@ -73,6 +76,13 @@ abstract public class AbstractDepParser extends AbstractParser
 	/** Previous transitions */
 	protected ArrayList<String> prev_trans;
 	public int i_trainIndex = 0;
+	
+	/** Probability of following predicted transitions for {@link AbstractDepParser#FLAG_TRAIN_BOOST}; otherwise, gold transitions are followed */
+	protected double d_explore = 1;
+	/** Decides whether or not to follow predicted transitions */
+	protected Random r_explore = null;
+	/** If true, {@link AbstractDepParser#FLAG_TRAIN_BOOST} learns zero-cost transitions of the current configuration (dynamic oracle) */
+	protected boolean b_dynamic = false;
 
 //	=============================== Constructors ===============================
 	
@@ -102,7 +112,10 @@ abstract public class AbstractDepParser extends AbstractParser
 		initTrainArrays(1);
 	}
 	
-	/** {@link AbstractDepParser#FLAG_PREDICT} or {@link AbstractDepParser#FLAG_TRAIN_BOOST}. */
+	/**
+	 * {@link AbstractDepParser#FLAG_PREDICT} or {@link AbstractDepParser#FLAG_TRAIN_BOOST}.
+	 * Also {@link AbstractDepParser#FLAG_TRAIN_INSTANCE} with a loaded map, where <code>decoder</code> is not used.
+	 */
 	public AbstractDepParser(byte flag, DepFtrXml xml, DepFtrMap map, AbstractMultiDecoder decoder)
 	{
 		i_flag = flag;
@@ -110,7 +123,7 @@ abstract public class AbstractDepParser extends AbstractParser
 		t_map  = map;
 		c_dec  = decoder;
 		
-		if (flag == FLAG_TRAIN_BOOST)	initTrainArrays(1);
+		if (flag == FLAG_TRAIN_INSTANCE || flag == FLAG_TRAIN_BOOST)	initTrainArrays(1);
 	}
 
 //	=============================== External methods ===============================
@@ -125,6 +138,37 @@ abstract public class AbstractDepParser extends AbstractParser
 		return t_map;
 	}
 	
+	/** Replaces the feature map, e.g., to collect lexica of a subset of trees for {@link AbstractDepParser#FLAG_TRAIN_LEXICON}. */
+	public void setDepFtrMap(DepFtrMap map)
+	{
+		t_map = map;
+	}
+	
+	public AbstractMultiDecoder getDecoder()
+	{
+		return c_dec;
+	}
+	
+	/**
+	 * Sets the probability of following predicted transitions for {@link AbstractDepParser#FLAG_TRAIN_BOOST},
+	 * and trains with a dynamic oracle: each configuration is labeled with a transition that loses no gold arc
+	 * still reachable from it, preferring the predicted transition if it is one of them.
+	 * If the decoder predicts with the model being learned, this gives dynamic-oracle training.
+	 * @param probability 1 to always follow predicted transitions (default), 0 to always follow gold transitions
+	 */
+	public void setExploration(double probability)
+	{
+		d_explore = probability;
+		r_explore = new Random(0);
+		b_dynamic = true;
+	}
+	
+	/** @return true if the predicted transition should be followed. */
+	protected boolean isExplore()
+	{
+		return d_explore >= 1 || (d_explore > 0 && r_explore.nextDouble() < d_explore);
+	}
+	
 	/** Saves tags from {@link AbstractDepParser#t_map} to <code>lexiconFile</code>. */
 	public void saveTags(String lexiconFile)
 	{
@@ -384,10 +428,43 @@ abstract public class AbstractDepParser extends AbstractParser
 		
 		addNgramFeatures(arr, idx, t_xml, t_map);
 		addLanguageSpecificFeatures(arr, idx);
+		if (t_map instanceof DepHashFtrMap)	((DepHashFtrMap)t_map).hashFeatureArray(arr);
 		
 		return arr;
 	}
 	
+	/**
+	 * Returns sizes of feature blocks in the order used by {@link AbstractDepParser#getFeatureArray()} with <code>map</code>.
+	 * Each feature index is the beginning of its block plus its index in the block, where the first block begins at 1.
+	 * Must be updated whenever {@link AbstractDepParser#getFeatureArray()} adds different blocks.
+	 */
+	public IntArrayList getFeatureBlockSizes(DepFtrMap map)
+	{
+		IntArrayList sizes = new IntArrayList();
+		FtrTemplate[][] templates = t_xml.a_ngram_templates;
+		int i, j;
+		
+		for (j=0; j<templates.length; j++)
+			for (i=0; i<templates[j].length; i++)
+				sizes.add(map.n_ngram[j]);
+		
+		if (s_language.equals(DepReader.LANG_EN))
+		{
+			for (i=0; i<3; i++)	sizes.add(map.n_extra[0]);
+		}
+		else if (s_language.equals(DepReader.LANG_CZ))
+		{
+			sizes.add(map.n_extra[0]);
+			sizes.add(3);
+		}
+		else if (s_language.equals(DepReader.LANG_KR))
+		{
+			sizes.add(2);
+		}
+		
+		return sizes;
+	}
+	
 	protected void addLanguageSpecificFeatures(IntArrayList arr, int[] beginIndex)
 	{
 		if (s_language.equals(DepReader.LANG_EN))
@@ -24,6 +24,7 @@
 package clear.parse;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import clear.ftr.FtrLib;
 import clear.ftr.map.AbstractFtrMap;
@@ -31,10 +32,10 @@ import clear.ftr.xml.AbstractFtrXml;
 import clear.ftr.xml.FtrTemplate;
 import clear.ftr.xml.FtrToken;
 import clear.reader.AbstractReader;
-import clear.util.tuple.JObjectObjectTuple;
+import clear.train.algorithm.IOnlineAlgorithm;
+import clear.train.kernel.AbstractInstanceStore;
 
 import com.carrotsearch.hppc.IntArrayList;
-import com.carrotsearch.hppc.ObjectIntOpenHashMap;
 
 /**
  * Abstract parser.
@@ -61,7 +62,13 @@ public abstract class AbstractParser
 	/** Language */
 	protected String s_language = AbstractReader.LANG_EN;
 	/** Training instances */
-	public ArrayList<JObjectObjectTuple<IntArrayList, ArrayList<int[]>>> a_trans;
+	public ArrayList<AbstractInstanceStore> a_trans;
+	/** Type of stores for training instances ({@link AbstractInstanceStore#STORE_*}) */
+	protected byte   i_storeType = AbstractInstanceStore.STORE_MEMORY;
+	/** Directory of spill files for {@link AbstractInstanceStore#STORE_DISK} */
+	protected String s_storeDir  = null;
+	/** Online learners for training instances; if the learner of an index is set, instances of the index are not saved */
+	protected IOnlineAlgorithm[] a_learners = null;
 
 	/** @param language {@link AbstractReader#LANG_*} */
 	public void setLanguage(String language)
@@ -69,16 +76,43 @@ public abstract class AbstractParser
 		s_language = language;
 	}
 	
+	/**
+	 * Sets the type of stores for training instances.
+	 * Stores that are already initialized must be empty; they are re-initialized with <code>storeType</code>.
+	 * @param storeType {@link AbstractInstanceStore#STORE_*}
+	 * @param storeDir directory of spill files for {@link AbstractInstanceStore#STORE_DISK}
+	 */
+	public void setInstanceStore(byte storeType, String storeDir)
+	{
+		i_storeType = storeType;
+		s_storeDir  = storeDir;
+		if (a_trans != null)	initTrainArrays(a_trans.size());
+	}
+	
+	/**
+	 * Passes training instances of <code>trainIndex</code> to <code>algorithm</code> instead of saving them.
+	 * @param algorithm initialized online learner; if <code>null</code>, instances are saved again
+	 */
+	public void setOnlineAlgorithm(int trainIndex, IOnlineAlgorithm algorithm)
+	{
+		if (a_learners == null)
+			a_learners = new IOnlineAlgorithm[trainIndex+1];
+		else if (a_learners.length <= trainIndex)
+			a_learners = Arrays.copyOf(a_learners, trainIndex+1);
+		
+		a_learners[trainIndex] = algorithm;
+	}
+	
 	/** Initializes arrays to save training instances. */
 	protected void initTrainArrays(int size)
 	{
-		a_trans = new ArrayList<JObjectObjectTuple<IntArrayList, ArrayList<int[]>>>(size);
+		a_trans = new ArrayList<AbstractInstanceStore>(size);
 		for (int i=0; i<size; i++)	addTrainArrays();
 	}
 	
 	public void addTrainArrays()
 	{
-		a_trans.add(new JObjectObjectTuple<IntArrayList, ArrayList<int[]>>(new IntArrayList(), new ArrayList<int[]>()));
+		a_trans.add(AbstractInstanceStore.create(i_storeType, s_storeDir));
 	}
 	
 	/** Saves a training instance. */
@@ -87,32 +121,33 @@ public abstract class AbstractParser
 		int index = tmap.labelToIndex(label);
 		if (index < 0)	return;
 		
-		JObjectObjectTuple<IntArrayList, ArrayList<int[]>> yx = a_trans.get(trainIndex);
-		int[] ftrArr = ftr.toArray();
-		
 	//	System.err.println(label+" "+index+" "+ftr);
-		yx.o1.add(index);
-		yx.o2.add(ftrArr);
+		if (a_learners != null && trainIndex < a_learners.length && a_learners[trainIndex] != null)
+			a_learners[trainIndex].learn(index, ftr);
+		else
+			a_trans.get(trainIndex).add(index, ftr);
 	}
 	
-	protected boolean existInstance(JObjectObjectTuple<IntArrayList, ArrayList<int[]>> yx, int index, int[] ftrArr)
+	protected boolean existInstance(AbstractInstanceStore yx, int index, int[] ftrArr)
 	{
-		int i, size = yx.o1.size();
+		int i, size = yx.size();
+		int[] x = new int[yx.getMaxLength()];
 		
 		for (i=0; i<size; i++)
 		{
-			if (yx.o1.get(i) == index && equals(yx.o2.get(i), ftrArr))
+			if (yx.getY(i) == index && equals(x, yx.getX(i, x), ftrArr))
 				return true;
 		}
 		
 		return false;
 	}
 	
-	protected boolean equals(int[] x1, int[] x2)
+	/** @return true if the first <code>n</code> elements of <code>x1</code> equal to <code>x2</code>. */
+	protected boolean equals(int[] x1, int n, int[] x2)
 	{
-		if (x1.length != x2.length)	return false;
+		if (n != x2.length)	return false;
 		
-		for (int i=0; i<x1.length; i++)
+		for (int i=0; i<n; i++)
 			if (x1[i] != x2[i])	return false;
 		
 		return true;
@@ -145,12 +180,10 @@ public abstract class AbstractParser
 		FtrTemplate[][] templates = txml.a_ngram_templates;
 		FtrTemplate[]   template;
 		int i, j, n, m = templates.length, size, value;
-		ObjectIntOpenHashMap<String> map;
-		String                       ftr;
+		String ftr;
 		
 		for (j=0; j<m; j++)
 		{
-			map  = tmap.getNgramHashMap(j);
 			size = tmap.n_ngram[j];
 			
 			template = templates[j];
@@ -160,8 +193,8 @@ public abstract class AbstractParser
 			{
 				if ((ftr = getFeature(template[i])) != null)
 				{
-					value = map.get(ftr);
-					if (value > 0)	arr.add(idx[0]+value-1);
+					value = tmap.ngramToIndex(j, ftr);
+					if (value >= 0)	arr.add(idx[0]+value);
 				}
 				
 				idx[0] += size;
@@ -34,7 +34,7 @@ import clear.dep.srl.SRLArg;
 import clear.ftr.map.SRLFtrMap;
 import clear.ftr.xml.FtrToken;
 import clear.ftr.xml.SRLFtrXml;
-import clear.util.tuple.JObjectObjectTuple;
+import clear.train.kernel.AbstractInstanceStore;
 
 import com.carrotsearch.hppc.IntArrayList;
 
@@ -134,7 +134,7 @@ abstract public class AbstractSRLParser extends AbstractParser
 		return (i_dir == DIR_LEFT) ? c_dec[0] : c_dec[1];
 	}
 	
-	protected JObjectObjectTuple<IntArrayList, ArrayList<int[]>> getTrainArray() 
+	protected AbstractInstanceStore getTrainArray() 
 	{
 		return (i_dir == DIR_LEFT) ? a_trans.get(0) : a_trans.get(1);
 	}
@@ -161,11 +161,7 @@ abstract public class AbstractSRLParser extends AbstractParser
 		int index = getFtrMap().labelToIndex(label);
 		if (index < 0)	return;
 		
-		JObjectObjectTuple<IntArrayList, ArrayList<int[]>> yx;
-		yx = getTrainArray();
-
-		yx.o1.add(index);
-		yx.o2.add(arr.toArray());
+		getTrainArray().add(index, arr);
 	}
 
 //	=============================== Lexica ===============================
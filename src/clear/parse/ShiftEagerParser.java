@@ -70,7 +70,7 @@ public class ShiftEagerParser extends AbstractDepParser
 		super(flag, xml, lexiconFile);
 	}
 	
-	/** {@link ShiftEagerParser#FLAG_PREDICT} or {@link ShiftEagerParser#FLAG_TRAIN_BOOST}. */
+	/** {@link ShiftEagerParser#FLAG_PREDICT}, {@link ShiftEagerParser#FLAG_TRAIN_BOOST}, or {@link ShiftEagerParser#FLAG_TRAIN_INSTANCE} with a loaded map. */
 	public ShiftEagerParser(byte flag, DepFtrXml xml, DepFtrMap map, AbstractMultiDecoder decoder)
 	{
 		super(flag, xml, map, decoder);
@@ -154,11 +154,24 @@ public class ShiftEagerParser extends AbstractDepParser
 	
 	private void trainBoost()
 	{
-		String gLabel = getGoldLabel(d_copy);
 		IntArrayList ftr = getFeatureArray();
 		
-		saveInstance(gLabel, ftr);
-		predictAux(ftr);
+		if (b_dynamic)
+		{
+			JIntDoubleTuple res = c_dec.predict(ftr);
+			String pLabel = (res.i < 0) ? LB_NO_ARC : t_map.indexToLabel(res.i);
+			String gLabel = getDynamicLabel(pLabel);
+			
+			saveInstance(gLabel, ftr);
+			
+			if (isExplore())	transition(pLabel, res.d);
+			else				transition(gLabel, 1d);
+		}
+		else
+		{
+			saveInstance(getGoldLabel(d_copy), ftr);
+			predictAux(ftr);
+		}
 	}
 	
 	private String predictAux(IntArrayList ftr)
@@ -167,7 +180,15 @@ public class ShiftEagerParser extends AbstractDepParser
 		
 		res = c_dec.predict(ftr);
 		
-		String  label  = (res.i < 0) ? LB_NO_ARC : t_map.indexToLabel(res.i);
+		String label = (res.i < 0) ? LB_NO_ARC : t_map.indexToLabel(res.i);
+		transition(label, res.d);
+		
+		return label;
+	}
+	
+	/** Performs the transition of <code>label</code>; performs no-arc if the transition is not allowed. */
+	private void transition(String label, double score)
+	{
 		int     index  = label.indexOf(LB_DELIM);
 		String  trans  = (index > 0) ? label.substring(0,index) : label;
 		String  deprel = (index > 0) ? label.substring(index+1) : "";
@@ -175,15 +196,13 @@ public class ShiftEagerParser extends AbstractDepParser
 		DepNode beta   = d_tree.get(i_beta);
 
 		if      (trans.equals( LB_LEFT_ARC) && !d_tree.isAncestor(lambda, beta) && lambda.id != DepLib.ROOT_ID)
-			leftArc (lambda, beta, deprel, res.d);
+			leftArc (lambda, beta, deprel, score);
 		else if (trans.equals(LB_RIGHT_ARC) && !d_tree.isAncestor(beta, lambda))
-			rightArc(lambda, beta, deprel, res.d);
+			rightArc(lambda, beta, deprel, score);
 		else if (trans.equals(LB_SHIFT))
 			shift(false);
 		else
 			noArc();
-		
-		return label;
 	}
 	
 	private String getGoldLabel(DepTree tree)
@@ -197,6 +216,74 @@ public class ShiftEagerParser extends AbstractDepParser
 		else								return LB_NO_ARC;
 	}
 	
+//	=============================== Dynamic oracle ===============================
+	
+	/**
+	 * This method is called from <code>trainBoost()</code> with {@link AbstractDepParser#b_dynamic}.
+	 * @return <code>label</code> if it loses no reachable gold arc; otherwise, the zero-cost label preferred by the static oracle.
+	 */
+	protected String getDynamicLabel(String label)
+	{
+		ArrayList<String> labels = getZeroCostLabels();
+		return labels.contains(label) ? label : labels.get(0);
+	}
+	
+	/**
+	 * Returns labels of transitions that lose no gold arc reachable from the current configuration of {@link AbstractDepParser#d_tree}.
+	 * The first label is the one the static oracle prefers.
+	 * Arcs that become unreachable only by forming cycles with other future arcs are not counted.
+	 */
+	protected ArrayList<String> getZeroCostLabels()
+	{
+		ArrayList<String> labels = new ArrayList<String>();
+		DepNode lambda = d_copy.get(i_lambda);
+		DepNode beta   = d_copy.get(i_beta);
+		
+		if (lambda.headId == beta.id && isReachable(beta.id, lambda.id))
+			labels.add(LB_LEFT_ARC  + LB_DELIM + lambda.deprel);
+		else if (lambda.id == beta.headId && isReachable(lambda.id, beta.id))
+			labels.add(LB_RIGHT_ARC + LB_DELIM + beta.deprel);
+		else
+		{
+			// no-arc loses nothing unless the gold arc between lambda_1[0] and beta[0] is reachable
+			if (isShiftZeroCost())	labels.add(LB_SHIFT);
+			labels.add(LB_NO_ARC);
+		}
+		
+		return labels;
+	}
+	
+	/** @return true if shift loses no reachable gold arc between beta[0] and lambda_1. */
+	private boolean isShiftZeroCost()
+	{
+		DepNode beta = d_copy.get(i_beta);
+		
+		for (int i=i_lambda; i>=0; i--)
+		{
+			if (d_copy.get(i).headId == beta.id && isReachable(beta.id, i))	return false;
+			if (beta.headId == i && isReachable(i, beta.id))					return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * A gold arc is reachable if its nodes have not been compared, the left node has not been popped,
+	 * and it does not form a cycle in {@link AbstractDepParser#d_tree}.
+	 * The dependent may already have a head because arc transitions replace the head.
+	 * @return true if the gold arc <code>headId -> depId</code> can still be made.
+	 */
+	protected boolean isReachable(int headId, int depId)
+	{
+		int left  = Math.min(headId, depId);
+		int right = Math.max(headId, depId);
+		
+		if (right < i_beta || (right == i_beta && left > i_lambda))	return false;
+		if (d_tree.get(left).isSkip)	return false;
+		
+		return !d_tree.isAncestor(depId, headId);
+	}
+	
 	/** Predicts dependencies for tokens that have not found their heads during parsing. */
 	protected void postProcess(String leftLabels, String rightLabels)
 	{
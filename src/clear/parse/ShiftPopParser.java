@@ -23,6 +23,8 @@
 */
 package clear.parse;
 
+import java.util.ArrayList;
+
 import clear.decode.AbstractMultiDecoder;
 import clear.dep.DepLib;
 import clear.dep.DepNode;
@@ -56,7 +58,7 @@ public class ShiftPopParser extends ShiftEagerParser
 		super(flag, xml, lexiconFile);
 	}
 	
-	/** {@link ShiftPopParser#FLAG_PREDICT} or {@link ShiftPopParser#FLAG_TRAIN_BOOST}. */
+	/** {@link ShiftPopParser#FLAG_PREDICT}, {@link ShiftPopParser#FLAG_TRAIN_BOOST}, or {@link ShiftPopParser#FLAG_TRAIN_INSTANCE} with a loaded map. */
 	public ShiftPopParser(byte flag, DepFtrXml xml, DepFtrMap map, AbstractMultiDecoder decoder)
 	{
 		super(flag, xml, map, decoder);
@@ -126,11 +128,49 @@ public class ShiftPopParser extends ShiftEagerParser
 	
 	private void trainBoost()
 	{
-		String gLabel = getGoldLabel(d_copy);
 		IntArrayList ftr = getFeatureArray();
 		
-		saveInstance(gLabel, ftr);
-		predictAux(ftr);
+		if (b_dynamic)
+		{
+			JIntDoubleTuple res = c_dec.predict(ftr);
+			String pLabel = (res.i < 0) ? LB_NO_ARC : t_map.indexToLabel(res.i);
+			String gLabel = getDynamicLabel(pLabel);
+			
+			saveInstance(gLabel, ftr);
+			
+			if (isExplore())	transition(pLabel, res.d);
+			else				transition(gLabel, 1d);
+		}
+		else
+		{
+			saveInstance(getGoldLabel(d_copy), ftr);
+			predictAux(ftr);
+		}
+	}
+	
+	/** Left-pop is added before left-arc if it loses no reachable gold arc between lambda_1[0] and nodes after beta[0]. */
+	protected ArrayList<String> getZeroCostLabels()
+	{
+		ArrayList<String> labels = super.getZeroCostLabels();
+		String label = labels.get(0);
+		
+		if (label.startsWith(LB_LEFT_ARC + LB_DELIM) && isPopZeroCost())
+			labels.add(0, LB_LEFT_POP + label.substring(LB_LEFT_ARC.length()));
+		
+		return labels;
+	}
+	
+	private boolean isPopZeroCost()
+	{
+		int i, size = d_copy.size();
+		
+		for (i=i_beta+1; i<size; i++)
+		{
+			if (d_copy.get(i).headId == i_lambda && isReachable(i_lambda, i))
+				return false;
+		}
+		
+		return true;
 	}
 	
 	private String predictAux(IntArrayList ftr)
@@ -139,7 +179,15 @@ public class ShiftPopParser extends ShiftEagerParser
 		
 		res = c_dec.predict(ftr);
 		
-		String  label  = (res.i < 0) ? LB_NO_ARC : t_map.indexToLabel(res.i);
+		String label = (res.i < 0) ? LB_NO_ARC : t_map.indexToLabel(res.i);
+		transition(label, res.d);
+		
+		return label;
+	}
+	
+	/** Performs the transition of <code>label</code>; performs no-arc if the transition is not allowed. */
+	private void transition(String label, double score)
+	{
 		int     index  = label.indexOf(LB_DELIM);
 		String  trans  = (index > 0) ? label.substring(0,index) : label;
 		String  deprel = (index > 0) ? label.substring(index+1) : "";
@@ -147,17 +195,15 @@ public class ShiftPopParser extends ShiftEagerParser
 		DepNode beta   = d_tree.get(i_beta);
 
 		if      (trans.equals( LB_LEFT_POP) && !d_tree.isAncestor(lambda, beta) && lambda.id != DepLib.ROOT_ID)
-			leftPop (lambda, beta, deprel, res.d);
+			leftPop (lambda, beta, deprel, score);
 		else if (trans.equals( LB_LEFT_ARC) && !d_tree.isAncestor(lambda, beta) && lambda.id != DepLib.ROOT_ID)
-			leftArc (lambda, beta, deprel, res.d);
+			leftArc (lambda, beta, deprel, score);
 		else if (trans.equals(LB_RIGHT_ARC) && !d_tree.isAncestor(beta, lambda))
-			rightArc(lambda, beta, deprel, res.d);
+			rightArc(lambda, beta, deprel, score);
 		else if (trans.equals(LB_SHIFT))
 			shift(false);
 		else
 			noArc();
-		
-		return label;
 	}
 	
 	private void postProcessBoost()
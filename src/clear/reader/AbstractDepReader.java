@@ -0,0 +1,146 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.reader;
+
+import java.io.IOException;
+
+import clear.dep.DepNode;
+import clear.dep.DepTree;
+import clear.dep.ITree;
+import clear.util.IOUtil;
+
+/**
+ * Abstract reader for line-based dependency formats.
+ * Lines are read by {@link ByteLineReader}, which decodes only the fields needed by {@link AbstractDepReader#toNode(ByteLineReader, int)}.
+ * Trees can be refilled in place using {@link AbstractDepReader#nextTree(DepTree)}.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/14/2011
+ */
+abstract public class AbstractDepReader extends AbstractReader<DepNode,DepTree>
+{
+	/** Byte-level line reader */
+	protected ByteLineReader b_in;
+	/** Tree currently being filled; provides reusable nodes */
+	private DepTree d_fill;
+	
+	/**
+	 * The constructor calls {@link AbstractReader#open(String)}.
+	 * @param filename name of the file to read
+	 */
+	public AbstractDepReader(String filename)
+	{
+		super(filename);
+	}
+	
+	/**
+	 * Opens <code>filename</code> using {@link ByteLineReader}.
+	 * Compressed files are streamed through {@link IOUtil#createInputStream(String)}; others are memory-mapped.
+	 */
+	public void open(String filename)
+	{
+		try
+		{
+			if (IOUtil.isCompressed(filename))
+				b_in = new ByteLineReader(IOUtil.createInputStream(filename));
+			else
+				b_in = new ByteLineReader(filename);
+		}
+		catch (IOException e) {e.printStackTrace();}
+	}
+	
+	public void close()
+	{
+		b_in.close();
+	}
+	
+	/** 
+	 * Returns the next dependency tree.
+	 * If there is no more tree, returns null.
+	 */
+	public DepTree nextTree()
+	{
+		return nextTree(new DepTree());
+	}
+	
+	/**
+	 * Fills <code>tree</code> with the next dependency tree after calling {@link DepTree#reset()}.
+	 * Nodes previously contained in <code>tree</code> are reused.
+	 * @return <code>tree</code> if the next tree exists; otherwise, null
+	 */
+	public DepTree nextTree(DepTree tree)
+	{
+		boolean isNext;
+		
+		tree.reset();
+		d_fill = tree;
+		
+		isNext = appendNextTree(tree);
+		d_fill = null;
+		return isNext ? tree : null;
+	}
+	
+	protected boolean appendNextTree(ITree<DepNode> tree)
+	{
+		// skip empty lines
+		boolean isNext;
+		while ((isNext = b_in.nextLine()) && b_in.isBlank());
+		
+		// the end of the file
+		if (!isNext)
+		{	close();	return false;	}
+		
+		// add nodes
+		int id = tree.size();
+		tree.add(toNode(b_in, id++));
+		
+		while (b_in.nextLine())
+		{
+			if (b_in.isBlank())
+				return true;
+			else
+				tree.add(toNode(b_in, id++));
+		}
+		
+		return true;
+	}
+	
+	/** Calls {@link AbstractDepReader#toNode(ByteLineReader, int)}. */
+	protected DepNode toNode(String line, int id)
+	{
+		return toNode(ByteLineReader.wrap(line), id);
+	}
+	
+	/**
+	 * @param line current line of the byte-level reader
+	 * @param id   token ID of the node
+	 * @return node containing values from <code>line</code>.
+	 */
+	abstract protected DepNode toNode(ByteLineReader line, int id);
+	
+	/** @return a node to be filled by {@link AbstractDepReader#toNode(ByteLineReader, int)}. */
+	protected DepNode newNode()
+	{
+		return (d_fill != null) ? d_fill.nextNode() : new DepNode();
+	}
+}
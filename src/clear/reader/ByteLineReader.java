@@ -0,0 +1,332 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.reader;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Byte-level reader for tab-separated lines encoded in UTF-8.
+ * Files are memory-mapped in large windows; other streams are read through a direct buffer.
+ * Field boundaries are located without splitting, and strings are decoded only for the fields requested.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/15/2011
+ */
+public class ByteLineReader
+{
+	static private final Charset UTF8 = Charset.forName("UTF-8");
+	/** Size of each memory-mapped window */
+	static private final long MAP_WINDOW  = 1L << 28;
+	/** Initial size of the direct buffer for streams */
+	static private final int  BUFFER_SIZE = 1 << 20;
+	
+	/** Memory-mapped file; null if reading from a stream */
+	private FileChannel         f_file;
+	/** Stream channel; null if reading from a memory-mapped file */
+	private ReadableByteChannel f_stream;
+	/** Current window or buffer */
+	private ByteBuffer b_buffer;
+	/** File offset of the current window */
+	private long       n_offset;
+	/** True if no more bytes can be loaded */
+	private boolean    b_eof;
+	
+	/** Buffer position of the next line */
+	private int   i_next;
+	/** Begin positions of fields in the current line */
+	private int[] a_begin;
+	/** End positions of fields in the current line */
+	private int[] a_end;
+	/** Number of fields in the current line */
+	private int   n_fields;
+	/** Buffer for decoding strings */
+	private byte[] a_bytes;
+	
+	/** Memory-maps <code>filename</code>. */
+	public ByteLineReader(String filename) throws IOException
+	{
+		f_file   = new FileInputStream(filename).getChannel();
+		n_offset = 0;
+		init();
+		map(0);
+	}
+	
+	/** Reads from <code>in</code> through a direct buffer. */
+	public ByteLineReader(InputStream in)
+	{
+		f_stream = Channels.newChannel(in);
+		b_buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		b_buffer.limit(0);
+		init();
+	}
+	
+	/** Reads bytes in <code>buffer</code> only; no more bytes are loaded. */
+	private ByteLineReader(ByteBuffer buffer)
+	{
+		b_buffer = buffer;
+		init();
+		b_eof    = true;
+	}
+	
+	/**
+	 * Bytes of <code>line</code> are wrapped in a heap buffer of their own size, so this is cheap enough to call per line.
+	 * @return a reader containing <code>line</code> only, whose fields are available right away.
+	 */
+	static public ByteLineReader wrap(String line)
+	{
+		ByteLineReader reader = new ByteLineReader(ByteBuffer.wrap(line.getBytes(UTF8)));
+		
+		reader.nextLine();
+		return reader;
+	}
+	
+	private void init()
+	{
+		b_eof    = false;
+		i_next   = 0;
+		a_begin  = new int[16];
+		a_end    = new int[16];
+		n_fields = 0;
+		a_bytes  = new byte[256];
+	}
+	
+	/** Maps the window beginning at the file offset <code>offset</code>. */
+	private void map(long offset) throws IOException
+	{
+		long size = Math.min(MAP_WINDOW, f_file.size() - offset);
+		
+		b_buffer = f_file.map(FileChannel.MapMode.READ_ONLY, offset, size);
+		n_offset = offset;
+		b_eof    = offset + size >= f_file.size();
+	}
+	
+	/**
+	 * Loads more bytes, keeping bytes from <code>keep</code> to the current limit, which are moved to the beginning of the buffer.
+	 * @return the number of positions the kept bytes moved; -1 if there are no more bytes
+	 */
+	private int fill(int keep) throws IOException
+	{
+		if (b_eof)	return -1;
+		
+		if (f_file != null)
+		{
+			if (keep == 0)	throw new IOException("A line is longer than "+MAP_WINDOW+" bytes");
+			map(n_offset + keep);
+			return keep;
+		}
+		
+		int remain = b_buffer.limit() - keep;
+		
+		if (remain == b_buffer.capacity())	// a line longer than the buffer
+		{
+			ByteBuffer buffer = ByteBuffer.allocateDirect(b_buffer.capacity() * 2);
+			b_buffer.position(keep);
+			buffer.put(b_buffer);
+			b_buffer = buffer;
+		}
+		else
+		{
+			b_buffer.position(keep);
+			b_buffer.compact();
+		}
+		
+		int n = 0;
+		
+		while (b_buffer.hasRemaining() && (n = f_stream.read(b_buffer)) >= 0)
+			if (n > 0)	break;
+		
+		if (n < 0)	b_eof = true;
+		b_buffer.flip();
+		
+		return keep;
+	}
+	
+	/**
+	 * Moves to the next line.
+	 * @return false if there is no more line
+	 */
+	public boolean nextLine()
+	{
+		try
+		{
+			int begin = i_next, curr = begin, shift;
+			
+			while (true)
+			{
+				for (; curr < b_buffer.limit(); curr++)
+					if (b_buffer.get(curr) == '\n')	break;
+				
+				if (curr < b_buffer.limit())
+				{
+					i_next = curr + 1;
+					break;
+				}
+				
+				if ((shift = fill(begin)) < 0)
+				{
+					if (begin == curr)	{n_fields = 0;	return false;}
+					i_next = curr;
+					break;
+				}
+				
+				begin -= shift;
+				curr  -= shift;
+			}
+			
+			if (curr > begin && b_buffer.get(curr-1) == '\r')	curr--;
+			splitFields(begin, curr);
+			
+			return true;
+		}
+		catch (IOException e) {throw new RuntimeException(e);}
+	}
+	
+	private void splitFields(int begin, int end)
+	{
+		n_fields = 0;
+		
+		for (int i=begin; i<end; i++)
+		{
+			if (b_buffer.get(i) == '\t')
+			{
+				addField(begin, i);
+				begin = i + 1;
+			}
+		}
+		
+		addField(begin, end);
+	}
+	
+	private void addField(int begin, int end)
+	{
+		if (n_fields == a_begin.length)
+		{
+			int[] tmp;
+			
+			tmp = new int[n_fields * 2];	System.arraycopy(a_begin, 0, tmp, 0, n_fields);	a_begin = tmp;
+			tmp = new int[n_fields * 2];	System.arraycopy(a_end  , 0, tmp, 0, n_fields);	a_end   = tmp;
+		}
+		
+		a_begin[n_fields] = begin;
+		a_end  [n_fields] = end;
+		n_fields++;
+	}
+	
+	/** @return the number of fields in the current line. */
+	public int size()
+	{
+		return n_fields;
+	}
+	
+	/** @return true if the current line contains only white spaces. */
+	public boolean isBlank()
+	{
+		if (n_fields == 0)	return true;
+		
+		for (int i=a_begin[0]; i<a_end[n_fields-1]; i++)
+			if ((b_buffer.get(i) & 0xff) > ' ')	return false;
+		
+		return true;
+	}
+	
+	/** @return the integer value of the <code>index</code>'th field, parsed directly from bytes. */
+	public int getInt(int index)
+	{
+		int i = a_begin[index], end = a_end[index], value = 0;
+		boolean negative = false;
+		byte b;
+		
+		if (i < end && b_buffer.get(i) == '-')
+		{
+			negative = true;
+			i++;
+		}
+		
+		if (i == end)	throw new NumberFormatException("For input string: \""+getString(index)+"\"");
+		
+		for (; i<end; i++)
+		{
+			b = b_buffer.get(i);
+			if (b < '0' || b > '9')	throw new NumberFormatException("For input string: \""+getString(index)+"\"");
+			value = value * 10 + (b - '0');
+		}
+		
+		return negative ? -value : value;
+	}
+	
+	/** @return the <code>index</code>'th field decoded as a string. */
+	public String getString(int index)
+	{
+		int begin = a_begin[index], length = a_end[index] - begin;
+		
+		if (a_bytes.length < length)	a_bytes = new byte[length * 2];
+		
+		b_buffer.position(begin);
+		b_buffer.get(a_bytes, 0, length);
+		
+		return new String(a_bytes, 0, length, UTF8);
+	}
+	
+	/** @return true if the <code>index</code>'th field equals to <code>str</code>, which consists of ASCII characters only. */
+	public boolean equals(int index, String str)
+	{
+		int i, begin = a_begin[index], length = a_end[index] - begin;
+		if (length != str.length())	return false;
+		
+		for (i=0; i<length; i++)
+			if (b_buffer.get(begin+i) != str.charAt(i))	return false;
+		
+		return true;
+	}
+	
+	/** @return the current line without the line terminator. */
+	public String getLine()
+	{
+		if (n_fields == 0)	return "";
+		
+		int begin = a_begin[0], length = a_end[n_fields-1] - begin;
+		if (a_bytes.length < length)	a_bytes = new byte[length * 2];
+		
+		b_buffer.position(begin);
+		b_buffer.get(a_bytes, 0, length);
+		
+		return new String(a_bytes, 0, length, UTF8);
+	}
+	
+	public void close()
+	{
+		try
+		{
+			if (f_file   != null)	f_file.close();
+			if (f_stream != null)	f_stream.close();
+		}
+		catch (IOException e) {e.printStackTrace();}
+	}
+}
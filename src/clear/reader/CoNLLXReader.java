@@ -23,19 +23,16 @@
 */
 package clear.reader;
 
-import java.io.IOException;
-
 import clear.dep.DepFeat;
 import clear.dep.DepLib;
 import clear.dep.DepNode;
-import clear.dep.DepTree;
 
 /**
  * CoNLL dependency reader.
  * @author Jinho D. Choi
  * <b>Last update:</b> 6/26/2010
  */
-public class CoNLLXReader extends AbstractReader<DepNode,DepTree>
+public class CoNLLXReader extends AbstractDepReader
 {
 	private boolean b_train;
 	
@@ -50,40 +47,21 @@ public class CoNLLXReader extends AbstractReader<DepNode,DepTree>
 		b_train = isTrain;
 	}
 	
-	/** 
-	 * Returns the next dependency tree.
-	 * If there is no more tree, returns null.
-	 */
-	public DepTree nextTree()
-	{
-		DepTree tree   = new DepTree();
-		boolean isNext = false;
-		
-		try
-		{
-			isNext = appendNextTree(tree);
-		}
-		catch (IOException e) {e.printStackTrace();}
-
-		return isNext ? tree : null;
-	}
-	
-	protected DepNode toNode(String line, int id)
+	protected DepNode toNode(ByteLineReader line, int id)
 	{
-		DepNode node = new DepNode();
-		String[] str = line.split(FIELD_DELIM);
-		node.id      = Integer.parseInt(str[0]);
-		node.form    = str[1];
-		node.lemma   = str[2];
-		node.pos     = str[4];
+		DepNode node = newNode();
+		node.id      = line.getInt(0);
+		node.form    = line.getString(1);
+		node.lemma   = line.getString(2);
+		node.pos     = line.getString(4);
 		
-		if (!str[5].equals(DepLib.FIELD_BLANK))
-			node.feats = new DepFeat(str[5]);
+		if (!line.equals(5, DepLib.FIELD_BLANK))
+			node.feats = new DepFeat(line.getString(5));
 
 		if (b_train)
 		{
-			node.headId = Integer.parseInt(str[6]);
-			node.deprel = str[7];
+			node.headId = line.getInt(6);
+			node.deprel = line.getString(7);
 		}
 		
 		return node;
@@ -23,19 +23,16 @@
 */
 package clear.reader;
 
-import java.io.IOException;
-
 import clear.dep.DepFeat;
 import clear.dep.DepLib;
 import clear.dep.DepNode;
-import clear.dep.DepTree;
 
 /**
  * Dependency reader.
  * @author Jinho D. Choi
  * <b>Last update:</b> 6/26/2010
  */
-public class DepReader extends AbstractReader<DepNode,DepTree>
+public class DepReader extends AbstractDepReader
 {
 	private boolean b_train;
 	
@@ -50,40 +47,21 @@ public class DepReader extends AbstractReader<DepNode,DepTree>
 		b_train = isTrain;
 	}
 	
-	/** 
-	 * Returns the next dependency tree.
-	 * If there is no more tree, returns null.
-	 */
-	public DepTree nextTree()
-	{
-		DepTree tree   = new DepTree();
-		boolean isNext = false;
-		
-		try
-		{
-			isNext = appendNextTree(tree);
-		}
-		catch (IOException e) {e.printStackTrace();}
-
-		return isNext ? tree : null;
-	}
-	
-	protected DepNode toNode(String line, int id)
+	protected DepNode toNode(ByteLineReader line, int id)
 	{
-		DepNode node = new DepNode();
-		String[] str = line.split(FIELD_DELIM);
-		node.id      = Integer.parseInt(str[0]);
-		node.form    = str[1];
-		node.lemma   = str[2];
-		node.pos     = str[3];
+		DepNode node = newNode();
+		node.id      = line.getInt(0);
+		node.form    = line.getString(1);
+		node.lemma   = line.getString(2);
+		node.pos     = line.getString(3);
 		
-		if (!str[4].equals(DepLib.FIELD_BLANK))
-			node.feats = new DepFeat(str[4]);
+		if (!line.equals(4, DepLib.FIELD_BLANK))
+			node.feats = new DepFeat(line.getString(4));
 		
 		if (b_train)
 		{
-			node.headId = Integer.parseInt(str[5]);
-			node.deprel = str[6];
+			node.headId = line.getInt(5);
+			node.deprel = line.getString(6);
 		}
 		
 		return node;
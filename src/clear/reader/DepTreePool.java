@@ -0,0 +1,85 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.reader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import clear.dep.DepTree;
+
+/**
+ * Bounded pool of dependency trees.
+ * {@link DepTreePool#acquire()} blocks while all trees are in use, which bounds memory and throttles producers.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/14/2011
+ */
+public class DepTreePool
+{
+	/** Trees that have been released */
+	private BlockingQueue<DepTree> q_free;
+	/** Maximum number of trees */
+	private int n_capacity;
+	/** Number of trees created so far */
+	private int n_created;
+	
+	/** @param capacity maximum number of trees that can be in use at the same time */
+	public DepTreePool(int capacity)
+	{
+		if (capacity < 1)	throw new IllegalArgumentException("capacity must be positive: "+capacity);
+		
+		q_free     = new ArrayBlockingQueue<DepTree>(capacity);
+		n_capacity = capacity;
+		n_created  = 0;
+	}
+	
+	/** @return a free tree; creates a new one if the pool is not full, otherwise waits for a tree to be released. */
+	public DepTree acquire() throws InterruptedException
+	{
+		DepTree tree = q_free.poll();
+		if (tree != null)	return tree;
+		
+		synchronized (this)
+		{
+			if (n_created < n_capacity)
+			{
+				n_created++;
+				return new DepTree();
+			}
+		}
+		
+		return q_free.take();
+	}
+	
+	/** Returns <code>tree</code> to the pool; its nodes are reused by the next {@link AbstractDepReader#nextTree(DepTree)}. */
+	public void release(DepTree tree)
+	{
+		if (!q_free.offer(tree))
+			throw new IllegalStateException("More trees are released than acquired");
+	}
+	
+	public int getCapacity()
+	{
+		return n_capacity;
+	}
+}
@@ -0,0 +1,189 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.reader;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import clear.dep.DepTree;
+
+/**
+ * Pull-based stream of dependency trees recycled through a {@link DepTreePool}.
+ * Trees returned by {@link DepTreeStream#next()} must be passed to {@link DepTreeStream#release(DepTree)} once they are no longer used.
+ * If the prefetch size is positive, trees are read ahead by a background thread;
+ * the reader blocks when the pool is exhausted, so memory stays bounded by the pool size.
+ * <pre>
+ * DepTreeStream stream = new DepTreeStream(new DepReader(trainFile, true), 64, 32);
+ * while (stream.hasNext())
+ * {
+ *     DepTree tree = stream.next();
+ *     parser.parse(tree);
+ *     stream.release(tree);
+ * }
+ * </pre>
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/14/2011
+ */
+public class DepTreeStream implements Iterator<DepTree>
+{
+	/** Marks the end of the stream in {@link DepTreeStream#q_prefetch} */
+	static private final DepTree EOS = new DepTree();
+	
+	private AbstractDepReader      r_reader;
+	private DepTreePool            p_trees;
+	private BlockingQueue<DepTree> q_prefetch;
+	private Thread                 t_prefetch;
+	/** Error thrown by the prefetching thread */
+	volatile private RuntimeException e_prefetch;
+	/** Next tree to be returned; null if not fetched yet */
+	private DepTree d_next;
+	private boolean b_end;
+	
+	/**
+	 * @param reader   reader to stream trees from
+	 * @param poolSize maximum number of trees in use, including prefetched ones
+	 * @param prefetch number of trees to read ahead on a background thread; 0 to read on the calling thread
+	 */
+	public DepTreeStream(AbstractDepReader reader, int poolSize, int prefetch)
+	{
+		if (prefetch >= poolSize)	throw new IllegalArgumentException("prefetch ("+prefetch+") must be smaller than the pool size ("+poolSize+")");
+		
+		r_reader = reader;
+		p_trees  = new DepTreePool(poolSize);
+		b_end    = false;
+		
+		if (prefetch > 0)
+		{
+			q_prefetch = new ArrayBlockingQueue<DepTree>(prefetch + 1);
+			t_prefetch = new Thread(new Prefetcher(), "DepTreeStream");
+			t_prefetch.setDaemon(true);
+			t_prefetch.start();
+		}
+	}
+	
+	public boolean hasNext()
+	{
+		if (d_next == null && !b_end)
+		{
+			d_next = (q_prefetch != null) ? takePrefetched() : readTree();
+			
+			if (d_next == null || d_next == EOS)
+			{
+				d_next = null;
+				b_end  = true;
+			}
+		}
+		
+		return d_next != null;
+	}
+	
+	public DepTree next()
+	{
+		if (!hasNext())	throw new NoSuchElementException();
+		
+		DepTree tree = d_next;
+		d_next = null;
+		
+		return tree;
+	}
+	
+	/** Returns <code>tree</code>, previously returned by {@link DepTreeStream#next()}, to the pool. */
+	public void release(DepTree tree)
+	{
+		p_trees.release(tree);
+	}
+	
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	/** Stops prefetching and closes the reader. */
+	public void close()
+	{
+		b_end = true;
+		if (t_prefetch != null)	t_prefetch.interrupt();
+		else					r_reader.close();
+	}
+	
+	private DepTree readTree()
+	{
+		try
+		{
+			DepTree tree = p_trees.acquire();
+			DepTree next = r_reader.nextTree(tree);
+			
+			if (next == null)	p_trees.release(tree);
+			return next;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+	
+	private DepTree takePrefetched()
+	{
+		try
+		{
+			DepTree tree = q_prefetch.take();
+			if (tree == EOS && e_prefetch != null)	throw e_prefetch;
+			
+			return tree;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+	
+	private class Prefetcher implements Runnable
+	{
+		public void run()
+		{
+			DepTree tree;
+			
+			try
+			{
+				try
+				{
+					while ((tree = readTree()) != null)
+						q_prefetch.put(tree);
+				}
+				catch (RuntimeException e) {e_prefetch = e;}
+				
+				q_prefetch.put(EOS);
+			}
+			catch (InterruptedException e) {}
+			finally
+			{
+				r_reader.close();
+			}
+		}
+	}
+}
@@ -23,17 +23,14 @@
 */
 package clear.reader;
 
-import java.io.IOException;
-
 import clear.dep.DepNode;
-import clear.dep.DepTree;
 
 /**
  * Part-of-speech dependency reader.
  * @author Jinho D. Choi
  * <b>Last update:</b> 6/26/2010
  */
-public class PosReader extends AbstractReader<DepNode,DepTree>
+public class PosReader extends AbstractDepReader
 {
 	/**
 	 * Initializes the dependency reader for <code>filename</code>.
@@ -44,31 +41,12 @@ public class PosReader extends AbstractReader<DepNode,DepTree>
 		super(filename);
 	}
 	
-	/** 
-	 * Returns the next dependency tree.
-	 * If there is no more tree, returns null.
-	 */
-	public DepTree nextTree()
-	{
-		DepTree tree   = new DepTree();
-		boolean isNext = false;
-		
-		try
-		{
-			isNext = appendNextTree(tree);
-		}
-		catch (IOException e) {e.printStackTrace();}
-
-		return isNext ? tree : null;
-	}
-	
-	protected DepNode toNode(String line, int id)
+	protected DepNode toNode(ByteLineReader line, int id)
 	{
-		DepNode node = new DepNode();
-		String[] str = line.split(FIELD_DELIM);
+		DepNode node = newNode();
 		node.id      = id;
-		node.form    = str[0];
-		node.pos     = str[1];
+		node.form    = line.getString(0);
+		node.pos     = line.getString(1);
 		
 		return node;
 	}
@@ -38,12 +38,17 @@ abstract public class AbstractTrainer
 {
 	static public final byte ST_BINARY     = 0;
 	static public final byte ST_ONE_VS_ALL = 1;
+	static public final byte ST_MULTICLASS = 2;
 	
 	protected String         s_modelFile;	// output file
 	protected PrintStream    f_out;
 	protected IAlgorithm     a_algorithm;
 	protected AbstractKernel k_kernel;
 	protected int            i_numThreads;
+	/** If true, the model is saved in the binary format if the model supports it */
+	protected boolean        b_binaryModel;
+	/** Listener of training progress; if <code>null</code>, progress is not reported */
+	protected ITrainListener l_listener = new TrainProgressPrinter();
 	
 	public AbstractTrainer(String modelFile, IAlgorithm algorithm, AbstractKernel kernel, int numThreads)
 	{
@@ -55,6 +60,41 @@ abstract public class AbstractTrainer
 		init(null, fout, algorithm, kernel, numThreads);
 	}
 	
+	/**
+	 * Creates a trainer that does not train until {@link AbstractTrainer#train(String)} or {@link AbstractTrainer#train(PrintStream)}
+	 * is called, so that options such as {@link AbstractTrainer#setBinaryModel(boolean)} can be set in between.
+	 */
+	public AbstractTrainer(IAlgorithm algorithm, AbstractKernel kernel, int numThreads)
+	{
+		a_algorithm  = algorithm;
+		k_kernel     = kernel;
+		i_numThreads = numThreads;
+	}
+	
+	/** If <code>binaryModel</code> is true, the model is saved in the binary format if the model supports it. */
+	public void setBinaryModel(boolean binaryModel)
+	{
+		b_binaryModel = binaryModel;
+	}
+	
+	/** Sets the listener of training progress; if <code>null</code>, progress is not reported. */
+	public void setListener(ITrainListener listener)
+	{
+		l_listener = listener;
+	}
+	
+	/** Trains and saves the model to <code>modelFile</code>. */
+	public void train(String modelFile)
+	{
+		init(modelFile, null, a_algorithm, k_kernel, i_numThreads);
+	}
+	
+	/** Trains and prints the model to <code>fout</code>; if <code>fout</code> is null, the model is not saved. */
+	public void train(PrintStream fout)
+	{
+		init(null, fout, a_algorithm, k_kernel, i_numThreads);
+	}
+	
 	protected void init(String modelFile, PrintStream fout, IAlgorithm algorithm, AbstractKernel kernel, int numThreads)
 	{
 		s_modelFile  = modelFile;
@@ -0,0 +1,55 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.train;
+
+/**
+ * Listener of training progress.
+ * All methods are called from the thread that runs the trainer, so implementations need not be thread-safe.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/22/2011
+ */
+public interface ITrainListener
+{
+	/**
+	 * Called before any label is trained.
+	 * @param nLabels total number of labels to train
+	 * @param numThreads number of threads to train with
+	 */
+	public void trainingStarted(int nLabels, int numThreads);
+	
+	/**
+	 * Called whenever a label is trained.
+	 * @param label the label (not the label index)
+	 * @param nInstances number of instances of the label
+	 * @param time milliseconds taken to train the label
+	 * @param nTrained number of labels trained so far, including this one
+	 */
+	public void labelTrained(int label, int nInstances, long time, int nTrained);
+	
+	/**
+	 * Called after all labels are trained.
+	 * @param time milliseconds taken to train all labels
+	 */
+	public void trainingFinished(long time);
+}
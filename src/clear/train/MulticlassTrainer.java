@@ -0,0 +1,87 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.train;
+
+import java.io.PrintStream;
+
+import clear.model.OneVsAllModel;
+import clear.train.algorithm.IAlgorithm;
+import clear.train.algorithm.IMultiAlgorithm;
+import clear.train.kernel.AbstractKernel;
+
+/**
+ * Multi-class trainer; trains weight vectors of all labels at once using {@link IMultiAlgorithm}.
+ * The trained model has the same layout as one-vs-all models.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/18/2011
+ */
+public class MulticlassTrainer extends AbstractTrainer
+{
+	protected OneVsAllModel m_model;
+	
+	public MulticlassTrainer(String modelFile, IAlgorithm algorithm, AbstractKernel kernel)
+	{
+		super(modelFile, algorithm, kernel, 1);
+	}
+	
+	public MulticlassTrainer(PrintStream fout, IAlgorithm algorithm, AbstractKernel kernel)
+	{
+		super(fout, algorithm, kernel, 1);
+	}
+	
+	/** Call {@link AbstractTrainer#train(String)} or {@link AbstractTrainer#train(PrintStream)} to train. */
+	public MulticlassTrainer(IAlgorithm algorithm, AbstractKernel kernel)
+	{
+		super(algorithm, kernel, 1);
+	}
+	
+	public OneVsAllModel getModel()
+	{
+		return m_model;
+	}
+	
+	protected void initModel()
+	{
+		m_model = new OneVsAllModel(k_kernel);
+		m_model.setBinary(b_binaryModel);
+	}
+	
+	protected void train()
+	{
+		System.out.println("\n* Training");
+		
+		if (a_algorithm instanceof IMultiAlgorithm)
+			((IMultiAlgorithm)a_algorithm).getWeights(k_kernel, m_model.d_weights);
+		else
+		{
+			for (int currLabel=0; currLabel<k_kernel.L; currLabel++)
+				m_model.copyWeight(currLabel, a_algorithm.getWeight(k_kernel, k_kernel.a_labels[currLabel]));
+		}
+		
+		System.out.println("\n* Saving");
+		
+		if      (s_modelFile != null)	m_model.save(s_modelFile);
+		else if	(f_out       != null)	m_model.save(f_out);
+	}
+}
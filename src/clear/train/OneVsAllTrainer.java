@@ -24,12 +24,18 @@
 package clear.train;
 
 import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import clear.model.OneVsAllModel;
 import clear.train.algorithm.IAlgorithm;
+import clear.train.algorithm.IParallelAlgorithm;
+import clear.train.algorithm.ISparseAlgorithm;
 import clear.train.kernel.AbstractKernel;
 
 /**
@@ -51,6 +57,12 @@ public class OneVsAllTrainer extends AbstractTrainer
 		super(fout, algorithm, kernel, numThreads);
 	}
 	
+	/** Call {@link AbstractTrainer#train(String)} or {@link AbstractTrainer#train(PrintStream)} to train. */
+	public OneVsAllTrainer(IAlgorithm algorithm, AbstractKernel kernel, int numThreads)
+	{
+		super(algorithm, kernel, numThreads);
+	}
+	
 	public OneVsAllModel getModel()
 	{
 		return m_model;
@@ -59,36 +71,118 @@ public class OneVsAllTrainer extends AbstractTrainer
 	protected void initModel()
 	{
 		m_model = new OneVsAllModel(k_kernel);
+		m_model.setSparse(a_algorithm instanceof ISparseAlgorithm);
+		m_model.setBinary(b_binaryModel);
 	}
 
+	/**
+	 * Labels are scheduled in descending order of their instance counts so that threads stay busy until the end.
+	 * If the algorithm is {@link IParallelAlgorithm#isParallel()}, labels whose instances are more than
+	 * <code>1/numThreads</code> of all instances are trained first, one at a time, using all threads.
+	 * Each trained label is reported to {@link AbstractTrainer#l_listener} as soon as it finishes.
+	 */
 	protected void train()
 	{
-		ExecutorService executor = Executors.newFixedThreadPool(i_numThreads);;
 		System.out.println("\n* Training");
 		
-		for (int currLabel=0; currLabel<k_kernel.L; currLabel++)
-			executor.execute(new TrainTask(currLabel));
+		final int[] counts = getInstanceCounts();
+		Integer[]   labels = new Integer[k_kernel.L];
+		int i, nTrained = 0;
+		
+		for (i=0; i<labels.length; i++)	labels[i] = i;
+		
+		Arrays.sort(labels, new Comparator<Integer>()
+		{
+			public int compare(Integer label1, Integer label2)
+			{
+				return counts[label2] - counts[label1];
+			}
+		});
+		
+		long st = System.currentTimeMillis();
+		if (l_listener != null)	l_listener.trainingStarted(labels.length, i_numThreads);
+		i = 0;
+		
+		if (i_numThreads > 1 && a_algorithm instanceof IParallelAlgorithm && ((IParallelAlgorithm)a_algorithm).isParallel())
+		{
+			IParallelAlgorithm algorithm = (IParallelAlgorithm)a_algorithm;
+			long time;
+			
+			for (; i<labels.length && (long)counts[labels[i]] * i_numThreads >= k_kernel.N; i++)
+			{
+				time = System.currentTimeMillis();
+				m_model.copyWeight(labels[i], algorithm.getWeight(k_kernel, k_kernel.a_labels[labels[i]], i_numThreads));
+				time = System.currentTimeMillis() - time;
+				
+				if (l_listener != null)	l_listener.labelTrained(k_kernel.a_labels[labels[i]], counts[labels[i]], time, ++nTrained);
+			}
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(i_numThreads);
+		CompletionService<TrainTask> service = new ExecutorCompletionService<TrainTask>(executor);
+		int nTasks = 0;
+		TrainTask task;
+		
+		for (; i<labels.length; i++, nTasks++)
+		{
+			task = new TrainTask(labels[i]);
+			service.submit(task, task);
+		}
 		
 		executor.shutdown();
 		
 		try
 		{
-			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			// tasks are collected in the order they finish
+			for (; nTasks > 0; nTasks--)
+			{
+				try
+				{
+					task = service.take().get();
+				}
+				catch (ExecutionException e)
+				{
+					e.getCause().printStackTrace();
+					continue;
+				}
+				
+				if (l_listener != null)	l_listener.labelTrained(k_kernel.a_labels[task.curr_label], counts[task.curr_label], task.l_time, ++nTrained);
+			}
+			
+			if (l_listener != null)	l_listener.trainingFinished(System.currentTimeMillis() - st);
 			System.out.println("\n* Saving");
 			
-			if      (s_modelFile != null)	m_model.save(s_modelFile);
-			else if	(f_out       != null)	m_model.save(f_out);
+			// weights are formatted by all threads and written directly to the output stream
+			if      (s_modelFile != null)	m_model.save(s_modelFile, i_numThreads);
+			else if	(f_out       != null)	m_model.save(f_out, i_numThreads);
+		}
+		catch (InterruptedException e)
+		{
+			executor.shutdownNow();
+			e.printStackTrace();
 		}
-		catch (InterruptedException e) {e.printStackTrace();}
 	}
 
+	/** @return the number of instances of each label index. */
+	private int[] getInstanceCounts()
+	{
+		int[] counts = new int[k_kernel.L];
+		
+		for (int i=0; i<k_kernel.N; i++)
+			counts[Arrays.binarySearch(k_kernel.a_labels, k_kernel.a_instances.getY(i))]++;
+		
+		return counts;
+	}
+	
 	class TrainTask implements Runnable
 	{
 		/** Current label to train */
-		int curr_label;
+		int  curr_label;
+		/** Milliseconds taken to train {@link this#curr_label} */
+		long l_time;
 		
 		/**
-		 * Trains a one-vs-all model using {@link AbstractTrainer#a_xs} and {@link AbstractTrainer#a_ys} with respect to <code>currLabel</code>.
+		 * Trains a one-vs-all model using {@link AbstractKernel#a_instances} with respect to <code>currLabel</code>.
 		 * @param currLabel current label to train ({@link this#curr_label})
 		 */
 		public TrainTask(int currLabel)
@@ -98,7 +192,9 @@ public class OneVsAllTrainer extends AbstractTrainer
 		
 		public void run()
 		{
+			long st = System.currentTimeMillis();
 			m_model.copyWeight(curr_label, a_algorithm.getWeight(k_kernel, k_kernel.a_labels[curr_label]));
+			l_time = System.currentTimeMillis() - st;
 		}
 	}
 }
@@ -0,0 +1,90 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.train;
+
+/**
+ * Prints training progress to the standard output.
+ * Progress is printed at every 10% of labels with the estimated time left and the memory in use.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/22/2011
+ */
+public class TrainProgressPrinter implements ITrainListener
+{
+	static private final int MB = 1024 * 1024;
+	
+	private int  n_labels;
+	private int  n_printed;
+	private long l_start;
+	/** Label that took the longest to train */
+	private int  i_slowLabel;
+	private long l_slowTime;
+	private long l_maxMemory;
+	
+	public void trainingStarted(int nLabels, int numThreads)
+	{
+		n_labels    = nLabels;
+		n_printed   = 0;
+		l_start     = System.currentTimeMillis();
+		l_slowTime  = -1;
+		l_maxMemory = 0;
+		
+		System.out.printf("- labels = %d, threads = %d\n", nLabels, numThreads);
+	}
+	
+	public void labelTrained(int label, int nInstances, long time, int nTrained)
+	{
+		long memory = getUsedMemory();
+		
+		if (time   > l_slowTime)	{l_slowTime = time;	i_slowLabel = label;}
+		if (memory > l_maxMemory)	l_maxMemory = memory;
+		
+		int step = nTrained * 10 / n_labels;
+		if (step <= n_printed)	return;
+		n_printed = step;
+		
+		long elapsed = System.currentTimeMillis() - l_start;
+		long eta     = elapsed * (n_labels - nTrained) / nTrained;
+		
+		System.out.printf("- progress: %d/%d (%d%%), last = %d (%d instances, %d ms), eta = %s, memory = %d MB\n", nTrained, n_labels, nTrained * 100 / n_labels, label, nInstances, time, toTime(eta), memory / MB);
+	}
+	
+	public void trainingFinished(long time)
+	{
+		System.out.printf("- trained: %d labels in %s", n_labels, toTime(time));
+		if (l_slowTime >= 0)	System.out.printf(", slowest = %d (%d ms)", i_slowLabel, l_slowTime);
+		System.out.printf(", max memory = %d MB\n", l_maxMemory / MB);
+	}
+	
+	private long getUsedMemory()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	private String toTime(long millis)
+	{
+		long seconds = millis / 1000;
+		return String.format("%d h, %d m, %d s", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+	}
+}
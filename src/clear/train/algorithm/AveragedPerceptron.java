@@ -0,0 +1,313 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.train.algorithm;
+
+import java.util.Arrays;
+
+import clear.model.OneVsAllModel;
+import clear.train.kernel.AbstractInstanceStore;
+import clear.train.kernel.AbstractKernel;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+/**
+ * Averaged multi-class perceptron.
+ * Can be used either online ({@link IOnlineAlgorithm}) or on stored training instances ({@link IMultiAlgorithm}).
+ * The weight of the <code>i</code>'th feature for the <code>j</code>'th label is stored at <code>i*L+j</code>, 
+ * where the 0'th feature is the bias.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/19/2011
+ */
+public class AveragedPerceptron implements IOnlineAlgorithm, IMultiAlgorithm, IWarmStartAlgorithm
+{
+	/** Initial number of features for online learning */
+	static private final int INIT_FEATURES = 1 << 16;
+	
+	private int      i_epochs;
+	private int      n_labels;
+	/** Number of features learned so far (largest feature index + 1) */
+	private int      n_features;
+	/** Current weights */
+	private double[] d_weights;
+	/** Weighted sums of updates for averaging */
+	private double[] d_updates;
+	/** Number of instances learned so far + 1 */
+	private long     n_count;
+	/** Model sharing {@link AveragedPerceptron#d_weights} */
+	private OneVsAllModel m_current;
+	/** Model whose weights are used as initial weights; if <code>null</code>, weights start from 0 */
+	private OneVsAllModel m_init = null;
+	
+	/** Kernel whose averaged weights are kept in {@link AveragedPerceptron#d_cached} */
+	private AbstractKernel k_kernel = null;
+	private double[]       d_cached = null;
+	
+	/** @param epochs number of passes over the training data */
+	public AveragedPerceptron(int epochs)
+	{
+		i_epochs = epochs;
+	}
+	
+	public int getEpochs()
+	{
+		return i_epochs;
+	}
+	
+	/** Updates made from the initial weights are averaged; the initial weights themselves are kept as they are. */
+	public void setInitialModel(OneVsAllModel model)
+	{
+		m_init = model;
+	}
+	
+//	=============================== Online ===============================
+	
+	public void init(int nLabels)
+	{
+		init(nLabels, INIT_FEATURES, getLabels(nLabels));
+	}
+	
+	/** @param labels labels[j] is the label of the <code>j</code>'th column of weights */
+	private void init(int nLabels, int nFeatures, int[] labels)
+	{
+		n_labels   = nLabels;
+		n_features = 1;
+		d_weights  = new double[nFeatures * nLabels];
+		d_updates  = new double[nFeatures * nLabels];
+		n_count    = 1;
+		m_current  = null;
+		
+		if (m_init != null)	initWeights(labels);
+	}
+	
+	/** Copies weights of {@link AveragedPerceptron#m_init} to the current weights. */
+	private void initWeights(int[] labels)
+	{
+		double[] weight = new double[m_init.n_features];
+		int i, j;
+		
+		ensureCapacity(m_init.n_features);
+		
+		for (j=0; j<n_labels; j++)
+		{
+			if (m_init.getWeight(labels[j], weight))
+			{
+				for (i=0; i<weight.length; i++)
+					d_weights[i * n_labels + j] = weight[i];
+			}
+		}
+	}
+	
+	public void learn(int y, IntArrayList x)
+	{
+		int i, max = 0;
+		
+		for (i=0; i<x.size(); i++)
+			if (max < x.get(i))	max = x.get(i);
+		
+		ensureCapacity(max + 1);
+		learn(y, x.buffer, null, x.size());
+	}
+	
+	/** Grows weight vectors to contain <code>nFeatures</code> features. */
+	private void ensureCapacity(int nFeatures)
+	{
+		if (n_features < nFeatures)	n_features = nFeatures;
+		int size = nFeatures * n_labels;
+		
+		if (d_weights.length < size)
+		{
+			size = Math.max(size, d_weights.length * 2);
+			d_weights = Arrays.copyOf(d_weights, size);
+			d_updates = Arrays.copyOf(d_updates, size);
+		}
+		
+		if (m_current != null)
+		{
+			m_current.n_features = n_features;
+			m_current.d_weights  = d_weights;
+		}
+	}
+	
+	/** Updates weights if the highest scoring label of <code>x</code> is not <code>y</code>. */
+	private void learn(int y, int[] x, double[] v, int n)
+	{
+		learn(y, x, v, n, 1);
+	}
+	
+	/** Learns an instance occurring <code>count</code> times; the update is scaled by <code>count</code>. */
+	private void learn(int y, int[] x, double[] v, int n, int count)
+	{
+		int yHat = predict(x, v, n);
+		
+		if (yHat != y)
+		{
+			update(y, count, x, v, n);
+			update(yHat, -count, x, v, n);
+		}
+		
+		n_count += count;
+	}
+	
+	/** @return the index of the highest scoring label using the current weights. */
+	private int predict(int[] x, double[] v, int n)
+	{
+		double[] scores = Arrays.copyOf(d_weights, n_labels);
+		int i, label, begin;
+		
+		for (i=0; i<n; i++)
+		{
+			begin = x[i] * n_labels;
+			
+			for (label=0; label<n_labels; label++)
+			{
+				if (v == null)	scores[label] += d_weights[begin+label];
+				else			scores[label] += d_weights[begin+label] * v[i];
+			}
+		}
+		
+		int best = 0;
+		
+		for (label=1; label<n_labels; label++)
+			if (scores[label] > scores[best])	best = label;
+		
+		return best;
+	}
+	
+	private void update(int label, double d, int[] x, double[] v, int n)
+	{
+		double u = d * n_count, value;
+		int i, idx;
+		
+		d_weights[label] += d;
+		d_updates[label] += u;
+		
+		for (i=0; i<n; i++)
+		{
+			idx   = x[i] * n_labels + label;
+			value = (v == null) ? 1 : v[i];
+			
+			d_weights[idx] += d * value;
+			d_updates[idx] += u * value;
+		}
+	}
+	
+	/** @return the model whose weights are averaged over all instances learned so far. */
+	public OneVsAllModel getModel()
+	{
+		double[] weights = new double[n_features * n_labels];
+		
+		getAveragedWeights(weights);
+		return new OneVsAllModel(n_labels, n_features, getLabels(n_labels), weights);
+	}
+	
+	public OneVsAllModel getCurrentModel()
+	{
+		if (m_current == null)
+			m_current = new OneVsAllModel(n_labels, n_features, getLabels(n_labels), d_weights);
+		
+		return m_current;
+	}
+	
+	private int[] getLabels(int nLabels)
+	{
+		int[] labels = new int[nLabels];
+		
+		for (int i=0; i<nLabels; i++)	labels[i] = i;
+		return labels;
+	}
+	
+	private void getAveragedWeights(double[] weights)
+	{
+		for (int i=0; i<weights.length; i++)
+			weights[i] = d_weights[i] - d_updates[i] / n_count;
+	}
+	
+//	=============================== Batch ===============================
+	
+	/**
+	 * Trains weight vectors of all labels and returns the one of <code>currLabel</code>.
+	 * The weights are trained once per kernel, so calling this for every label costs as much as {@link AveragedPerceptron#getWeights(AbstractKernel, double[])}.
+	 */
+	public double[] getWeight(AbstractKernel kernel, int currLabel)
+	{
+		double[] weights = getCachedWeights(kernel);
+		double[] weight  = new double[kernel.D];
+		int      label   = Arrays.binarySearch(kernel.a_labels, currLabel);
+		
+		for (int i=0; i<kernel.D; i++)
+			weight[i] = weights[i * kernel.L + label];
+		
+		return weight;
+	}
+	
+	/** @return averaged weights of all labels trained on <code>kernel</code>; they are trained only if <code>kernel</code> differs from the previous call. */
+	synchronized private double[] getCachedWeights(AbstractKernel kernel)
+	{
+		if (d_cached == null || k_kernel != kernel)
+		{
+			d_cached = new double[kernel.D * kernel.L];
+			getWeights(kernel, d_cached);
+			k_kernel = kernel;
+		}
+		
+		return d_cached;
+	}
+	
+	/** Weights are trained by a separate learner so that the online weights ({@link AveragedPerceptron#getCurrentModel()}) are not touched. */
+	public void getWeights(AbstractKernel kernel, double[] weights)
+	{
+		AveragedPerceptron learner = new AveragedPerceptron(i_epochs);
+		
+		learner.setInitialModel(m_init);
+		learner.train(kernel, weights);
+	}
+	
+	/** Trains on <code>kernel</code> using the fields of this learner, and stores the averaged weights to <code>weights</code>. */
+	private void train(AbstractKernel kernel, double[] weights)
+	{
+		AbstractInstanceStore instances = kernel.a_instances;
+		
+		int[]    x = new int[instances.getMaxLength()];
+		double[] v = kernel.b_binary ? null : new double[x.length];
+		int      epoch, i, n, y;
+		
+		init(kernel.L, kernel.D, kernel.a_labels);
+		ensureCapacity(kernel.D);
+		
+		for (epoch=0; epoch<i_epochs; epoch++)
+		{
+			for (i=0; i<kernel.N; i++)
+			{
+				y = Arrays.binarySearch(kernel.a_labels, instances.getY(i));
+				n = instances.getX(i, x);
+				if (v != null)	instances.getV(i, v);
+				
+				learn(y, x, v, n, (kernel.a_counts != null) ? kernel.a_counts[i] : 1);
+			}
+		}
+		
+		getAveragedWeights(weights);
+		System.out.println("- labels = "+kernel.L+": epochs = "+i_epochs);
+	}
+}
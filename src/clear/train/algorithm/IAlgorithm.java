@@ -33,7 +33,14 @@ import clear.train.kernel.AbstractKernel;
 public interface IAlgorithm
 {
 	static public final String LIBLINEAR_L2 = "lib";
+	static public final String LIBLINEAR_L1 = "l1";
 	static public final String RRM          = "rrm";
+	static public final String LIBLINEAR_CS = "cs";
+	static public final String PERCEPTRON   = "perceptron";
 	
+	/**
+	 * Returns the weight vector of <code>currLabel</code>.
+	 * The returned array may be reused by the next call from the same thread; callers must copy it before the next call.
+	 */
 	public double[] getWeight(AbstractKernel kernel, int currLabel);
 }
@@ -0,0 +1,56 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.train.algorithm;
+
+import clear.model.OneVsAllModel;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+/**
+ * Interface of algorithms learning training instances one at a time.
+ * Instances can be passed as soon as they are generated so that no training set is kept.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/19/2011
+ */
+public interface IOnlineAlgorithm extends IAlgorithm
+{
+	/** Initializes weights to learn labels whose indices are in <code>[0, nLabels)</code>. */
+	public void init(int nLabels);
+	
+	/**
+	 * Learns a training instance.
+	 * @param y index of the label
+	 * @param x indices of binary features
+	 */
+	public void learn(int y, IntArrayList x);
+	
+	/** @return the number of passes over the training data. */
+	public int getEpochs();
+	
+	/** @return the model learned so far, where the label of index <code>i</code> is <code>i</code>. */
+	public OneVsAllModel getModel();
+	
+	/** @return the model sharing weights with this learner so that it predicts with every update made so far. */
+	public OneVsAllModel getCurrentModel();
+}
@@ -0,0 +1,363 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.train.algorithm;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import clear.train.kernel.AbstractInstanceStore;
+import clear.train.kernel.AbstractKernel;
+
+/**
+ * LibLinear multi-class SVM by Crammer and Singer (dual coordinate descent).
+ * Each epoch visits every instance once and updates weights of all labels together.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/22/2011
+ */
+public class LibLinearCS implements IMultiAlgorithm
+{
+	private double d_c;
+	private double d_eps;
+	private double d_bias;
+	private int    i_maxIter = 1000;
+	private long   l_seed    = 0;
+	
+	/** Kernel whose weights are kept in {@link LibLinearCS#d_weights} */
+	private AbstractKernel k_kernel  = null;
+	private double[]       d_weights = null;
+	
+	public LibLinearCS(double c, double eps, double bias)
+	{
+		d_c    = c;
+		d_eps  = eps;
+		d_bias = bias;
+	}
+	
+	public void setMaxIterations(int maxIter)
+	{
+		i_maxIter = maxIter;
+	}
+	
+	/** Instances are visited in a random order in each epoch; permutations are reproducible given <code>seed</code>. */
+	public void setSeed(long seed)
+	{
+		l_seed = seed;
+	}
+	
+	/**
+	 * Trains weight vectors of all labels and returns the one of <code>currLabel</code>.
+	 * The weights are trained once per kernel, so calling this for every label costs as much as {@link LibLinearCS#getWeights(AbstractKernel, double[])}.
+	 */
+	public double[] getWeight(AbstractKernel kernel, int currLabel)
+	{
+		double[] weights = getCachedWeights(kernel);
+		double[] weight  = new double[kernel.D];
+		int      label   = Arrays.binarySearch(kernel.a_labels, currLabel);
+		
+		for (int i=0; i<kernel.D; i++)
+			weight[i] = weights[i * kernel.L + label];
+		
+		return weight;
+	}
+	
+	/** @return weight vectors of all labels trained on <code>kernel</code>; they are trained only if <code>kernel</code> differs from the previous call. */
+	synchronized private double[] getCachedWeights(AbstractKernel kernel)
+	{
+		if (d_weights == null || k_kernel != kernel)
+		{
+			d_weights = new double[kernel.D * kernel.L];
+			getWeights(kernel, d_weights);
+			k_kernel  = kernel;
+		}
+		
+		return d_weights;
+	}
+	
+	public void getWeights(AbstractKernel kernel, double[] weights)
+	{
+		AbstractInstanceStore instances = kernel.a_instances;
+		
+		int N = kernel.N, L = kernel.L;
+		Random rand = new Random(l_seed);
+		
+		double[] alpha      = new double[N * L];
+		int[]    alphaIndex = new int   [N * L];
+		int[]    yIndex     = new int   [N];
+		int[]    activeI    = new int   [N];
+		int[]    index      = new int   [N];
+		double[] QD         = new double[N];
+		
+		double[] G        = new double[L];
+		double[] B        = new double[L];
+		double[] alphaNew = new double[L];
+		double[] sorted   = new double[L];
+		int[]    dIndex   = new int   [L];
+		double[] dValue   = new double[L];
+		
+		int[]    x = new int   [instances.getMaxLength()];
+		double[] v = kernel.b_binary ? null : new double[x.length];
+		
+		int    activeSize = N, i, j, m, s, k, n, iter, nz, a, begin, yi;
+		double epsShrink = Math.max(10 * d_eps, 1), stopping, Ai, minG, maxG, d, c;
+		boolean startFromAll = true;
+		
+		for (i=0; i<N; i++)
+		{
+			QD[i] = kernel.d_norms[i];
+			if (d_bias > 0)	QD[i] += d_bias * d_bias;
+			
+			index  [i] = i;
+			activeI[i] = L;
+			yIndex [i] = Arrays.binarySearch(kernel.a_labels, instances.getY(i));
+			
+			for (m=0; m<L; m++)	alphaIndex[i*L+m] = m;
+		}
+		
+		for (iter=0; iter<i_maxIter; iter++)
+		{
+			stopping = Double.NEGATIVE_INFINITY;
+			
+			for (s=0; s<activeSize; s++)
+				swap(index, s, s + rand.nextInt(activeSize - s));
+			
+			for (s=0; s<activeSize; s++)
+			{
+				i     = index[s];
+				Ai    = QD[i];
+				begin = i * L;
+				
+				if (Ai <= 0)	continue;
+				// the penalty is scaled by the number of occurrences
+				c = (kernel.a_counts != null) ? d_c * kernel.a_counts[i] : d_c;
+				
+				for (m=0; m<activeI[i]; m++)	G[m] = 1;
+				if (yIndex[i] < activeI[i])		G[yIndex[i]] = 0;
+				
+				n = instances.getX(i, x);
+				if (!kernel.b_binary)	instances.getV(i, v);
+				
+				if (d_bias > 0)	addGradient(G, weights, 0, d_bias, alphaIndex, begin, activeI[i], L);
+				
+				if (kernel.b_binary)
+				{
+					for (j=0; j<n; j++)
+						addGradient(G, weights, x[j], alphaIndex, begin, activeI[i], L);
+				}
+				else
+				{
+					for (j=0; j<n; j++)
+						addGradient(G, weights, x[j], v[j], alphaIndex, begin, activeI[i], L);
+				}
+				
+				minG = Double.POSITIVE_INFINITY;
+				maxG = Double.NEGATIVE_INFINITY;
+				
+				for (m=0; m<activeI[i]; m++)
+				{
+					if (alpha[begin+alphaIndex[begin+m]] < 0 && G[m] < minG)	minG = G[m];
+					if (G[m] > maxG)	maxG = G[m];
+				}
+				
+				yi = yIndex[i];
+				
+				if (yi < activeI[i] && alpha[begin+alphaIndex[begin+yi]] < c && G[yi] < minG)
+					minG = G[yi];
+				
+				for (m=0; m<activeI[i]; m++)
+				{
+					if (isShrunk(m, yIndex[i], alpha[begin+alphaIndex[begin+m]], G[m], minG, c))
+					{
+						activeI[i]--;
+						
+						while (activeI[i] > m)
+						{
+							k = activeI[i];
+							
+							if (!isShrunk(k, yIndex[i], alpha[begin+alphaIndex[begin+k]], G[k], minG, c))
+							{
+								swap(alphaIndex, begin+m, begin+k);
+								swap(G, m, k);
+								
+								if      (yIndex[i] == k)	yIndex[i] = m;
+								else if (yIndex[i] == m)	yIndex[i] = k;
+								break;
+							}
+							
+							activeI[i]--;
+						}
+					}
+				}
+				
+				if (activeI[i] <= 1)
+				{
+					activeSize--;
+					swap(index, s, activeSize);
+					s--;
+					continue;
+				}
+				
+				if (maxG - minG <= 1e-12)	continue;
+				stopping = Math.max(maxG - minG, stopping);
+				
+				for (m=0; m<activeI[i]; m++)
+					B[m] = G[m] - Ai * alpha[begin+alphaIndex[begin+m]];
+				
+				solveSubProblem(B, Ai, yIndex[i], c, activeI[i], alphaNew, sorted);
+				
+				for (m=0, nz=0; m<activeI[i]; m++)
+				{
+					a = begin + alphaIndex[begin+m];
+					d = alphaNew[m] - alpha[a];
+					alpha[a] = alphaNew[m];
+					
+					if (Math.abs(d) >= 1e-12)
+					{
+						dIndex[nz] = alphaIndex[begin+m];
+						dValue[nz] = d;
+						nz++;
+					}
+				}
+				
+				if (d_bias > 0)	addWeight(weights, 0, d_bias, dIndex, dValue, nz, L);
+				
+				for (j=0; j<n; j++)
+					addWeight(weights, x[j], kernel.b_binary ? 1 : v[j], dIndex, dValue, nz, L);
+			}
+			
+			if (stopping < epsShrink)
+			{
+				if (stopping < d_eps && startFromAll)	break;
+				
+				activeSize = N;
+				for (i=0; i<N; i++)	activeI[i] = L;
+				epsShrink    = Math.max(epsShrink / 2, d_eps);
+				startFromAll = true;
+			}
+			else
+				startFromAll = false;
+		}
+		
+		int nSV = 0;
+		
+		for (i=0; i<N; i++)
+		{
+			for (m=0, begin=i*L; m<L; m++)
+			{
+				if (alpha[begin+m] != 0)
+				{
+					nSV++;
+					break;
+				}
+			}
+		}
+		
+		StringBuilder build = new StringBuilder();
+		
+		build.append("- labels = ");
+		build.append(L);
+		build.append(": iter = ");
+		build.append(iter);
+		build.append(", nSV = ");
+		build.append(nSV);
+
+		System.out.println(build.toString());
+	}
+	
+	/** G[m] += weights[index*L + alphaIndex[begin+m]] * value */
+	private void addGradient(double[] G, double[] weights, int index, double value, int[] alphaIndex, int begin, int activeSize, int L)
+	{
+		int m, offset = index * L;
+		
+		for (m=0; m<activeSize; m++)
+			G[m] += weights[offset + alphaIndex[begin+m]] * value;
+	}
+	
+	/** G[m] += weights[index*L + alphaIndex[begin+m]] */
+	private void addGradient(double[] G, double[] weights, int index, int[] alphaIndex, int begin, int activeSize, int L)
+	{
+		int m, offset = index * L;
+		
+		for (m=0; m<activeSize; m++)
+			G[m] += weights[offset + alphaIndex[begin+m]];
+	}
+	
+	/** weights[index*L + dIndex[m]] += dValue[m] * value */
+	private void addWeight(double[] weights, int index, double value, int[] dIndex, double[] dValue, int nz, int L)
+	{
+		int m, offset = index * L;
+		
+		for (m=0; m<nz; m++)
+			weights[offset + dIndex[m]] += dValue[m] * value;
+	}
+	
+	private boolean isShrunk(int m, int yi, double alpha, double G, double minG, double c)
+	{
+		double bound = (m == yi) ? c : 0;
+		return alpha == bound && G < minG;
+	}
+	
+	/**
+	 * Solves the sub-problem of an instance whose label is <code>yi</code>.
+	 * @param D buffer of size at least <code>activeSize</code>
+	 */
+	private void solveSubProblem(double[] B, double Ai, int yi, double cYi, int activeSize, double[] alphaNew, double[] D)
+	{
+		double beta;
+		int r, last = activeSize - 1;
+		
+		System.arraycopy(B, 0, D, 0, activeSize);
+		if (yi < activeSize)	D[yi] += Ai * cYi;
+		
+		// sort in ascending order (D[last-r] is the (r+1)th largest)
+		Arrays.sort(D, 0, activeSize);
+		beta = D[last] - Ai * cYi;
+		
+		for (r=1; r<activeSize && beta < r * D[last-r]; r++)
+			beta += D[last-r];
+		
+		beta /= r;
+		
+		for (r=0; r<activeSize; r++)
+		{
+			if (r == yi)
+				alphaNew[r] = Math.min(cYi, (beta - B[r]) / Ai);
+			else
+				alphaNew[r] = Math.min(0, (beta - B[r]) / Ai);
+		}
+	}
+	
+	private void swap(int[] array, int idxA, int idxB)
+	{
+		int temp    = array[idxA];
+		array[idxA] = array[idxB];
+		array[idxB] = temp;
+	}
+	
+	private void swap(double[] array, int idxA, int idxB)
+	{
+		double temp = array[idxA];
+		array[idxA] = array[idxB];
+		array[idxB] = temp;
+	}
+}
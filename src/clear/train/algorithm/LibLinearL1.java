@@ -0,0 +1,343 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.train.algorithm;
+
+import java.util.Random;
+
+import clear.train.kernel.AbstractInstanceStore;
+import clear.train.kernel.AbstractKernel;
+
+/**
+ * LibLinear L1-regularized L2-loss SVM (primal coordinate descent with shrinking).
+ * Each coordinate is a feature, so weights of features that do not help a label stay at 0.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/22/2011
+ */
+public class LibLinearL1 implements ISparseAlgorithm
+{
+	static private final int    MAX_ITER        = 1000;
+	static private final int    MAX_LINE_SEARCH = 20;
+	static private final double SIGMA           = 0.01;
+	
+	private double d_c;
+	private double d_eps;
+	private double d_bias;
+	/** Instances of each feature, shared by all labels */
+	private Columns c_columns = null;
+	
+	public LibLinearL1(double c, double eps, double bias)
+	{
+		d_c    = c;
+		d_eps  = eps;
+		d_bias = bias;
+	}
+	
+	public double[] getWeight(AbstractKernel kernel, int currLabel)
+	{
+		Columns  columns = getColumns(kernel);
+		int      N = kernel.N, D = kernel.D;
+		long     st = System.currentTimeMillis();
+		Random   rand = new Random(0);
+		
+		double[] weight = new double[D];
+		double[] b      = new double[N];	// 1 - y_i * w^T x_i
+		double[] C      = new double[N];
+		byte[]   aY     = new byte  [N];
+		int[]    index  = new int   [D];
+		double[] xjSq   = new double[D];
+		
+		int    activeSize = D, i, j, k, m, s, iter, nLine, nPos = 0;
+		double Gmax_old = Double.POSITIVE_INFINITY, Gmax_new, Gnorm1_new, Gnorm1_init = 0, eps;
+		double G, Gp, Gn, G_loss, violation, H, d, d_old, d_diff, delta, cond, appxcond, loss_old = 0, loss_new, val, tmp;
+		
+		for (i=0; i<N; i++)
+		{
+			if (kernel.a_instances.getY(i) == currLabel)
+			{
+				aY[i] = 1;
+				nPos++;
+			}
+			else
+				aY[i] = -1;
+			
+			b[i] = 1;
+			C[i] = (kernel.a_counts != null) ? d_c * kernel.a_counts[i] : d_c;
+		}
+		
+		for (j=0; j<D; j++)
+		{
+			index[j] = j;
+			
+			for (k=columns.begin[j]; k<columns.begin[j+1]; k++)
+			{
+				val = columns.getValue(k);
+				xjSq[j] += C[columns.instance[k]] * val * val;
+			}
+		}
+		
+		eps = d_eps * Math.max(Math.min(nPos, N - nPos), 1) / N;
+		
+		for (iter=0; iter<MAX_ITER; iter++)
+		{
+			Gmax_new   = 0;
+			Gnorm1_new = 0;
+			
+			for (s=0; s<activeSize; s++)
+				swap(index, s, s + rand.nextInt(activeSize - s));
+			
+			for (s=0; s<activeSize; s++)
+			{
+				j      = index[s];
+				G_loss = 0;
+				H      = 0;
+				
+				for (k=columns.begin[j]; k<columns.begin[j+1]; k++)
+				{
+					i = columns.instance[k];
+					
+					if (b[i] > 0)
+					{
+						val     = columns.getValue(k) * aY[i];
+						tmp     = C[i] * val;
+						G_loss -= tmp * b[i];
+						H      += tmp * val;
+					}
+				}
+				
+				G_loss *= 2;
+				G = G_loss;
+				H = Math.max(H * 2, 1e-12);
+				
+				Gp = G + 1;
+				Gn = G - 1;
+				violation = 0;
+				
+				if (weight[j] == 0)
+				{
+					if      (Gp < 0)	violation = -Gp;
+					else if (Gn > 0)	violation =  Gn;
+					else if (Gp > Gmax_old / N && Gn < -Gmax_old / N)
+					{
+						activeSize--;
+						swap(index, s, activeSize);
+						s--;
+						continue;
+					}
+				}
+				else if (weight[j] > 0)
+					violation = Math.abs(Gp);
+				else
+					violation = Math.abs(Gn);
+				
+				Gmax_new    = Math.max(Gmax_new, violation);
+				Gnorm1_new += violation;
+				
+				// Newton direction
+				if      (Gp < H * weight[j])	d = -Gp / H;
+				else if (Gn > H * weight[j])	d = -Gn / H;
+				else							d = -weight[j];
+				
+				if (Math.abs(d) < 1.0e-12)	continue;
+				
+				delta = Math.abs(weight[j] + d) - Math.abs(weight[j]) + G * d;
+				d_old = 0;
+				
+				// line search
+				for (nLine=0; nLine<MAX_LINE_SEARCH; nLine++)
+				{
+					d_diff = d_old - d;
+					cond   = Math.abs(weight[j] + d) - Math.abs(weight[j]) - SIGMA * delta;
+					
+					appxcond = xjSq[j] * d * d + G_loss * d + cond;
+					
+					if (appxcond <= 0)
+					{
+						for (k=columns.begin[j]; k<columns.begin[j+1]; k++)
+						{
+							i = columns.instance[k];
+							b[i] += d_diff * columns.getValue(k) * aY[i];
+						}
+						
+						break;
+					}
+					
+					if (nLine == 0)	loss_old = 0;
+					loss_new = 0;
+					
+					for (k=columns.begin[j]; k<columns.begin[j+1]; k++)
+					{
+						i = columns.instance[k];
+						if (nLine == 0 && b[i] > 0)	loss_old += C[i] * b[i] * b[i];
+						
+						b[i] += d_diff * columns.getValue(k) * aY[i];
+						if (b[i] > 0)	loss_new += C[i] * b[i] * b[i];
+					}
+					
+					cond = cond + loss_new - loss_old;
+					
+					if (cond <= 0)	break;
+					
+					d_old  = d;
+					d     *= 0.5;
+					delta *= 0.5;
+				}
+				
+				weight[j] += d;
+				
+				// recompute b if line search takes too many steps
+				if (nLine >= MAX_LINE_SEARCH)
+				{
+					for (i=0; i<N; i++)	b[i] = 1;
+					
+					for (m=0; m<D; m++)
+					{
+						if (weight[m] == 0)	continue;
+						
+						for (k=columns.begin[m]; k<columns.begin[m+1]; k++)
+						{
+							i = columns.instance[k];
+							b[i] -= weight[m] * columns.getValue(k) * aY[i];
+						}
+					}
+				}
+			}
+			
+			if (iter == 0)	Gnorm1_init = Gnorm1_new;
+			
+			if (Gnorm1_new <= eps * Gnorm1_init)
+			{
+				if (activeSize == D)
+					break;
+				else
+				{
+					activeSize = D;
+					Gmax_old   = Double.POSITIVE_INFINITY;
+					continue;
+				}
+			}
+			
+			Gmax_old = Gmax_new;
+		}
+		
+		int nnz = 0;
+		
+		for (j=0; j<D; j++)
+			if (weight[j] != 0)	nnz++;
+		
+		StringBuilder build = new StringBuilder();
+		
+		build.append("- label = ");
+		build.append(currLabel);
+		build.append(": iter = ");
+		build.append(iter);
+		build.append(", nnz = ");
+		build.append(nnz);
+		build.append(", time = ");
+		build.append(System.currentTimeMillis() - st);
+		build.append(" ms");
+		
+		System.out.println(build.toString());
+		
+		return weight;
+	}
+	
+	/** @return instances of each feature in <code>kernel</code>, built once and shared by all labels. */
+	synchronized private Columns getColumns(AbstractKernel kernel)
+	{
+		if (c_columns == null || c_columns.kernel != kernel)
+			c_columns = new Columns(kernel);
+		
+		return c_columns;
+	}
+	
+	private void swap(int[] array, int idxA, int idxB)
+	{
+		int temp    = array[idxA];
+		array[idxA] = array[idxB];
+		array[idxB] = temp;
+	}
+	
+	/** Training instances transposed into feature-major order; feature 0 holds the bias if it is positive. */
+	private class Columns
+	{
+		AbstractKernel kernel;
+		/** Instances of feature <code>j</code> are in <code>instance[begin[j]:begin[j+1]]</code> */
+		int[]    begin;
+		int[]    instance;
+		/** Feature values; null if binary features only */
+		double[] value;
+		
+		public Columns(AbstractKernel kernel)
+		{
+			AbstractInstanceStore instances = kernel.a_instances;
+			boolean binary = kernel.b_binary;
+			int N = kernel.N, D = kernel.D, i, j, n;
+			
+			int[]    x = new int   [instances.getMaxLength()];
+			double[] v = binary ? null : new double[x.length];
+			
+			this.kernel = kernel;
+			begin = new int[D+1];
+			
+			for (i=0; i<N; i++)
+			{
+				n = instances.getX(i, x);
+				for (j=0; j<n; j++)	if (x[j] > 0 || d_bias <= 0)	begin[x[j]+1]++;
+			}
+			
+			if (d_bias > 0)	begin[1] = N;
+			for (j=0; j<D; j++)	begin[j+1] += begin[j];
+			
+			instance = new int[begin[D]];
+			value    = (binary && d_bias <= 0) ? null : new double[begin[D]];
+			int[] next = new int[D];
+			
+			for (j=0; j<D; j++)	next[j] = begin[j];
+			
+			for (i=0; i<N; i++)
+			{
+				if (d_bias > 0)
+				{
+					value[next[0]] = d_bias;
+					instance[next[0]++] = i;
+				}
+				
+				n = instances.getX(i, x);
+				if (!binary)	instances.getV(i, v);
+				
+				for (j=0; j<n; j++)
+				{
+					if (x[j] == 0 && d_bias > 0)	continue;
+					if (value != null)	value[next[x[j]]] = binary ? 1 : v[j];
+					instance[next[x[j]]++] = i;
+				}
+			}
+		}
+		
+		public double getValue(int k)
+		{
+			return (value != null) ? value[k] : 1;
+		}
+	}
+}
@@ -23,19 +23,47 @@
 */
 package clear.train.algorithm;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import clear.model.OneVsAllModel;
+import clear.train.kernel.AbstractInstanceStore;
 import clear.train.kernel.AbstractKernel;
 
 /**
  * LibLinear L2-SVM algorithm.
+ * Instances can be visited in a seeded random order, and training of each label can stop early
+ * when the accuracy on held-out instances does not improve.
  * @author Jinho D. Choi
- * <b>Last update:</b> 11/4/2010
+ * <b>Last update:</b> 9/21/2011
  */
-public class LibLinearL2 implements IAlgorithm
+public class LibLinearL2 implements IParallelAlgorithm, IWarmStartAlgorithm
 {
 	private byte   i_lossType;
 	private double d_c;
 	private double d_eps;
 	private double d_bias;
+	/** If true, labels with many instances are trained using multiple threads */
+	private boolean b_hogwild;
+	/** Work buffers of the current thread, reused across labels */
+	private ThreadLocal<Workspace> t_workspace = new ThreadLocal<Workspace>();
+	/** Model whose weights are used as initial weights; if <code>null</code>, weights start from 0 */
+	private OneVsAllModel m_init = null;
+	/** Maximum number of epochs per label */
+	private int     i_maxIter   = 1000;
+	/** Seed of random permutations of instances in each epoch; if negative, instances are visited in order */
+	private long    l_seed      = -1;
+	/** Every <code>n_heldOut</code>'th instance is held out for early stopping; if 0, no instance is held out */
+	private int     n_heldOut   = 0;
+	/** Training of a label stops if held-out accuracy is not improved for this number of epochs */
+	private int     i_patience  = 5;
+	/** If true, statistics of every epoch are printed */
+	private boolean b_verbose   = false;
 	
 	public LibLinearL2(byte lossType, double c, double eps, double bias)
 	{
@@ -43,99 +71,329 @@ public class LibLinearL2 implements IAlgorithm
 		d_c        = c;
 		d_eps      = eps;
 		d_bias     = bias;
+		b_hogwild  = false;
+	}
+	
+	/** @param hogwild if true, labels with many instances are trained using multiple threads (Hogwild) */
+	public LibLinearL2(byte lossType, double c, double eps, double bias, boolean hogwild)
+	{
+		this(lossType, c, eps, bias);
+		b_hogwild = hogwild;
+	}
+	
+	public boolean isParallel()
+	{
+		return b_hogwild;
+	}
+	
+	/**
+	 * Dual coordinate descent starts from the weights of <code>model</code> with all alphas at 0,
+	 * which minimizes the loss regularized by the distance from the initial weights: ||w - w0||^2 / 2.
+	 */
+	public void setInitialModel(OneVsAllModel model)
+	{
+		m_init = model;
+	}
+	
+	public void setMaxIterations(int maxIter)
+	{
+		i_maxIter = maxIter;
+	}
+	
+	/** Visits instances in a random order in each epoch; permutations are reproducible given <code>seed</code>. */
+	public void setShuffle(long seed)
+	{
+		l_seed = seed;
+	}
+	
+	/**
+	 * Holds out a portion of instances, and stops training a label when its accuracy on the held-out instances
+	 * is not improved for <code>patience</code> epochs.
+	 * The weights of the epoch with the best held-out accuracy are returned.
+	 * Held-out instances are never used to update the weights, so the model is trained on
+	 * about <code>(1 - ratio)</code> of the instances.
+	 * @param ratio portion of held-out instances in (0, 0.5]; if 0, early stopping is not used
+	 */
+	public void setEarlyStopping(double ratio, int patience)
+	{
+		n_heldOut  = (ratio > 0) ? Math.max(2, (int)Math.round(1 / ratio)) : 0;
+		i_patience = patience;
+	}
+	
+	/** If <code>verbose</code> is true, prints projected-gradient gap, active-set size, objectives and time of every epoch. */
+	public void setVerbose(boolean verbose)
+	{
+		b_verbose = verbose;
 	}
 	
 	public double[] getWeight(AbstractKernel kernel, int currLabel)
 	{
-		final int MAX_ITER = 1000;
-		
-	//	Random   rand   = new Random(0);
-		double[] QD     = new double[kernel.N];
-		double[] alpha  = new double[kernel.N];
-		double[] weight = new double[kernel.D];
-		double U, G, d, alpha_old;
-		
-		int [] index = new int [kernel.N];
-		byte[] aY    = new byte[kernel.N];
-		
-		int active_size = kernel.N;
-		int i, j, s, iter;
-		byte     yi;
-		int[]    xi;
-		double[] vi = null;
+		return getWeight(kernel, currLabel, 1);
+	}
+	
+	/**
+	 * Instances are split into <code>numThreads</code> blocks whose coordinates are updated in parallel
+	 * over the shared weight vector without locking (Hogwild).
+	 * Each epoch ends when all blocks are visited so that shrinking and stopping conditions are shared.
+	 */
+	public double[] getWeight(AbstractKernel kernel, int currLabel, int numThreads)
+	{
+		AbstractInstanceStore instances = kernel.a_instances;
+		Solver solver = new Solver(kernel, getWorkspace(kernel.N, kernel.D));
+		long   st     = System.currentTimeMillis();
 		
-		// PG: projected gradient, for shrinking and stopping
-		double PG;
-		double PGmax_old = Double.POSITIVE_INFINITY;
-		double PGmin_old = Double.NEGATIVE_INFINITY;
-		double PGmax_new, PGmin_new;
+		if (m_init != null)
+		{
+			m_init.getWeight(currLabel, solver.weight);
+			if (b_verbose)	solver.weight0 = solver.weight.clone();
+		}
 		
-		// for loss function
-		double[] diag        = {0, 0, 0};
-		double[] upper_bound = {d_c, 0, d_c};
+		double[] alpha = solver.alpha;
+		int[]    index = solver.index;
+		byte[]   aY    = solver.aY;
+		int i, iter, bestIter = 0, nTrain = 0, nHeldOut = 0;
+		double accuracy = 0, bestAccuracy = -1;
+		double[] bestWeight = null;
+		boolean stopped = false;
 		
 		if (i_lossType == 2)
 		{
-			diag[0] = 0.5 / d_c;
-			diag[2] = 0.5 / d_c;
-			upper_bound[0] = Double.POSITIVE_INFINITY;
-			upper_bound[2] = Double.POSITIVE_INFINITY;
+			solver.diag[0] = 0.5 / d_c;
+			solver.diag[2] = 0.5 / d_c;
+			solver.upper_bound[0] = Double.POSITIVE_INFINITY;
+			solver.upper_bound[2] = Double.POSITIVE_INFINITY;
 		}
 		
+		// held-out instances are placed after training instances in index
 		for (i=0; i<kernel.N; i++)
 		{
-			index[i] = i;
-			aY   [i] = (kernel.a_ys.get(i) == currLabel) ? (byte)1 : (byte)-1;
-			QD   [i] = diag[GETI(aY, i)];
+			aY[i] = (instances.getY(i) == currLabel) ? (byte)1 : (byte)-1;
 			
-			if (kernel.b_binary)
-				QD[i] += kernel.a_xs.get(i).length;
+			if (n_heldOut > 0 && i % n_heldOut == n_heldOut - 1)
+				index[kernel.N - ++nHeldOut] = i;
+			else
+				index[nTrain++] = i;
+		}
+		
+		if (nHeldOut > 0)	bestWeight = new double[solver.weight.length];
+		
+		ArrayList<Block> blocks = new ArrayList<Block>(numThreads);
+		ExecutorService executor = (numThreads > 1) ? Executors.newFixedThreadPool(numThreads) : null;
+		double PGmax_new, PGmin_new;
+		
+		for (i=0; i<numThreads; i++)
+			blocks.add(new Block(solver, (int)((long)nTrain * i / numThreads), (int)((long)nTrain * (i+1) / numThreads), (l_seed < 0) ? null : new Random(l_seed + i)));
+		
+		for (iter=0; iter<i_maxIter; iter++)
+		{
+			if (executor == null)
+				blocks.get(0).call();
 			else
 			{
-				for (double value : kernel.a_vs.get(i))
-					QD[i] += (value * value);
+				try
+				{
+					for (Future<Object> future : executor.invokeAll(blocks))	future.get();
+				}
+				catch (Exception e) {e.printStackTrace();}
+			}
+			
+			PGmax_new = Double.NEGATIVE_INFINITY;
+			PGmin_new = Double.POSITIVE_INFINITY;
+			
+			for (Block block : blocks)
+			{
+				PGmax_new = Math.max(PGmax_new, block.PGmax_new);
+				PGmin_new = Math.min(PGmin_new, block.PGmin_new);
+			}
+			
+			if (nHeldOut > 0)
+			{
+				accuracy = solver.getAccuracy(nTrain, kernel.N);
+				
+				if (accuracy > bestAccuracy)
+				{
+					bestAccuracy = accuracy;
+					bestIter     = iter;
+					System.arraycopy(solver.weight, 0, bestWeight, 0, bestWeight.length);
+				}
+				else if (iter - bestIter >= i_patience)
+					stopped = true;
+			}
+			
+			if (b_verbose)
+				printEpoch(solver, blocks, currLabel, iter, PGmax_new - PGmin_new, nTrain, (nHeldOut > 0) ? accuracy : -1, st);
+			
+			if (stopped)	break;
+			
+			if (PGmax_new - PGmin_new <= d_eps)
+			{
+				if (isActive(blocks))
+					break;
+				else
+				{
+					for (Block block : blocks)	block.active_end = block.end;
+					solver.PGmax_old = Double.POSITIVE_INFINITY;
+					solver.PGmin_old = Double.NEGATIVE_INFINITY;
+					continue;
+				}
 			}
 			
-			if (d_bias > 0)	QD[i] += (d_bias * d_bias);
+			solver.PGmax_old = PGmax_new;
+			solver.PGmin_old = PGmin_new;
+			if (solver.PGmax_old <= 0) solver.PGmax_old = Double.POSITIVE_INFINITY;
+			if (solver.PGmin_old >= 0) solver.PGmin_old = Double.NEGATIVE_INFINITY;
+		}
+		
+		if (executor != null)	executor.shutdown();
+		int nSV = 0;
+		
+		for (i = 0; i < kernel.N; i++)
+			if (alpha[i] > 0) ++nSV;
+		
+		StringBuilder build = new StringBuilder();
+		
+		build.append("- label = ");
+		build.append(currLabel);
+		build.append(": iter = ");
+		build.append(iter);
+		build.append(", nSV = ");
+		build.append(nSV);
+		
+		if (nHeldOut > 0)
+		{
+			build.append(", heldout = ");
+			build.append(String.format("%.4f", bestAccuracy));
+			build.append(" (best iter = ");
+			build.append(bestIter);
+			if (stopped)	build.append(", stopped");
+			build.append(")");
 		}
 		
-		for (iter=0; iter<MAX_ITER; iter++)
+		build.append(", time = ");
+		build.append(System.currentTimeMillis() - st);
+		build.append(" ms");
+		
+		if (numThreads > 1)
 		{
-			PGmax_new = Double.NEGATIVE_INFINITY;
-			PGmin_new = Double.POSITIVE_INFINITY;
+			build.append(", threads = ");
+			build.append(numThreads);
+		}
+
+		System.out.println(build.toString());
+		
+		// weights of the best epoch on the held-out instances
+		return (bestWeight != null) ? bestWeight : solver.weight;
+	}
+	
+	/** Prints statistics of an epoch; <code>accuracy</code> is negative if no instance is held out. */
+	private void printEpoch(Solver solver, ArrayList<Block> blocks, int currLabel, int iter, double gap, int nTrain, double accuracy, long st)
+	{
+		int active = 0;
+		
+		for (Block block : blocks)
+			active += block.active_end - block.begin;
+		
+		StringBuilder build = new StringBuilder();
+		
+		build.append("  label = ");
+		build.append(currLabel);
+		build.append(": iter = ");
+		build.append(iter);
+		build.append(String.format(", gap = %.6f", gap));
+		build.append(", active = ");
+		build.append(active);
+		build.append(String.format(", primal = %.4f, dual = %.4f", solver.getPrimal(nTrain), solver.getDual(nTrain)));
+		if (accuracy >= 0)	build.append(String.format(", heldout = %.4f", accuracy));
+		build.append(", time = ");
+		build.append(System.currentTimeMillis() - st);
+		build.append(" ms");
+		
+		System.out.println(build.toString());
+	}
+	
+	/** @return true if no instance is shrunk in <code>blocks</code>. */
+	private boolean isActive(ArrayList<Block> blocks)
+	{
+		for (Block block : blocks)
+			if (block.active_end != block.end)	return false;
+		
+		return true;
+	}
+	
+	/** Dual coordinate descent for the current label, shared by all blocks. */
+	private class Solver
+	{
+		AbstractInstanceStore instances;
+		double[] norms;
+		/** Number of occurrences of each instance, scaling its penalty; null if each instance occurs once */
+		int[]    counts;
+		double[] alpha;
+		double[] weight;
+		/** Initial weights for computing objectives; null if weights start from 0 */
+		double[] weight0;
+		int[]    index;
+		byte[]   aY;
+		
+		// for loss function
+		double[] diag        = {0, 0, 0};
+		double[] upper_bound = {d_c, 0, d_c};
+		
+		// PG: projected gradient, for shrinking and stopping
+		double PGmax_old = Double.POSITIVE_INFINITY;
+		double PGmin_old = Double.NEGATIVE_INFINITY;
+		
+		public Solver(AbstractKernel kernel, Workspace workspace)
+		{
+			instances = kernel.a_instances;
+			norms     = kernel.d_norms;
+			counts    = kernel.a_counts;
+			alpha     = workspace.alpha;
+			weight    = workspace.weight;
+			index     = workspace.index;
+			aY        = workspace.aY;
+		}
+		
+		/** Updates coordinates in <code>index[block.begin:block.active_end]</code> once. */
+		public void iterate(Block block)
+		{
+			double U, G, d, alpha_old, qd, PG, D;
+			int i, s;
+			byte yi;
+			
+			block.PGmax_new = Double.NEGATIVE_INFINITY;
+			block.PGmin_new = Double.POSITIVE_INFINITY;
 			
-		/*	for (i=0; i<active_size; i++)
+			if (block.r_shuffle != null)
 			{
-				int j = i + r_rand.nextInt(active_size - i);
-				swap(index, i, j);
-			}*/
+				for (s=block.begin; s<block.active_end; s++)
+					swap(index, s, s + block.r_shuffle.nextInt(block.active_end - s));
+			}
 			
-			for (s=0; s<active_size; s++)
+			for (s=block.begin; s<block.active_end; s++)
 			{
 				i  = index[s];
 				yi = aY[i];
-				xi = kernel.a_xs.get(i);
-				if (!kernel.b_binary)	vi = kernel.a_vs.get(i);
-
-				G = (d_bias > 0) ? weight[0] * d_bias : 0;
-				for (j=0; j<xi.length; j++)
+				G  = instances.dot(i, weight);
+				if (d_bias > 0)	G += weight[0] * d_bias;
+				
+				D = diag[GETI(aY, i)];
+				U = upper_bound[GETI(aY, i)];
+				
+				if (counts != null)
 				{
-					if (kernel.b_binary)
-						G += weight[xi[j]];
-					else
-						G += (weight[xi[j]] * vi[j]);
+					D /= counts[i];
+					U *= counts[i];
 				}
 				
- 				G = G * yi - 1;
-				G += alpha[i] * diag[GETI(aY, i)];
-				U = upper_bound[GETI(aY, i)];
+				G = G * yi - 1;
+				G += alpha[i] * D;
 				
 				if (alpha[i] == 0)
 				{
 					if (G > PGmax_old)
 					{
-						active_size--;
-						swap(index, s, active_size);
+						block.active_end--;
+						swap(index, s, block.active_end);
 						s--;
 						continue;
 					}
@@ -146,8 +404,8 @@ public class LibLinearL2 implements IAlgorithm
 				{
 					if (G < PGmin_old)
 					{
-						active_size--;
-						swap(index, s, active_size);
+						block.active_end--;
+						swap(index, s, block.active_end);
 						s--;
 						continue;
 					}
@@ -159,63 +417,150 @@ public class LibLinearL2 implements IAlgorithm
 					PG = G;
 				}
 				
-				PGmax_new = Math.max(PGmax_new, PG);
-				PGmin_new = Math.min(PGmin_new, PG);
+				block.PGmax_new = Math.max(block.PGmax_new, PG);
+				block.PGmin_new = Math.min(block.PGmin_new, PG);
 				
 				if (Math.abs(PG) > 1.0e-12)
 				{
 					alpha_old = alpha[i];
-					alpha[i] = Math.min(Math.max(alpha[i] - G / QD[i], 0.0), U);
+					qd = D + norms[i];
+					if (d_bias > 0)	qd += (d_bias * d_bias);
+					
+					alpha[i] = Math.min(Math.max(alpha[i] - G / qd, 0.0), U);
 					d = (alpha[i] - alpha_old) * yi;
 					
 					if (d_bias > 0)	weight[0] += d * d_bias;
-					
-					for (j=0; j<xi.length; j++)
-					{
-						if (kernel.b_binary)
-							weight[xi[j]] += d;
-						else
-							weight[xi[j]] += (d * vi[j]);
-					}
+					instances.update(i, weight, d);
 				}
 			}
+		}
+		
+		private double getScore(int i)
+		{
+			double score = instances.dot(i, weight);
+			if (d_bias > 0)	score += weight[0] * d_bias;
 			
-			if (PGmax_new - PGmin_new <= d_eps)
+			return score;
+		}
+		
+		private int getCount(int i)
+		{
+			return (counts != null) ? counts[i] : 1;
+		}
+		
+		/** @return the primal objective over instances in <code>index[0:n]</code>: ||w - w0||^2 / 2 + sum of C * loss. */
+		public double getPrimal(int n)
+		{
+			double obj = 0, loss, d;
+			int i, s;
+			
+			for (i=0; i<weight.length; i++)
 			{
-				if (active_size == kernel.N)
-					break;
-				else
+				d = (weight0 != null) ? weight[i] - weight0[i] : weight[i];
+				obj += 0.5 * d * d;
+			}
+			
+			for (s=0; s<n; s++)
+			{
+				i    = index[s];
+				loss = 1 - aY[i] * getScore(i);
+				
+				if (loss > 0)
 				{
-					active_size = kernel.N;
-					PGmax_old = Double.POSITIVE_INFINITY;
-					PGmin_old = Double.NEGATIVE_INFINITY;
-					continue;
+					if (i_lossType == 2)	loss *= loss;
+					obj += d_c * getCount(i) * loss;
 				}
 			}
 			
-			PGmax_old = PGmax_new;
-			PGmin_old = PGmin_new;
-			if (PGmax_old <= 0) PGmax_old = Double.POSITIVE_INFINITY;
-			if (PGmin_old >= 0) PGmin_old = Double.NEGATIVE_INFINITY;
+			return obj;
 		}
 		
-		int nSV = 0;
+		/** @return the dual objective over instances in <code>index[0:n]</code>, which is not greater than the primal objective. */
+		public double getDual(int n)
+		{
+			double obj = 0, d, D;
+			int i, s;
+			
+			for (i=0; i<weight.length; i++)
+			{
+				if (weight0 != null)
+				{
+					d = weight[i] - weight0[i];
+					obj -= 0.5 * d * d + weight0[i] * d;
+				}
+				else
+					obj -= 0.5 * weight[i] * weight[i];
+			}
+			
+			for (s=0; s<n; s++)
+			{
+				i = index[s];
+				D = diag[GETI(aY, i)] / getCount(i);
+				obj += alpha[i] - 0.5 * D * alpha[i] * alpha[i];
+			}
+			
+			return obj;
+		}
 		
-		for (i = 0; i < kernel.N; i++)
-			if (alpha[i] > 0) ++nSV;
+		/** @return the accuracy of instances in <code>index[begin:end]</code> weighted by their counts. */
+		public double getAccuracy(int begin, int end)
+		{
+			long correct = 0, total = 0;
+			int i, s;
+			
+			for (s=begin; s<end; s++)
+			{
+				i = index[s];
+				total += getCount(i);
+				if (aY[i] * getScore(i) > 0)	correct += getCount(i);
+			}
+			
+			return (total > 0) ? (double)correct / total : 0;
+		}
+	}
+	
+	/** Range of instances whose coordinates are updated by one thread. */
+	static private class Block implements Callable<Object>
+	{
+		Solver solver;
+		int    begin, end, active_end;
+		double PGmax_new, PGmin_new;
+		/** Shuffles instances in each epoch; null if instances are visited in order */
+		Random r_shuffle;
 		
-		StringBuilder build = new StringBuilder();
+		public Block(Solver solver, int begin, int end, Random shuffle)
+		{
+			this.solver = solver;
+			this.begin  = begin;
+			this.end    = end;
+			active_end  = end;
+			r_shuffle   = shuffle;
+		}
 		
-		build.append("- label = ");
-		build.append(currLabel);
-		build.append(": iter = ");
-		build.append(iter);
-		build.append(", nSV = ");
-		build.append(nSV);
-
-		System.out.println(build.toString());
+		public Object call()
+		{
+			solver.iterate(this);
+			return null;
+		}
+	}
+	
+	/** @return work buffers of the current thread for <code>N</code> instances and <code>D</code> features. */
+	private Workspace getWorkspace(int N, int D)
+	{
+		Workspace workspace = t_workspace.get();
+		
+		if (workspace == null || workspace.alpha.length != N || workspace.weight.length != D)
+		{
+			workspace = new Workspace(N, D);
+			t_workspace.set(workspace);
+		}
+		else
+		{
+			Arrays.fill(workspace.alpha , 0);
+			Arrays.fill(workspace.weight, 0);
+		}
 		
-		return weight;
+		return workspace;
 	}
 	
 	private int GETI(byte[] y, int i)
@@ -229,5 +574,21 @@ public class LibLinearL2 implements IAlgorithm
 		array[idxA] = array[idxB];
 		array[idxB] = temp;
 	}
+	
+	/** Label-dependent work buffers. */
+	static private class Workspace
+	{
+		double[] alpha;
+		double[] weight;
+		int[]    index;
+		byte[]   aY;
+		
+		public Workspace(int N, int D)
+		{
+			alpha  = new double[N];
+			weight = new double[D];
+			index  = new int   [N];
+			aY     = new byte  [N];
+		}
+	}
 }
-	
\ No newline at end of file
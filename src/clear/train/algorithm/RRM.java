@@ -25,12 +25,15 @@ package clear.train.algorithm;
 
 import java.util.Arrays;
 
+import clear.train.kernel.AbstractInstanceStore;
 import clear.train.kernel.AbstractKernel;
 
 /**
  * RRM algorithm.
+ * Weights are updated multiplicatively; each update computes exponentials once per instance
+ * and is skipped if the boosting factor of the instance does not change.
  * @author Jinho D. Choi
- * <b>Last update:</b> 11/5/2010
+ * <b>Last update:</b> 9/21/2011
  */
 public class RRM implements IAlgorithm
 {
@@ -38,6 +41,8 @@ public class RRM implements IAlgorithm
 	private double d_mu;
 	private double d_eta;
 	private double d_c;
+	/** Maximum number of instances used to measure F1 score after each round; if 0, all instances are used */
+	private int    n_f1Sample = 0;
 	
 	public RRM(int K, double mu, double eta, double c)
 	{
@@ -47,8 +52,18 @@ public class RRM implements IAlgorithm
 		d_c   = c;
 	}
 	
+	/**
+	 * Measures F1 score after each round on at most <code>size</code> instances evenly spaced over the training set.
+	 * @param size if 0, all instances are used
+	 */
+	public void setF1Sample(int size)
+	{
+		n_f1Sample = size;
+	}
+	
 	public double[] getWeight(AbstractKernel kernel, int currLabel)
 	{
+		AbstractInstanceStore instances = kernel.a_instances;
 		double[] pWeight = new double[kernel.D];	Arrays.fill(pWeight, d_mu);
 		double[] nWeight = new double[kernel.D];	Arrays.fill(nWeight, d_mu);
 		double[] alpha   = new double[kernel.N];
@@ -56,42 +71,47 @@ public class RRM implements IAlgorithm
 		double   bestAcc = -1;
 		int      bestK   = 0;
 		
-		double p, min1, min2, min, delta, delta_y_i, currAcc;
+		double p, c, min1, min2, min, delta, delta_y_i, currAcc, pExp, nExp;
 		byte[] aY = new byte[kernel.N];	byte y_i;
-		int i, k;	int[] x_i;
+		int i, j, k, n;
+		int[]    x_i = new int[instances.getMaxLength()];
+		double[] v_i = kernel.b_binary ? null : new double[x_i.length];
 		
 		for (i=0; i<kernel.N; i++)
-			aY[i] = (kernel.a_ys.get(i) == currLabel) ? (byte)1 : (byte)-1;
+			aY[i] = (instances.getY(i) == currLabel) ? (byte)1 : (byte)-1;
 		
 		for (k=1; k<=i_K; k++)
 		{
 			for (i=0; i<kernel.N; i++)
 			{
 				// retreive x_i, y_i
-				x_i = kernel.a_xs.get(i);
+				n   = instances.getX(i, x_i);
 				y_i = aY[i];
+				if (!kernel.b_binary)	instances.getV(i, v_i);
 				
 				// calculate p
-				if (kernel.b_binary)
-					p = getScore(pWeight, nWeight, x_i) * y_i;
-				else
-					p = getScore(pWeight, nWeight, x_i, kernel.a_vs.get(i)) * y_i;
+				p = getScore(pWeight, nWeight, x_i, v_i, n) * y_i;
 				
-				// calculate delta
-				min1      = 2*d_c - alpha[i];
-				min2      = d_eta * ((d_c - alpha[i])/d_c - p);
+				// calculate delta; the regularization is scaled by the number of occurrences
+				c         = (kernel.a_counts != null) ? d_c * kernel.a_counts[i] : d_c;
+				min1      = 2*c - alpha[i];
+				min2      = d_eta * ((c - alpha[i])/c - p);
 				min       = Math.min(min1, min2);
 				delta     = Math.max(min, -alpha[i]);
+				if (delta == 0)	continue;
 				delta_y_i = delta * y_i;
 				
-				// update weights
-				pWeight[0] *= Math.exp( delta_y_i);
-				nWeight[0] *= Math.exp(-delta_y_i);
+				// update weights; all features of the instance are scaled by the same factors
+				pExp = Math.exp( delta_y_i);
+				nExp = Math.exp(-delta_y_i);
 				
-				for (int idx : x_i)
+				pWeight[0] *= pExp;
+				nWeight[0] *= nExp;
+				
+				for (j=0; j<n; j++)
 				{
-					pWeight[idx] *= Math.exp( delta_y_i);
-					nWeight[idx] *= Math.exp(-delta_y_i);
+					pWeight[x_i[j]] *= pExp;
+					nWeight[x_i[j]] *= nExp;
 				}
 
 				// update alpha (boosting factor)
@@ -137,58 +157,59 @@ public class RRM implements IAlgorithm
 	 * @param pWeight positive weight vector
 	 * @param nWeight negative weight vector
 	 * @param x training instance (indices start from 1)
+	 * @param v feature values of the training instance; if null, all values are 1
+	 * @param n number of features in the training instance
 	 */
-	private double getScore(double[] pWeight, double[] nWeight, int[] x)
-	{
-		double score = pWeight[0] - nWeight[0];
-		
-		for (int idx : x)		
-			score += (pWeight[idx] - nWeight[idx]);
-		
-		return score;
-	}
-	
-	private double getScore(double[] pWeight, double[] nWeight, int[] x, double[] v)
+	private double getScore(double[] pWeight, double[] nWeight, int[] x, double[] v, int n)
 	{
 		double score = pWeight[0] - nWeight[0];
 		int idx, i;
 		
-		for (i=0; i<x.length; i++)
+		for (i=0; i<n; i++)
 		{
 			idx = x[i];
-			score += (pWeight[idx] - nWeight[idx]) * v[i];
+			
+			if (v == null)
+				score += (pWeight[idx] - nWeight[idx]);
+			else
+				score += (pWeight[idx] - nWeight[idx]) * v[i];
 		}
 		
 		return score;
 	}
 	
 	/**
-	 * Returns F1 score of the balanced weight vectors.
+	 * Returns F1 score of the balanced weight vectors on all instances or on {@link RRM#n_f1Sample} instances.
 	 * @param pWeight positive weight vector
 	 * @param nWeight negative weight vector
 	 */
 	private double getF1Score(AbstractKernel kernel, byte[] aY, double[] pWeight, double[] nWeight)
 	{
-		int correct = 0, pTotal = 0, rTotal = 0, i;
+		AbstractInstanceStore instances = kernel.a_instances;
+		int correct = 0, pTotal = 0, rTotal = 0, i, n, count, s;
+		int size = (n_f1Sample > 0) ? Math.min(n_f1Sample, kernel.N) : kernel.N;
 		byte y_i;
 		double score;
 		
-		for (i=0; i<kernel.N; i++)
+		int[]    x = new int[instances.getMaxLength()];
+		double[] v = kernel.b_binary ? null : new double[x.length];
+		
+		for (s=0; s<size; s++)
 		{
+			i   = (size == kernel.N) ? s : (int)((long)s * kernel.N / size);
 			y_i = aY[i];
-			
-			if (kernel.b_binary)
-				score = getScore(pWeight, nWeight, kernel.a_xs.get(i));
-			else
-				score = getScore(pWeight, nWeight, kernel.a_xs.get(i), kernel.a_vs.get(i));
+			n   = instances.getX(i, x);
+			if (!kernel.b_binary)	instances.getV(i, v);
+			score = getScore(pWeight, nWeight, x, v, n);
+			count = (kernel.a_counts != null) ? kernel.a_counts[i] : 1;
 		
 			if (score > 0)
 			{
-				if (y_i == 1)	correct++;
-				pTotal++;
+				if (y_i == 1)	correct += count;
+				pTotal += count;
 			}
 			
-			if (y_i == 1)	rTotal++;
+			if (y_i == 1)	rTotal += count;
 		}
 		
 		double precision = (pTotal == 0) ? 0 : (double)correct / pTotal;
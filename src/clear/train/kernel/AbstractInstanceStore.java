@@ -0,0 +1,269 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.train.kernel;
+
+import java.util.Arrays;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+/**
+ * Abstract store of training instances.
+ * Each instance consists of a label, feature indices, and optional feature values (1 if binary).
+ * Instances are accessed by their indices so that learning algorithms can iterate them without per-instance objects.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/17/2011
+ */
+abstract public class AbstractInstanceStore
+{
+	/** Stores instances in memory */
+	static public final byte STORE_MEMORY     = 0;
+	/** Stores instances in memory; feature indices are delta + varint encoded */
+	static public final byte STORE_COMPRESSED = 1;
+	/** Spills instances to disk and memory-maps them */
+	static public final byte STORE_DISK       = 2;
+	
+	/** Names of store types used in configuration files */
+	static public final String[] STORE_NAMES = {"memory", "compressed", "disk"};
+	
+	/**
+	 * @param type {@link AbstractInstanceStore#STORE_*}
+	 * @param dir directory of spill files for {@link AbstractInstanceStore#STORE_DISK}; if null, the default temporary directory is used
+	 * @return a new instance store of <code>type</code>.
+	 */
+	static public AbstractInstanceStore create(byte type, String dir)
+	{
+		switch (type)
+		{
+		case STORE_COMPRESSED: return new InstanceStore(true);
+		case STORE_DISK      : return new MappedInstanceStore(dir);
+		default              : return new InstanceStore(false);
+		}
+	}
+	
+	/** @return {@link AbstractInstanceStore#STORE_*} of <code>name</code> in {@link AbstractInstanceStore#STORE_NAMES}. */
+	static public byte getStoreType(String name)
+	{
+		for (byte i=0; i<STORE_NAMES.length; i++)
+			if (STORE_NAMES[i].equals(name))	return i;
+		
+		throw new IllegalArgumentException("Unknown instance store: "+name);
+	}
+	
+	/** Adds an instance with binary features <code>x</code>. */
+	abstract public void add(int y, IntArrayList x);
+	
+	/**
+	 * Adds an instance with features <code>x</code> whose values are <code>v</code>.
+	 * If <code>v</code> is null, all values are 1.
+	 */
+	abstract public void add(int y, int[] x, double[] v);
+	
+	/**
+	 * Appends all instances in <code>store</code> in order.
+	 * {@link AbstractInstanceStore#trimToSize()} must have been called for <code>store</code>.
+	 */
+	public void addAll(AbstractInstanceStore store)
+	{
+		int i, n, size = store.size();
+		int[] x = new int[store.getMaxLength()];
+		
+		if (store.isBinary())
+		{
+			IntArrayList list = new IntArrayList(x.length);
+			
+			for (i=0; i<size; i++)
+			{
+				n = store.getX(i, x);
+				list.clear();
+				list.add(x, 0, n);
+				add(store.getY(i), list);
+			}
+		}
+		else
+		{
+			double[] v;
+			
+			for (i=0; i<size; i++)
+			{
+				x = new int   [store.length(i)];
+				v = new double[x.length];
+				store.getX(i, x);
+				store.getV(i, v);
+				add(store.getY(i), x, v);
+			}
+		}
+	}
+	
+	/**
+	 * Appends distinct instances in <code>store</code> in the order of their first occurrences.
+	 * Two instances are identical if they have the same label, features and values.
+	 * {@link AbstractInstanceStore#trimToSize()} must have been called for <code>store</code>.
+	 * @return the number of occurrences of each appended instance
+	 */
+	public int[] addDistinct(AbstractInstanceStore store)
+	{
+		int size = store.size(), max = store.getMaxLength(), capacity = Integer.highestOneBit(Math.max(size, 1)) << 2;
+		int i, j, n, slot, hash, mask = capacity - 1;
+		
+		// open addressing: (index of the first occurrence + 1, its hash value, index in this store)
+		int[] tFirst = new int[capacity];
+		int[] tHash  = new int[capacity];
+		int[] tIndex = new int[capacity];
+		
+		IntArrayList counts = new IntArrayList();
+		IntArrayList list   = new IntArrayList(max);
+		boolean binary = store.isBinary();
+		
+		int[]    xi = new int[max],    xj = new int[max];
+		double[] vi = binary ? null : new double[max];
+		double[] vj = binary ? null : new double[max];
+		
+		for (i=0; i<size; i++)
+		{
+			n = store.getX(i, xi);
+			if (!binary)	store.getV(i, vi);
+			
+			hash = getHash(store.getY(i), xi, vi, n);
+			
+			for (slot = hash & mask; (j = tFirst[slot] - 1) >= 0; slot = (slot + 1) & mask)
+			{
+				if (tHash[slot] == hash && store.getY(i) == store.getY(j) && store.getX(j, xj) == n && equals(xi, xj, n))
+				{
+					if (binary)	break;
+					store.getV(j, vj);
+					if (equals(vi, vj, n))	break;
+				}
+			}
+			
+			if (j >= 0)
+			{
+				counts.buffer[tIndex[slot]]++;
+				continue;
+			}
+			
+			tFirst[slot] = i + 1;
+			tHash [slot] = hash;
+			tIndex[slot] = counts.size();
+			counts.add(1);
+			
+			if (binary)
+			{
+				list.clear();
+				list.add(xi, 0, n);
+				add(store.getY(i), list);
+			}
+			else
+				add(store.getY(i), Arrays.copyOf(xi, n), Arrays.copyOf(vi, n));
+		}
+		
+		return counts.toArray();
+	}
+	
+	private int getHash(int y, int[] x, double[] v, int n)
+	{
+		int i, hash = y * 31 + n;
+		long bits;
+		
+		for (i=0; i<n; i++)
+		{
+			hash = hash * 31 + x[i];
+			
+			if (v != null)
+			{
+				bits = Double.doubleToLongBits(v[i]);
+				hash = hash * 31 + (int)(bits ^ (bits >>> 32));
+			}
+		}
+		
+		// finalizer of MurmurHash3
+		hash ^= hash >>> 16;	hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;	hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		
+		return hash;
+	}
+	
+	private boolean equals(int[] x1, int[] x2, int n)
+	{
+		for (int i=0; i<n; i++)
+			if (x1[i] != x2[i])	return false;
+		
+		return true;
+	}
+	
+	private boolean equals(double[] v1, double[] v2, int n)
+	{
+		for (int i=0; i<n; i++)
+			if (v1[i] != v2[i])	return false;
+		
+		return true;
+	}
+	
+	/** @return the total number of instances. */
+	abstract public int size();
+	
+	/** @return the label of the <code>i</code>'th instance. */
+	abstract public int getY(int i);
+	
+	/** @return the number of features in the <code>i</code>'th instance. */
+	abstract public int length(int i);
+	
+	/**
+	 * Copies feature indices of the <code>i</code>'th instance to <code>x</code>.
+	 * @param x buffer whose size is at least the number of features in the instance
+	 * @return the number of features in the instance
+	 */
+	abstract public int getX(int i, int[] x);
+	
+	/**
+	 * Copies feature values of the <code>i</code>'th instance to <code>v</code>.
+	 * @param v buffer whose size is at least the number of features in the instance
+	 * @return the number of features in the instance
+	 */
+	abstract public int getV(int i, double[] v);
+	
+	/** @return sum of <code>weight[x]*v</code> over features of the <code>i</code>'th instance. */
+	abstract public double dot(int i, double[] weight);
+	
+	/** Adds <code>d*v</code> to <code>weight[x]</code> for features of the <code>i</code>'th instance. */
+	abstract public void update(int i, double[] weight, double d);
+	
+	/** @return sum of squared feature values of the <code>i</code>'th instance. */
+	abstract public double getSquaredNorm(int i);
+	
+	/** @return true if all features are binary. */
+	abstract public boolean isBinary();
+	
+	/** @return the largest feature index. */
+	abstract public int getMaxIndex();
+	
+	/** @return the largest number of features in an instance. */
+	abstract public int getMaxLength();
+	
+	/**
+	 * Finishes adding instances; must be called before instances are read.
+	 * Releases memory reserved for instances to be added.
+	 */
+	abstract public void trimToSize();
+}
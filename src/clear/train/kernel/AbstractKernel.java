@@ -33,7 +33,7 @@ import com.carrotsearch.hppc.IntArrayList;
 /**
  * Abstract kernel.
  * @author Jinho D. Choi
- * <b>Last update:</b> 11/5/2010
+ * <b>Last update:</b> 9/17/2011
  */
 abstract public class AbstractKernel
 {
@@ -54,12 +54,12 @@ abstract public class AbstractKernel
 	public int L;
 	/** List of labels */
 	public int[] a_labels;    
-	/** Training labels */
-	public IntArrayList        a_ys;
-	/** Training feature indices */
-	public ArrayList<int[]>    a_xs;
-	/** Training feature values */
-	public ArrayList<double[]> a_vs;
+	/** Training instances */
+	public AbstractInstanceStore a_instances;
+	/** Squared norm of each training instance, shared by all labels */
+	public double[] d_norms;
+	/** Number of occurrences of each training instance; null if each instance occurs once */
+	public int[] a_counts;
 	/** Kernel type */
 	public byte kernel_type;
 	/** true if binary features only */
@@ -0,0 +1,342 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.train.kernel;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+/**
+ * Read-only store of instances in a binary instance file, which is memory-mapped instead of being parsed.
+ * The file consists of a header, records and a table of record offsets (see {@link BinaryInstanceWriter}):
+ * <pre>
+ * header: magic (int), version (int), binary (int), # of instances (int), max index (int), max length (int), table offset (long)
+ * record: label (int), # of features (varint), feature indices (zigzag varint deltas), feature values (float, only if not binary)
+ * table : offset of each record (long)
+ * </pre>
+ * All numbers are little-endian; records and table entries do not cross chunk boundaries.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/22/2011
+ */
+public class BinaryInstanceStore extends AbstractInstanceStore
+{
+	/** "CLRI" */
+	static public final int  MAGIC       = 0x434C5249;
+	static public final int  VERSION     = 1;
+	static public final int  HEADER_SIZE = 32;
+	/** Size of a mapped chunk = 1 << CHUNK_BITS bytes */
+	static public final int  CHUNK_BITS  = 30;
+	static public final long CHUNK_SIZE  = 1L << CHUNK_BITS;
+	static public final long CHUNK_MASK  = CHUNK_SIZE - 1;
+	static public final ByteOrder ORDER  = ByteOrder.LITTLE_ENDIAN;
+	
+	private MappedByteBuffer[] a_chunks;
+	private boolean b_binary;
+	private int     n_size;
+	private int     n_maxIndex;
+	private int     n_maxLength;
+	private long    l_table;
+	
+	/** Memory-maps <code>instanceFile</code>. */
+	public BinaryInstanceStore(String instanceFile)
+	{
+		try
+		{
+			FileChannel channel = new RandomAccessFile(instanceFile, "r").getChannel();
+			long size = channel.size();
+			int  i, n = (int)((size + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+			long begin;
+			
+			a_chunks = new MappedByteBuffer[n];
+			
+			for (i=0; i<n; i++)
+			{
+				begin       = (long)i << CHUNK_BITS;
+				a_chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, begin, Math.min(CHUNK_SIZE, size - begin));
+				a_chunks[i].order(ORDER);
+			}
+			
+			channel.close();
+		}
+		catch (IOException e) {throw new IllegalStateException(e);}
+		
+		ByteBuffer header = a_chunks[0];
+		
+		if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+			throw new IllegalArgumentException("Not a binary instance file: "+instanceFile);
+		
+		b_binary    = header.getInt(8) != 0;
+		n_size      = header.getInt(12);
+		n_maxIndex  = header.getInt(16);
+		n_maxLength = header.getInt(20);
+		l_table     = header.getLong(24);
+	}
+	
+	/** @return true if <code>filename</code> begins with {@link BinaryInstanceStore#MAGIC}. */
+	static public boolean isBinaryFile(String filename)
+	{
+		try
+		{
+			DataInputStream fin = new DataInputStream(new FileInputStream(filename));
+			int magic;
+			
+			try
+			{
+				magic = Integer.reverseBytes(fin.readInt());
+			}
+			finally
+			{
+				fin.close();
+			}
+			
+			return magic == MAGIC;
+		}
+		catch (IOException e) {return false;}
+	}
+	
+	public void add(int y, IntArrayList x)
+	{
+		throw new IllegalStateException("Instances cannot be added to a binary instance file");
+	}
+	
+	public void add(int y, int[] x, double[] v)
+	{
+		throw new IllegalStateException("Instances cannot be added to a binary instance file");
+	}
+	
+	public int size()
+	{
+		return n_size;
+	}
+	
+	private long begin(int i)
+	{
+		long offset = l_table + ((long)i << 3);
+		return a_chunks[(int)(offset >>> CHUNK_BITS)].getLong((int)(offset & CHUNK_MASK));
+	}
+	
+	private ByteBuffer chunk(long begin)
+	{
+		return a_chunks[(int)(begin >>> CHUNK_BITS)];
+	}
+	
+	public int getY(int i)
+	{
+		long begin = begin(i);
+		return chunk(begin).getInt((int)(begin & CHUNK_MASK));
+	}
+	
+	public int length(int i)
+	{
+		long begin = begin(i);
+		return new Reader(chunk(begin), (int)(begin & CHUNK_MASK) + 4).next();
+	}
+	
+	public int getX(int i, int[] x)
+	{
+		long   begin  = begin(i);
+		Reader reader = new Reader(chunk(begin), (int)(begin & CHUNK_MASK) + 4);
+		int    len    = reader.next(), j;
+		
+		for (j=0; j<len; j++)
+			x[j] = reader.nextIndex();
+		
+		return len;
+	}
+	
+	public int getV(int i, double[] v)
+	{
+		long   begin  = begin(i);
+		Reader reader = new Reader(chunk(begin), (int)(begin & CHUNK_MASK) + 4);
+		int    len    = reader.next(), j;
+		
+		if (b_binary)
+		{
+			for (j=0; j<len; j++)	v[j] = 1d;
+		}
+		else
+		{
+			for (j=0; j<len; j++)	reader.nextIndex();
+			for (j=0; j<len; j++)	v[j] = reader.nextValue();
+		}
+		
+		return len;
+	}
+	
+	public double dot(int i, double[] weight)
+	{
+		long       begin = begin(i);
+		ByteBuffer chunk = chunk(begin);
+		int pos = (int)(begin & CHUNK_MASK) + 4, len, j, d, c, shift, prev = 0, vPos;
+		double score = 0;
+		
+		for (len=0, shift=0; (c = chunk.get(pos++)) < 0; shift += 7)
+			len |= (c & 0x7f) << shift;
+		
+		len |= c << shift;
+		vPos = b_binary ? 0 : skipIndices(chunk, pos, len);
+		
+		for (j=0; j<len; j++)
+		{
+			for (d=0, shift=0; (c = chunk.get(pos++)) < 0; shift += 7)
+				d |= (c & 0x7f) << shift;
+			
+			d |= c << shift;
+			prev += (d >>> 1) ^ -(d & 1);
+			
+			if (b_binary)
+				score += weight[prev];
+			else
+			{
+				score += weight[prev] * chunk.getFloat(vPos);
+				vPos  += 4;
+			}
+		}
+		
+		return score;
+	}
+	
+	public void update(int i, double[] weight, double d)
+	{
+		long       begin = begin(i);
+		ByteBuffer chunk = chunk(begin);
+		int pos = (int)(begin & CHUNK_MASK) + 4, len, j, z, c, shift, prev = 0, vPos;
+		
+		for (len=0, shift=0; (c = chunk.get(pos++)) < 0; shift += 7)
+			len |= (c & 0x7f) << shift;
+		
+		len |= c << shift;
+		vPos = b_binary ? 0 : skipIndices(chunk, pos, len);
+		
+		for (j=0; j<len; j++)
+		{
+			for (z=0, shift=0; (c = chunk.get(pos++)) < 0; shift += 7)
+				z |= (c & 0x7f) << shift;
+			
+			z |= c << shift;
+			prev += (z >>> 1) ^ -(z & 1);
+			
+			if (b_binary)
+				weight[prev] += d;
+			else
+			{
+				weight[prev] += d * chunk.getFloat(vPos);
+				vPos += 4;
+			}
+		}
+	}
+	
+	/** @return the position next to <code>len</code> varints beginning at <code>pos</code>. */
+	static private int skipIndices(ByteBuffer chunk, int pos, int len)
+	{
+		for (; len > 0; pos++)
+			if (chunk.get(pos) >= 0)	len--;
+		
+		return pos;
+	}
+	
+	public double getSquaredNorm(int i)
+	{
+		long   begin  = begin(i);
+		Reader reader = new Reader(chunk(begin), (int)(begin & CHUNK_MASK) + 4);
+		int    len    = reader.next(), j;
+		if (b_binary)	return len;
+		
+		double norm = 0, v;
+		for (j=0; j<len; j++)	reader.nextIndex();
+		
+		for (j=0; j<len; j++)
+		{
+			v = reader.nextValue();
+			norm += v * v;
+		}
+		
+		return norm;
+	}
+	
+	public boolean isBinary()
+	{
+		return b_binary;
+	}
+	
+	public int getMaxIndex()
+	{
+		return n_maxIndex;
+	}
+	
+	public int getMaxLength()
+	{
+		return n_maxLength;
+	}
+	
+	/** The file is mapped already. */
+	public void trimToSize() {}
+	
+	/** Decodes a record from a position in a mapped chunk. */
+	static private class Reader
+	{
+		ByteBuffer b_buffer;
+		int        i_pos;
+		int        i_prev;
+		
+		public Reader(ByteBuffer buffer, int pos)
+		{
+			b_buffer = buffer;
+			i_pos    = pos;
+			i_prev   = 0;
+		}
+		
+		/** @return the next varint. */
+		public int next()
+		{
+			int d = 0, c, shift;
+			
+			for (shift=0; (c = b_buffer.get(i_pos++)) < 0; shift += 7)
+				d |= (c & 0x7f) << shift;
+			
+			return d | (c << shift);
+		}
+		
+		/** @return the next feature index decoded from a zigzag delta. */
+		public int nextIndex()
+		{
+			int d = next();
+			return i_prev += (d >>> 1) ^ -(d & 1);
+		}
+		
+		public double nextValue()
+		{
+			double v = b_buffer.getFloat(i_pos);
+			i_pos += 4;
+			return v;
+		}
+	}
+}
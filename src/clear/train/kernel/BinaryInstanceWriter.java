@@ -0,0 +1,252 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.train.kernel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes instances to a binary instance file read by {@link BinaryInstanceStore}.
+ * Offsets of records are spilled to a temporary file and appended as the table when the writer is closed.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/22/2011
+ */
+public class BinaryInstanceWriter
+{
+	/** Size of a write buffer */
+	static private final int BUFFER_SIZE = 1 << 20;
+	
+	private FileChannel c_records;
+	private ByteBuffer  b_records;
+	private long        n_records;
+	
+	private File        f_offsets;
+	private FileChannel c_offsets;
+	private ByteBuffer  b_offsets;
+	
+	private boolean b_binary;
+	private int     n_size;
+	private int     n_maxIndex;
+	private int     n_maxLength;
+	
+	/** @param binary if true, feature values are not written */
+	public BinaryInstanceWriter(String instanceFile, boolean binary) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(instanceFile, "rw");
+		file.setLength(0);
+		
+		f_offsets = File.createTempFile("clear-o", ".bin");
+		f_offsets.deleteOnExit();
+		
+		c_records = file.getChannel();
+		b_records = ByteBuffer.allocateDirect(BUFFER_SIZE).order(BinaryInstanceStore.ORDER);
+		c_offsets = new RandomAccessFile(f_offsets, "rw").getChannel();
+		b_offsets = ByteBuffer.allocateDirect(BUFFER_SIZE).order(BinaryInstanceStore.ORDER);
+		
+		b_binary    = binary;
+		n_size      = 0;
+		n_maxIndex  = 0;
+		n_maxLength = 0;
+		
+		// the header is written when closed
+		b_records.put(new byte[BinaryInstanceStore.HEADER_SIZE]);
+		n_records = 0;
+	}
+	
+	/**
+	 * Writes an instance with features <code>x</code> whose values are <code>v</code>.
+	 * If <code>v</code> is null, all values are 1.
+	 */
+	public void add(int y, int[] x, double[] v) throws IOException
+	{
+		int  i, d, prev = 0, len = x.length;
+		long size = 4 + getVarintSize(len) + (b_binary ? 0 : 4L * len);
+		
+		for (i=0; i<len; i++)
+		{
+			size += getVarintSize(getZigzag(x[i] - prev));
+			prev  = x[i];
+		}
+		
+		if (size > BinaryInstanceStore.CHUNK_SIZE)	throw new IllegalArgumentException("Too many features: "+len);
+		long begin = size();
+		
+		if ((begin & BinaryInstanceStore.CHUNK_MASK) + size > BinaryInstanceStore.CHUNK_SIZE)
+		{
+			pad(BinaryInstanceStore.CHUNK_SIZE - (begin & BinaryInstanceStore.CHUNK_MASK));
+			begin = size();
+		}
+		
+		ensure(b_offsets, c_offsets, 8);
+		b_offsets.putLong(begin);
+		
+		ensure(b_records, c_records, 4);
+		b_records.putInt(y);
+		putVarint(len);
+		
+		for (i=0, prev=0; i<len; i++)
+		{
+			d    = x[i] - prev;
+			prev = x[i];
+			putVarint(getZigzag(d));
+			if (n_maxIndex < x[i])	n_maxIndex = x[i];
+		}
+		
+		if (!b_binary)
+		{
+			for (i=0; i<len; i++)
+			{
+				ensure(b_records, c_records, 4);
+				b_records.putFloat((v != null) ? (float)v[i] : 1f);
+			}
+		}
+		
+		if (n_maxLength < len)	n_maxLength = len;
+		n_size++;
+	}
+	
+	/**
+	 * Writes all instances in <code>store</code> to <code>instanceFile</code>.
+	 * {@link AbstractInstanceStore#trimToSize()} must have been called for <code>store</code>.
+	 */
+	static public void write(AbstractInstanceStore store, String instanceFile) throws IOException
+	{
+		BinaryInstanceWriter fout = new BinaryInstanceWriter(instanceFile, store.isBinary());
+		double[] v = store.isBinary() ? null : new double[store.getMaxLength()];
+		int[]    x;
+		int      i;
+		
+		for (i=0; i<store.size(); i++)
+		{
+			x = new int[store.length(i)];
+			store.getX(i, x);
+			if (v != null)	store.getV(i, v);
+			
+			fout.add(store.getY(i), x, v);
+		}
+		
+		fout.close();
+	}
+	
+	/** Appends the table of record offsets, writes the header and closes the file. */
+	public void close() throws IOException
+	{
+		// table entries do not cross chunk boundaries if the table begins at a multiple of 8
+		if ((size() & 7) != 0)	pad(8 - (size() & 7));
+		long table = size();
+		
+		flush(b_records, c_records);
+		flush(b_offsets, c_offsets);
+		
+		long n = c_offsets.size(), pos = 0;
+		
+		while (pos < n)
+			pos += c_offsets.transferTo(pos, n - pos, c_records);
+		
+		c_offsets.close();
+		f_offsets.delete();
+		
+		b_records.putInt(BinaryInstanceStore.MAGIC);
+		b_records.putInt(BinaryInstanceStore.VERSION);
+		b_records.putInt(b_binary ? 1 : 0);
+		b_records.putInt(n_size);
+		b_records.putInt(n_maxIndex);
+		b_records.putInt(n_maxLength);
+		b_records.putLong(table);
+		b_records.flip();
+		
+		for (pos=0; b_records.hasRemaining(); )
+			pos += c_records.write(b_records, pos);
+		
+		c_records.close();
+	}
+	
+	/** @return the number of bytes written so far. */
+	private long size()
+	{
+		return n_records + b_records.position();
+	}
+	
+	private int getZigzag(int d)
+	{
+		return (d << 1) ^ (d >> 31);
+	}
+	
+	private int getVarintSize(int d)
+	{
+		int size = 1;
+		
+		while ((d & ~0x7f) != 0)
+		{
+			d >>>= 7;
+			size++;
+		}
+		
+		return size;
+	}
+	
+	private void putVarint(int d) throws IOException
+	{
+		ensure(b_records, c_records, 5);
+		
+		while ((d & ~0x7f) != 0)
+		{
+			b_records.put((byte)((d & 0x7f) | 0x80));
+			d >>>= 7;
+		}
+		
+		b_records.put((byte)d);
+	}
+	
+	/** Puts <code>n</code> zero bytes. */
+	private void pad(long n) throws IOException
+	{
+		for (; n > 0; n--)
+		{
+			ensure(b_records, c_records, 1);
+			b_records.put((byte)0);
+		}
+	}
+	
+	private void ensure(ByteBuffer buffer, FileChannel channel, int n) throws IOException
+	{
+		if (buffer.remaining() < n)	flush(buffer, channel);
+	}
+	
+	private void flush(ByteBuffer buffer, FileChannel channel) throws IOException
+	{
+		buffer.flip();
+		
+		while (buffer.hasRemaining())
+		{
+			int n = channel.write(buffer);
+			if (channel == c_records)	n_records += n;
+		}
+		
+		buffer.clear();
+	}
+}
@@ -0,0 +1,406 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.train.kernel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongArrayList;
+
+/**
+ * Stores training instances in memory using the compressed-sparse-row format.
+ * Feature indices (and values) of all instances are concatenated into large pages instead of one array per instance.
+ * If compressed, feature indices are delta + varint encoded (binary features only).
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/17/2011
+ */
+public class InstanceStore extends AbstractInstanceStore
+{
+	/** Maximum number of elements in a page (an instance larger than this gets its own page) */
+	static private final int PAGE_SIZE = 1 << 22;
+	/** Initial number of elements in a page */
+	static private final int INIT_SIZE = 1 << 12;
+	/** Maximum number of bytes to encode an integer */
+	static private final int MAX_VARINT = 5;
+	
+	/** true if feature indices are delta + varint encoded */
+	private boolean b_compress;
+	/** true if all features are binary */
+	private boolean b_binary;
+	
+	/** Labels */
+	private IntArrayList  a_ys;
+	/** Beginning of each instance (page << 32 | position in the page) */
+	private LongArrayList a_begins;
+	/** Number of elements used in each page */
+	private IntArrayList  a_ends;
+	
+	/** Pages of feature indices (if not compressed) */
+	private ArrayList<int[]>    a_xPages;
+	/** Pages of encoded feature indices (if compressed) */
+	private ArrayList<byte[]>   a_bPages;
+	/** Pages of feature values (if not binary) */
+	private ArrayList<double[]> a_vPages;
+	
+	private int n_maxIndex;
+	private int n_maxLength;
+	
+	/** @param compress if true, feature indices are delta + varint encoded */
+	public InstanceStore(boolean compress)
+	{
+		b_compress  = compress;
+		b_binary    = true;
+		a_ys        = new IntArrayList();
+		a_begins    = new LongArrayList();
+		a_ends      = new IntArrayList();
+		a_xPages    = new ArrayList<int[]>();
+		a_bPages    = new ArrayList<byte[]>();
+		a_vPages    = null;
+		n_maxIndex  = 0;
+		n_maxLength = 0;
+	}
+	
+	public void add(int y, IntArrayList x)
+	{
+		add(y, x.buffer, null, x.size());
+	}
+	
+	public void add(int y, int[] x, double[] v)
+	{
+		add(y, x, v, x.length);
+	}
+	
+	private void add(int y, int[] x, double[] v, int len)
+	{
+		if (a_ys.isEmpty() && v != null)
+		{
+			if (b_compress)	throw new IllegalArgumentException("Compressed instances must have binary features");
+			b_binary = false;
+			a_vPages = new ArrayList<double[]>();
+		}
+		else if (b_binary && v != null)
+			throw new IllegalArgumentException("Feature values are added to binary instances");
+		
+		int pos  = reserve(b_compress ? len * MAX_VARINT : len);
+		int page = a_ends.size() - 1, i;
+		
+		a_ys.add(y);
+		a_begins.add(((long)page << 32) | pos);
+		
+		if (b_compress)
+			a_ends.set(page, encode(x, len, a_bPages.get(page), pos));
+		else
+		{
+			System.arraycopy(x, 0, a_xPages.get(page), pos, len);
+			
+			if (!b_binary)
+			{
+				double[] values = a_vPages.get(page);
+				
+				if (v != null)	System.arraycopy(v, 0, values, pos, len);
+				else			Arrays.fill(values, pos, pos+len, 1d);
+			}
+			
+			a_ends.set(page, pos+len);
+		}
+		
+		for (i=0; i<len; i++)
+			if (n_maxIndex < x[i])	n_maxIndex = x[i];
+		
+		if (n_maxLength < len)	n_maxLength = len;
+	}
+	
+	/** @return the position in the last page where <code>n</code> elements can be written. */
+	private int reserve(int n)
+	{
+		int page = a_ends.size() - 1;
+		
+		if (page < 0)
+		{
+			addPage(n);
+			return 0;
+		}
+		
+		int end = a_ends.get(page);
+		
+		if (end + n > PAGE_SIZE && end > 0)
+		{
+			trimPage(page);
+			addPage(n);
+			return 0;
+		}
+		
+		int capacity = b_compress ? a_bPages.get(page).length : a_xPages.get(page).length;
+		if (end + n > capacity)	resizePage(page, Math.max(end + n, Math.min(capacity * 2, PAGE_SIZE)));
+		
+		return end;
+	}
+	
+	private void addPage(int n)
+	{
+		int size = Math.max(n, INIT_SIZE);
+		
+		if (b_compress)	a_bPages.add(new byte[size]);
+		else			a_xPages.add(new int [size]);
+		if (!b_binary)	a_vPages.add(new double[size]);
+		
+		a_ends.add(0);
+	}
+	
+	private void resizePage(int page, int size)
+	{
+		if (b_compress)	a_bPages.set(page, Arrays.copyOf(a_bPages.get(page), size));
+		else			a_xPages.set(page, Arrays.copyOf(a_xPages.get(page), size));
+		if (!b_binary)	a_vPages.set(page, Arrays.copyOf(a_vPages.get(page), size));
+	}
+	
+	private void trimPage(int page)
+	{
+		int end = a_ends.get(page);
+		int capacity = b_compress ? a_bPages.get(page).length : a_xPages.get(page).length;
+		
+		if (end < capacity)	resizePage(page, end);
+	}
+	
+	/**
+	 * Encodes differences between consecutive feature indices as zigzag varints.
+	 * @return the position next to the last encoded byte
+	 */
+	static private int encode(int[] x, int len, byte[] page, int pos)
+	{
+		int i, d, prev = 0;
+		
+		for (i=0; i<len; i++)
+		{
+			d    = x[i] - prev;
+			prev = x[i];
+			d    = (d << 1) ^ (d >> 31);
+			
+			while ((d & ~0x7f) != 0)
+			{
+				page[pos++] = (byte)((d & 0x7f) | 0x80);
+				d >>>= 7;
+			}
+			
+			page[pos++] = (byte)d;
+		}
+		
+		return pos;
+	}
+	
+	public int size()
+	{
+		return a_ys.size();
+	}
+	
+	public int getY(int i)
+	{
+		return a_ys.buffer[i];
+	}
+	
+	private int page(int i)
+	{
+		return (int)(a_begins.buffer[i] >>> 32);
+	}
+	
+	private int begin(int i)
+	{
+		return (int)a_begins.buffer[i];
+	}
+	
+	/** @return the position next to the last element of the <code>i</code>'th instance in <code>page</code>. */
+	private int end(int i, int page)
+	{
+		return (i+1 < a_ys.size() && page(i+1) == page) ? begin(i+1) : a_ends.buffer[page];
+	}
+	
+	public int length(int i)
+	{
+		int page = page(i), end = end(i, page), j = begin(i);
+		if (!b_compress)	return end - j;
+		
+		byte[] b = a_bPages.get(page);
+		int len = 0;
+		
+		for (; j<end; j++)
+			if (b[j] >= 0)	len++;
+		
+		return len;
+	}
+	
+	public int getX(int i, int[] x)
+	{
+		int page = page(i), end = end(i, page), j = begin(i);
+		
+		if (!b_compress)
+		{
+			System.arraycopy(a_xPages.get(page), j, x, 0, end - j);
+			return end - j;
+		}
+		
+		byte[] b = a_bPages.get(page);
+		int len = 0, d, c, shift, prev = 0;
+		
+		while (j < end)
+		{
+			for (d=0, shift=0; (c = b[j++]) < 0; shift += 7)
+				d |= (c & 0x7f) << shift;
+			
+			d |= c << shift;
+			prev += (d >>> 1) ^ -(d & 1);
+			x[len++] = prev;
+		}
+		
+		return len;
+	}
+	
+	public int getV(int i, double[] v)
+	{
+		if (b_binary)
+		{
+			int len = length(i);
+			Arrays.fill(v, 0, len, 1d);
+			return len;
+		}
+		
+		int page = page(i), end = end(i, page), j = begin(i);
+		System.arraycopy(a_vPages.get(page), j, v, 0, end - j);
+		
+		return end - j;
+	}
+	
+	public double dot(int i, double[] weight)
+	{
+		int page = page(i), end = end(i, page), j = begin(i);
+		double score = 0;
+		
+		if (b_compress)
+		{
+			byte[] b = a_bPages.get(page);
+			int d, c, shift, prev = 0;
+			
+			while (j < end)
+			{
+				for (d=0, shift=0; (c = b[j++]) < 0; shift += 7)
+					d |= (c & 0x7f) << shift;
+				
+				d |= c << shift;
+				prev  += (d >>> 1) ^ -(d & 1);
+				score += weight[prev];
+			}
+		}
+		else if (b_binary)
+		{
+			int[] x = a_xPages.get(page);
+			
+			for (; j<end; j++)
+				score += weight[x[j]];
+		}
+		else
+		{
+			int[]    x = a_xPages.get(page);
+			double[] v = a_vPages.get(page);
+			
+			for (; j<end; j++)
+				score += weight[x[j]] * v[j];
+		}
+		
+		return score;
+	}
+	
+	public void update(int i, double[] weight, double d)
+	{
+		int page = page(i), end = end(i, page), j = begin(i);
+		
+		if (b_compress)
+		{
+			byte[] b = a_bPages.get(page);
+			int z, c, shift, prev = 0;
+			
+			while (j < end)
+			{
+				for (z=0, shift=0; (c = b[j++]) < 0; shift += 7)
+					z |= (c & 0x7f) << shift;
+				
+				z |= c << shift;
+				prev += (z >>> 1) ^ -(z & 1);
+				weight[prev] += d;
+			}
+		}
+		else if (b_binary)
+		{
+			int[] x = a_xPages.get(page);
+			
+			for (; j<end; j++)
+				weight[x[j]] += d;
+		}
+		else
+		{
+			int[]    x = a_xPages.get(page);
+			double[] v = a_vPages.get(page);
+			
+			for (; j<end; j++)
+				weight[x[j]] += d * v[j];
+		}
+	}
+	
+	public double getSquaredNorm(int i)
+	{
+		if (b_binary)	return length(i);
+		
+		int page = page(i), end = end(i, page), j = begin(i);
+		double[] v = a_vPages.get(page);
+		double norm = 0;
+		
+		for (; j<end; j++)
+			norm += v[j] * v[j];
+		
+		return norm;
+	}
+	
+	public boolean isBinary()
+	{
+		return b_binary;
+	}
+	
+	public int getMaxIndex()
+	{
+		return n_maxIndex;
+	}
+	
+	public int getMaxLength()
+	{
+		return n_maxLength;
+	}
+	
+	public void trimToSize()
+	{
+		if (!a_ends.isEmpty())	trimPage(a_ends.size()-1);
+		
+		a_ys    .trimToSize();
+		a_begins.trimToSize();
+		a_ends  .trimToSize();
+	}
+}
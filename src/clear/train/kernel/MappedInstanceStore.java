@@ -0,0 +1,379 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.train.kernel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+/**
+ * Stores training instances out of core.
+ * Instances are spilled to files while being added and memory-mapped for training.
+ * Columns are stored in separate files: labels (int), beginnings of records (long), and
+ * records of feature indices (<code>[length][indices...][values...]</code>, values only if not binary).
+ * Records do not cross chunk boundaries so that each record is read from a single mapped buffer.
+ * Spill files are deleted once they are mapped.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/18/2011
+ */
+public class MappedInstanceStore extends AbstractInstanceStore
+{
+	/** Size of a mapped chunk = 1 << CHUNK_BITS bytes */
+	static private final int  CHUNK_BITS  = 30;
+	static private final long CHUNK_SIZE  = 1L << CHUNK_BITS;
+	static private final long CHUNK_MASK  = CHUNK_SIZE - 1;
+	/** Size of a write buffer */
+	static private final int  BUFFER_SIZE = 1 << 20;
+	/** Byte order of spill files */
+	static private final ByteOrder ORDER  = ByteOrder.LITTLE_ENDIAN;
+	
+	private SpillFile f_ys, f_begins, f_records;
+	
+	/** Mapped labels */
+	private MappedByteBuffer[] a_ys;
+	/** Mapped beginnings of records */
+	private MappedByteBuffer[] a_begins;
+	/** Mapped records */
+	private MappedByteBuffer[] a_records;
+	
+	private boolean b_binary;
+	private int     n_size;
+	private int     n_maxIndex;
+	private int     n_maxLength;
+	
+	/**
+	 * Creates spill files in <code>dir</code>.
+	 * @param dir directory of spill files; if null, the default temporary directory is used
+	 */
+	public MappedInstanceStore(String dir)
+	{
+		File fDir = (dir != null) ? new File(dir) : null;
+		
+		try
+		{
+			f_ys      = new SpillFile(File.createTempFile("clear-y", ".bin", fDir));
+			f_begins  = new SpillFile(File.createTempFile("clear-b", ".bin", fDir));
+			f_records = new SpillFile(File.createTempFile("clear-x", ".bin", fDir));
+		}
+		catch (IOException e) {throw new IllegalStateException(e);}
+		
+		b_binary    = true;
+		n_size      = 0;
+		n_maxIndex  = 0;
+		n_maxLength = 0;
+	}
+	
+	public void add(int y, IntArrayList x)
+	{
+		add(y, x.buffer, null, x.size());
+	}
+	
+	public void add(int y, int[] x, double[] v)
+	{
+		add(y, x, v, x.length);
+	}
+	
+	private void add(int y, int[] x, double[] v, int len)
+	{
+		if (f_records == null)
+			throw new IllegalStateException("Instances are added after the store is mapped");
+		
+		if (n_size == 0 && v != null)
+			b_binary = false;
+		else if (b_binary && v != null)
+			throw new IllegalArgumentException("Feature values are added to binary instances");
+		
+		long size = 4L + (b_binary ? 4L : 12L) * len;
+		if (size > CHUNK_SIZE)	throw new IllegalArgumentException("Too many features: "+len);
+		
+		int i;
+		
+		try
+		{
+			long begin = f_records.size();
+			
+			if ((begin & CHUNK_MASK) + size > CHUNK_SIZE)
+			{
+				f_records.pad(CHUNK_SIZE - (begin & CHUNK_MASK));
+				begin = f_records.size();
+			}
+			
+			f_ys.putInt(y);
+			f_begins.putLong(begin);
+			f_records.putInt(len);
+			
+			for (i=0; i<len; i++)
+			{
+				f_records.putInt(x[i]);
+				if (n_maxIndex < x[i])	n_maxIndex = x[i];
+			}
+			
+			if (!b_binary)
+			{
+				for (i=0; i<len; i++)
+					f_records.putDouble((v != null) ? v[i] : 1d);
+			}
+		}
+		catch (IOException e) {throw new IllegalStateException(e);}
+		
+		if (n_maxLength < len)	n_maxLength = len;
+		n_size++;
+	}
+	
+	/** Flushes spill files and maps them; no more instance can be added. */
+	public void trimToSize()
+	{
+		if (f_records == null)	return;
+		
+		try
+		{
+			a_ys      = f_ys     .map();
+			a_begins  = f_begins .map();
+			a_records = f_records.map();
+		}
+		catch (IOException e) {throw new IllegalStateException(e);}
+		
+		f_ys = f_begins = f_records = null;
+	}
+	
+	public int size()
+	{
+		return n_size;
+	}
+	
+	public int getY(int i)
+	{
+		long offset = (long)i << 2;
+		return a_ys[(int)(offset >>> CHUNK_BITS)].getInt((int)(offset & CHUNK_MASK));
+	}
+	
+	private long begin(int i)
+	{
+		long offset = (long)i << 3;
+		return a_begins[(int)(offset >>> CHUNK_BITS)].getLong((int)(offset & CHUNK_MASK));
+	}
+	
+	private ByteBuffer chunk(long begin)
+	{
+		return a_records[(int)(begin >>> CHUNK_BITS)];
+	}
+	
+	public int length(int i)
+	{
+		long begin = begin(i);
+		return chunk(begin).getInt((int)(begin & CHUNK_MASK));
+	}
+	
+	public int getX(int i, int[] x)
+	{
+		long       begin = begin(i);
+		ByteBuffer chunk = chunk(begin);
+		int pos = (int)(begin & CHUNK_MASK), len = chunk.getInt(pos), j;
+		
+		for (j=0, pos+=4; j<len; j++, pos+=4)
+			x[j] = chunk.getInt(pos);
+		
+		return len;
+	}
+	
+	public int getV(int i, double[] v)
+	{
+		long       begin = begin(i);
+		ByteBuffer chunk = chunk(begin);
+		int pos = (int)(begin & CHUNK_MASK), len = chunk.getInt(pos), j;
+		
+		if (b_binary)
+			for (j=0; j<len; j++)	v[j] = 1d;
+		else
+			for (j=0, pos+=4+4*len; j<len; j++, pos+=8)	v[j] = chunk.getDouble(pos);
+		
+		return len;
+	}
+	
+	public double dot(int i, double[] weight)
+	{
+		long       begin = begin(i);
+		ByteBuffer chunk = chunk(begin);
+		int pos = (int)(begin & CHUNK_MASK), len = chunk.getInt(pos), j, vPos;
+		double score = 0;
+		
+		if (b_binary)
+		{
+			for (j=0, pos+=4; j<len; j++, pos+=4)
+				score += weight[chunk.getInt(pos)];
+		}
+		else
+		{
+			for (j=0, pos+=4, vPos=pos+4*len; j<len; j++, pos+=4, vPos+=8)
+				score += weight[chunk.getInt(pos)] * chunk.getDouble(vPos);
+		}
+		
+		return score;
+	}
+	
+	public void update(int i, double[] weight, double d)
+	{
+		long       begin = begin(i);
+		ByteBuffer chunk = chunk(begin);
+		int pos = (int)(begin & CHUNK_MASK), len = chunk.getInt(pos), j, vPos;
+		
+		if (b_binary)
+		{
+			for (j=0, pos+=4; j<len; j++, pos+=4)
+				weight[chunk.getInt(pos)] += d;
+		}
+		else
+		{
+			for (j=0, pos+=4, vPos=pos+4*len; j<len; j++, pos+=4, vPos+=8)
+				weight[chunk.getInt(pos)] += d * chunk.getDouble(vPos);
+		}
+	}
+	
+	public double getSquaredNorm(int i)
+	{
+		long       begin = begin(i);
+		ByteBuffer chunk = chunk(begin);
+		int pos = (int)(begin & CHUNK_MASK), len = chunk.getInt(pos), j;
+		if (b_binary)	return len;
+		
+		double norm = 0, v;
+		
+		for (j=0, pos+=4+4*len; j<len; j++, pos+=8)
+		{
+			v = chunk.getDouble(pos);
+			norm += v * v;
+		}
+		
+		return norm;
+	}
+	
+	public boolean isBinary()
+	{
+		return b_binary;
+	}
+	
+	public int getMaxIndex()
+	{
+		return n_maxIndex;
+	}
+	
+	public int getMaxLength()
+	{
+		return n_maxLength;
+	}
+	
+	/** File written through a direct buffer and mapped in chunks. */
+	static private class SpillFile
+	{
+		private File        f_file;
+		private FileChannel c_channel;
+		private ByteBuffer  b_buffer;
+		private long        n_written;
+		
+		public SpillFile(File file) throws IOException
+		{
+			file.deleteOnExit();
+			
+			f_file    = file;
+			c_channel = new RandomAccessFile(file, "rw").getChannel();
+			b_buffer  = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ORDER);
+			n_written = 0;
+		}
+		
+		/** @return the number of bytes put so far. */
+		public long size()
+		{
+			return n_written + b_buffer.position();
+		}
+		
+		private void ensure(int n) throws IOException
+		{
+			if (b_buffer.remaining() < n)	flush();
+		}
+		
+		public void putInt(int i) throws IOException
+		{
+			ensure(4);
+			b_buffer.putInt(i);
+		}
+		
+		public void putLong(long l) throws IOException
+		{
+			ensure(8);
+			b_buffer.putLong(l);
+		}
+		
+		public void putDouble(double d) throws IOException
+		{
+			ensure(8);
+			b_buffer.putDouble(d);
+		}
+		
+		/** Puts <code>n</code> zero bytes. */
+		public void pad(long n) throws IOException
+		{
+			for (; n > 0; n--)
+			{
+				ensure(1);
+				b_buffer.put((byte)0);
+			}
+		}
+		
+		private void flush() throws IOException
+		{
+			b_buffer.flip();
+			while (b_buffer.hasRemaining())	n_written += c_channel.write(b_buffer);
+			b_buffer.clear();
+		}
+		
+		/** Flushes and maps this file, then deletes it (the mapping remains valid). */
+		public MappedByteBuffer[] map() throws IOException
+		{
+			flush();
+			
+			int i, n = (int)((n_written + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+			MappedByteBuffer[] chunks = new MappedByteBuffer[n];
+			long begin;
+			
+			for (i=0; i<n; i++)
+			{
+				begin     = (long)i << CHUNK_BITS;
+				chunks[i] = c_channel.map(FileChannel.MapMode.READ_ONLY, begin, Math.min(CHUNK_SIZE, n_written - begin));
+				chunks[i].order(ORDER);
+			}
+			
+			c_channel.close();
+			b_buffer = null;
+			f_file.delete();
+			
+			return chunks;
+		}
+	}
+}
@@ -37,7 +37,7 @@ import com.carrotsearch.hppc.IntOpenHashSet;
 /**
  * Linear kernel.
  * @author Jinho D. Choi
- * <b>Last update:</b> 11/5/2010
+ * <b>Last update:</b> 9/17/2011
  */
 public class NoneKernel extends AbstractKernel
 {
@@ -52,39 +52,37 @@ public class NoneKernel extends AbstractKernel
 	}
 	
 	/**
-	 * Reads training instances from <code>instanceFile</code> and stores to 
-	 * {@link AbstractKernel#a_ys} and {@link AbstractKernel#a_xs}. 
+	 * Reads training instances from <code>instanceFile</code> and stores to {@link AbstractKernel#a_instances}. 
+	 * A binary instance file (see {@link BinaryInstanceStore}) is memory-mapped instead of being read.
 	 * @param instanceFile name of a file containing training instances
 	 */
 	protected void init(String instanceFile) throws Exception
 	{
-		final int NUM = 1000000;
+		if (BinaryInstanceStore.isBinaryFile(instanceFile))
+		{
+			System.out.println("* Initializing  : " + instanceFile);
+			init(new BinaryInstanceStore(instanceFile));
+			return;
+		}
 		
 		BufferedReader fin = IOUtil.createBufferedFileReader(instanceFile);
+		InstanceStore store = new InstanceStore(false);
 		
-		a_ys = new IntArrayList    (NUM);
-		a_xs = new ArrayList<int[]>(NUM);
-		
-		IntOpenHashSet sLabels = new IntOpenHashSet();
 		String line;
-		String[] tok, tmp;	int y, i;	int[] x;	double[] v;
+		String[] tok, tmp;	int y, i, n;	int[] x;	double[] v;
 		
-		for (N=0; (line = fin.readLine()) != null; N++)
+		for (n=0; (line = fin.readLine()) != null; n++)
 		{
-			if (N == 0 && line.contains(AbstractKernel.FTR_DELIM))
-			{
+			if (n == 0 && line.contains(AbstractKernel.FTR_DELIM))
 				b_binary = false;
-				a_vs     = new ArrayList<double[]>(NUM);
-			}
 			
 			tok = line.split(COL_DELIM);
 			y   = Integer.parseInt (tok[0]);
-			a_ys.add(y);
 			
 			if (b_binary)
 			{
 				x = DSUtil.toIntArray(tok, 1);
-				a_xs.add(x);
+				store.add(y, x, null);
 			}
 			else
 			{
@@ -98,99 +96,77 @@ public class NoneKernel extends AbstractKernel
 					v[i-1] = Double.parseDouble(tmp[1]);
 				}
 				
-				a_xs.add(x);
-				a_vs.add(v);
+				store.add(y, x, v);
 			}
 			
-			// indices in feature are in ascending order
-			D = Math.max(D, x[x.length-1]);
-			sLabels.add(y);
-			
-			if (N%100000 == 0)	System.out.print("\r* Initializing  : "+(N/1000)+"K");
+			if (n%100000 == 0)	System.out.print("\r* Initializing  : "+(n/1000)+"K");
 		}	System.out.println("\r* Initializing  : " + instanceFile);
 		
 		fin.close();
-		a_ys.trimToSize();
-		a_xs.trimToSize();
+		init(store);
+	}
+	
+	/** Uses <code>store</code> as training instances. */
+	public void add(AbstractInstanceStore store) throws Exception
+	{
+		System.out.println("* Initializing  : " + store.size());
+		init(store);
+	}
+	
+	/**
+	 * Merges identical training instances into one instance.
+	 * The number of occurrences of each merged instance is kept in {@link AbstractKernel#a_counts}.
+	 * @param store empty store to save distinct instances
+	 */
+	public void deduplicate(AbstractInstanceStore store)
+	{
+		int size = N;
 		
-		// feature dimension = last feature-index + 1
-		D++;
+		a_counts = store.addDistinct(a_instances);
+		a_instances = null;
 		
-		// sort labels;
-		a_labels = sLabels.toArray();
-		Arrays.sort(a_labels);
-		L = a_labels.length;
-
-		System.out.println("- # of instances: " + N);
-		System.out.println("- # of labels   : " + L);
-		System.out.println("- # of features : " + D);
+		System.out.println("* Deduplicating : " + size + " -> " + a_counts.length);
+		init(store);
 	}
 	
-	public void add(JObjectObjectTuple<IntArrayList, ArrayList<int[]>> yx) throws Exception
+	public void addValueArray(JObjectObjectTuple<IntArrayList, ArrayList<double[]>> yx) throws Exception
 	{
-		a_ys = yx.o1;
-		a_xs = yx.o2;
-		N    = a_ys.size();
-	
-		IntOpenHashSet sLabels = new IntOpenHashSet();
-		int y, i;	int[] x;
+		IntArrayList        ys = yx.o1;
+		ArrayList<double[]> vs = yx.o2;
 		
-		System.out.println("* Initializing  : " + N);
+		int i, n = vs.get(0).length;
+		int[] x = new int[n];
 		
-		for (i=0; i<N; i++)
-		{
-			y = a_ys.get(i);
-			x = a_xs.get(i);
-			D = Math.max(D, x[x.length-1]);
-			sLabels.add(y);
-		}
+		for (i=0; i<n; i++)	x[i] = i+1;
 		
-		a_ys.trimToSize();
-		a_xs.trimToSize();
+		InstanceStore store = new InstanceStore(false);
+		System.out.println("* Initializing  : " + ys.size());
 		
-		// feature dimension = last feature-index + 1
-		D++;
+		for (i=0; i<ys.size(); i++)
+			store.add(ys.get(i), x, vs.get(i));
 		
-		// sort labels;
-		a_labels = sLabels.toArray();
-		Arrays.sort(a_labels);
-		L = a_labels.length;
-
-		System.out.println("- # of instances: " + N);
-		System.out.println("- # of labels   : " + L);
-		System.out.println("- # of features : " + D);
+		init(store);
 	}
 	
-	public void addValueArray(JObjectObjectTuple<IntArrayList, ArrayList<double[]>> yx) throws Exception
+	/** Initializes the feature space from <code>store</code>. */
+	private void init(AbstractInstanceStore store)
 	{
-		a_ys = yx.o1;
-		a_vs = yx.o2;
-		a_xs = new ArrayList<int[]>();
+		store.trimToSize();
 		
-		N = a_ys.size();
-		D = a_vs.get(0).length;
+		a_instances = store;
+		b_binary    = store.isBinary();
+		N           = store.size();
+		// feature dimension = last feature-index + 1
+		D           = store.getMaxIndex() + 1;
 		
 		IntOpenHashSet sLabels = new IntOpenHashSet();
-		int y, i;
-		int[] x = new int[D];
-		
-		for (i=0; i<D; i++)	x[i] = i+1;
+		d_norms = new double[N];
 		
-		System.out.println("* Initializing  : " + N);
-		
-		for (i=0; i<N; i++)
+		for (int i=0; i<N; i++)
 		{
-			a_xs.add(x);
-			y = a_ys.get(i);
-			sLabels.add(y);
-		}	
-		
-		a_ys.trimToSize();
-		a_xs.trimToSize();
-		a_vs.trimToSize();
-		
-		// feature dimension = last feature-index + 1
-		D++;
+			sLabels.add(store.getY(i));
+			d_norms[i] = store.getSquaredNorm(i);
+		}
 		
 		// sort labels;
 		a_labels = sLabels.toArray();
@@ -23,56 +23,182 @@
 */
 package clear.train.kernel;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
- * Linear kernel.
+ * Polynomial kernel.
+ * Kernel rows are computed on demand and the most recently used rows are kept in a cache of bounded size.
+ * Indices of features in each training instance must be in ascending order.
  * @author Jinho D. Choi
- * <b>Last update:</b> 11/5/2010
+ * <b>Last update:</b> 9/21/2011
  */
 public class PolynomialKernel extends NoneKernel
 {
-	public int        i_degree;
-	public double     d_gamma;
-	public double     d_coef;
-	public double[][] d_kernel;
+	/** Default size of the kernel cache in megabytes */
+	static public final int DEFAULT_CACHE_SIZE = 100;
+	
+	public int      i_degree;
+	public double   d_gamma;
+	public double   d_coef;
+	/** Kernel values of each instance with itself */
+	public double[] d_diagonal;
+	
+	/** Least recently used kernel rows are removed first */
+	private LinkedHashMap<Integer,double[]> m_cache;
+	/** Maximum number of kernel rows in {@link PolynomialKernel#m_cache} */
+	private int      n_cacheRows;
+	/** Number of kernel rows found in / computed and added to {@link PolynomialKernel#m_cache} */
+	private long     n_hits, n_misses;
+	
+	// buffers for computing kernel rows
+	private int[]    x_i, x_j;
+	private double[] v_i, v_j;
 	
 	public PolynomialKernel(String instanceFile, int degree, double gamma, double coef)
+	{
+		this(instanceFile, degree, gamma, coef, DEFAULT_CACHE_SIZE);
+	}
+	
+	/** @param cacheSize size of the kernel cache in megabytes */
+	public PolynomialKernel(String instanceFile, int degree, double gamma, double coef, int cacheSize)
 	{
 		super(instanceFile);
-		initKernel(degree, gamma, coef);
+		initKernel(degree, gamma, coef, cacheSize);
 	}
 	
-	private void initKernel(int degree, double gamma, double coef)
+	private void initKernel(int degree, double gamma, double coef, int cacheSize)
 	{
 		kernel_type = KERNEL_POLYNOMIAL;
 		i_degree    = degree;
 		d_gamma     = gamma;
 		d_coef      = coef;
-		d_kernel    = new double[N][N];
+		d_diagonal  = new double[N];
+		
+		int i, j, n;
 		
-		int i, j;		double scala;
-		int[] xi, xj;	double[] vi = null, vj = null;
+		x_i = new int[a_instances.getMaxLength()];
+		x_j = new int[x_i.length];
+		v_i = b_binary ? null : new double[x_i.length];
+		v_j = b_binary ? null : new double[x_i.length];
 		
 		for (i=0; i<N; i++)
 		{
-			xi = a_xs.get(i);
-			if (!b_binary)	vi = a_vs.get(i);
+			n = a_instances.getX(i, x_i);
+			
+			for (j=1; j<n; j++)
+			{
+				if (x_i[j-1] >= x_i[j])
+					throw new IllegalArgumentException("Feature indices are not in ascending order: instance "+i);
+			}
+			
+			d_diagonal[i] = getPolyValue(d_norms[i], gamma, coef, degree);
+		}
+		
+		n_cacheRows = (int)Math.max(2, Math.min(N, (long)cacheSize * 1024 * 1024 / (8L * Math.max(N, 1))));
+		m_cache     = new LinkedHashMap<Integer,double[]>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
 			
-			for (j=0; j<N; j++)
+			protected boolean removeEldestEntry(Map.Entry<Integer,double[]> eldest)
 			{
-				xj = a_xs.get(j);
-				
-				if (b_binary)
-					scala = getScala(xi, xj);
-				else
-				{
-					vj = a_vs.get(j);
-					scala = getScala(xi, xj, vi, vj);
-				}
-				
-				d_kernel[i][j] = getPolyValue(scala, gamma, coef, degree);
+				return size() > n_cacheRows;
 			}
+		};
+		
+		System.out.println("- kernel cache  : "+n_cacheRows+" rows");
+	}
+	
+	/** @return the kernel value of the <code>i</code>'th and <code>j</code>'th instances. */
+	public double getValue(int i, int j)
+	{
+		return (i == j) ? d_diagonal[i] : getRow(i)[j];
+	}
+	
+	/**
+	 * Returns kernel values of the <code>i</code>'th instance with all instances.
+	 * The returned row must not be modified; it stays valid after it is removed from the cache.
+	 */
+	synchronized public double[] getRow(int i)
+	{
+		double[] row = m_cache.get(i);
+		
+		if (row != null)
+		{
+			n_hits++;
+			return row;
 		}
+		
+		n_misses++;
+		row = new double[N];
+		
+		int ni = a_instances.getX(i, x_i), nj, j;
+		double scala;
+		
+		if (!b_binary)	a_instances.getV(i, v_i);
+		
+		for (j=0; j<N; j++)
+		{
+			nj = a_instances.getX(j, x_j);
+			
+			if (b_binary)
+				scala = getScala(x_i, ni, x_j, nj);
+			else
+			{
+				a_instances.getV(j, v_j);
+				scala = getScala(x_i, v_i, ni, x_j, v_j, nj);
+			}
+			
+			row[j] = getPolyValue(scala, d_gamma, d_coef, i_degree);
+		}
+		
+		m_cache.put(i, row);
+		return row;
+	}
+	
+	/** @return the ratio of kernel rows found in the cache. */
+	synchronized public double getCacheHitRatio()
+	{
+		long total = n_hits + n_misses;
+		return (total == 0) ? 0 : (double)n_hits / total;
+	}
+	
+	/** @return the number of common features in <code>xi[0:ni]</code> and <code>xj[0:nj]</code>, both sorted in ascending order. */
+	static public int getScala(int[] xi, int ni, int[] xj, int nj)
+	{
+		int scala = 0, i = 0, j = 0;
+		
+		while (i < ni && j < nj)
+		{
+			if      (xi[i] < xj[j])	i++;
+			else if (xi[i] > xj[j])	j++;
+			else
+			{
+				scala++;	i++;	j++;
+			}
+		}
+		
+		return scala;
+	}
+	
+	/** @return the dot product of <code>xi[0:ni]</code> and <code>xj[0:nj]</code>, both sorted in ascending order. */
+	static public double getScala(int[] xi, double[] vi, int ni, int[] xj, double[] vj, int nj)
+	{
+		double scala = 0;
+		int    i = 0, j = 0;
+		
+		while (i < ni && j < nj)
+		{
+			if      (xi[i] < xj[j])	i++;
+			else if (xi[i] > xj[j])	j++;
+			else
+			{
+				scala += vi[i] * vj[j];
+				i++;	j++;
+			}
+		}
+		
+		return scala;
 	}
 	
 	static public double getPolyValue(double scala, double gamma, double coef, int degree)
@@ -0,0 +1,115 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.train.kernel;
+
+import com.carrotsearch.hppc.IntArrayList;
+
+/**
+ * Read-only view of a subset of instances in another store (e.g., a fold for cross-validation).
+ * Instances are not copied; the underlying store must not be modified while this view is used.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/22/2011
+ */
+public class SubsetInstanceStore extends AbstractInstanceStore
+{
+	private AbstractInstanceStore s_store;
+	/** Indices of instances in {@link SubsetInstanceStore#s_store} */
+	private int[] a_indices;
+	
+	/** @param indices indices of instances in <code>store</code> included in this view */
+	public SubsetInstanceStore(AbstractInstanceStore store, int[] indices)
+	{
+		s_store   = store;
+		a_indices = indices;
+	}
+	
+	public void add(int y, IntArrayList x)
+	{
+		throw new IllegalStateException("Instances cannot be added to a subset view");
+	}
+	
+	public void add(int y, int[] x, double[] v)
+	{
+		throw new IllegalStateException("Instances cannot be added to a subset view");
+	}
+	
+	public int size()
+	{
+		return a_indices.length;
+	}
+	
+	public int getY(int i)
+	{
+		return s_store.getY(a_indices[i]);
+	}
+	
+	public int length(int i)
+	{
+		return s_store.length(a_indices[i]);
+	}
+	
+	public int getX(int i, int[] x)
+	{
+		return s_store.getX(a_indices[i], x);
+	}
+	
+	public int getV(int i, double[] v)
+	{
+		return s_store.getV(a_indices[i], v);
+	}
+	
+	public double dot(int i, double[] weight)
+	{
+		return s_store.dot(a_indices[i], weight);
+	}
+	
+	public void update(int i, double[] weight, double d)
+	{
+		s_store.update(a_indices[i], weight, d);
+	}
+	
+	public double getSquaredNorm(int i)
+	{
+		return s_store.getSquaredNorm(a_indices[i]);
+	}
+	
+	public boolean isBinary()
+	{
+		return s_store.isBinary();
+	}
+	
+	/** @return the maximum index of the underlying store. */
+	public int getMaxIndex()
+	{
+		return s_store.getMaxIndex();
+	}
+	
+	/** @return the maximum length of the underlying store. */
+	public int getMaxLength()
+	{
+		return s_store.getMaxLength();
+	}
+	
+	public void trimToSize() {}
+}
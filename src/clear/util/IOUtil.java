@@ -23,12 +23,15 @@
 */
 package clear.util;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -37,21 +40,109 @@ import java.util.Scanner;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+
 /**
  * Input/output utilities.
  * @author Jinho D. Choi
- * <b>Last update:</b> 6/30/2010
+ * <b>Last update:</b> 9/16/2011
  */
 public class IOUtil
 {
-	/** @return new BufferedReader(new InputStreamReader(new FileInputStream(filename), "UTF-8")) */
+	/** Extension of gzip files */
+	static public final String EXT_GZIP  = ".gz";
+	/** Extension of bzip2 files */
+	static public final String EXT_BZIP2 = ".bz2";
+	/** Extension of framed LZ4 files */
+	static public final String EXT_LZ4   = ".lz4";
+	
+	/** Size of buffers for file streams */
+	static private final int BUFFER_SIZE = 65536;
+	
+	/** Compression types detected by {@link IOUtil#getCompression(String)}. */
+	static private final byte COMP_NONE  = 0;
+	static private final byte COMP_GZIP  = 1;
+	static private final byte COMP_BZIP2 = 2;
+	static private final byte COMP_LZ4   = 3;
+	
+	/** @return the compression type of <code>filename</code> detected by its magic bytes. */
+	static private byte getCompression(String filename) throws IOException
+	{
+		FileInputStream fin = new FileInputStream(filename);
+		byte[] b = new byte[4];
+		int    n = 0, k;
+		
+		try
+		{
+			while (n < b.length && (k = fin.read(b, n, b.length - n)) >= 0)	n += k;
+		}
+		finally
+		{
+			fin.close();
+		}
+		
+		if (n >= 2 && (b[0] & 0xff) == 0x1f && (b[1] & 0xff) == 0x8b)
+			return COMP_GZIP;
+		if (n >= 3 && b[0] == 'B' && b[1] == 'Z' && b[2] == 'h')
+			return COMP_BZIP2;
+		if (n == 4 && b[0] == JLZ4OutputStream.MAGIC[0] && b[1] == JLZ4OutputStream.MAGIC[1] && b[2] == JLZ4OutputStream.MAGIC[2] && b[3] == JLZ4OutputStream.MAGIC[3])
+			return COMP_LZ4;
+		
+		return COMP_NONE;
+	}
+	
+	/** @return true if <code>filename</code> is compressed in gzip, bzip2, or framed LZ4. */
+	static public boolean isCompressed(String filename)
+	{
+		try
+		{
+			return getCompression(filename) != COMP_NONE;
+		}
+		catch (IOException e) {return false;}
+	}
+	
+	/**
+	 * Returns an input stream of <code>filename</code>.
+	 * Compressed files (gzip, bzip2, framed LZ4) are detected by their magic bytes and decompressed on a separate thread.
+	 */
+	static public InputStream createInputStream(String filename) throws IOException
+	{
+		InputStream in = new BufferedInputStream(new FileInputStream(filename), BUFFER_SIZE);
+		
+		switch (getCompression(filename))
+		{
+		case COMP_GZIP : return new JReadAheadInputStream(new GZIPInputStream(in, BUFFER_SIZE));
+		case COMP_BZIP2: return new JReadAheadInputStream(new BZip2CompressorInputStream(in));
+		case COMP_LZ4  : return new JReadAheadInputStream(new JLZ4InputStream(in));
+		}
+		
+		return in;
+	}
+	
+	/** Returns an output stream of <code>filename</code>, compressed by its extension (".gz", ".bz2", ".lz4"). */
+	static public OutputStream createOutputStream(String filename) throws IOException
+	{
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(filename), BUFFER_SIZE);
+		
+		if      (filename.endsWith(EXT_GZIP))	return new GZIPOutputStream(out, BUFFER_SIZE);
+		else if (filename.endsWith(EXT_BZIP2))	return new BZip2CompressorOutputStream(out);
+		else if (filename.endsWith(EXT_LZ4))	return new JLZ4OutputStream(out);
+		
+		return out;
+	}
+	
+	/**
+	 * @return new BufferedReader(new InputStreamReader({@link IOUtil#createInputStream(String)}, "UTF-8"))
+	 * Compressed files are decompressed transparently.
+	 */
 	static public BufferedReader createBufferedFileReader(String filename)
 	{
 		BufferedReader reader = null;
 		
 		try
 		{
-			reader = new BufferedReader(new InputStreamReader(new FileInputStream(filename), "UTF-8"));
+			reader = new BufferedReader(new InputStreamReader(createInputStream(filename), "UTF-8"));
 		}
 		catch (Exception e) {e.printStackTrace();}
 		
@@ -147,7 +238,10 @@ public class IOUtil
 		return map;
 	}
 	
-	/** @return new PrintStream(filename, "UTF-8") */
+	/**
+	 * @return new PrintStream({@link IOUtil#createOutputStream(String)}, false, "UTF-8")
+	 * Files ending with ".gz", ".bz2", or ".lz4" are compressed.
+	 */
 	static public PrintStream createPrintFileStream(String filename)
 	{
 		PrintStream fout = null;
@@ -155,7 +249,7 @@ public class IOUtil
 		try
 		{
 		//	fout = new PrintStream(filename, "UTF-8");
-			fout = new PrintStream(new BufferedOutputStream(new FileOutputStream(filename), 65536), false, "UTF-8");
+			fout = new PrintStream(createOutputStream(filename), false, "UTF-8");
 		}
 		catch (Exception e) {e.printStackTrace();}
 		
@@ -0,0 +1,199 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.util;
+
+import java.util.Arrays;
+
+/**
+ * LZ4 block compression.
+ * Blocks follow the LZ4 block format (literal/match sequences with 16-bit offsets);
+ * matches are found greedily using a hash table of 4-byte sequences.
+ * @see JLZ4OutputStream
+ * @see JLZ4InputStream
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/16/2011
+ */
+public class JLZ4
+{
+	/** Minimum length of a match */
+	static private final int MIN_MATCH     = 4;
+	/** The last match must start at least this many bytes before the end of a block */
+	static private final int MF_LIMIT      = 12;
+	/** The last bytes of a block are always literals */
+	static private final int LAST_LITERALS = 5;
+	/** Maximum distance of a match */
+	static private final int MAX_DISTANCE  = 65535;
+	static private final int HASH_LOG      = 16;
+	
+	/** @return the maximum size of a compressed block whose original size is <code>length</code>. */
+	static public int maxCompressedLength(int length)
+	{
+		return length + length / 255 + 16;
+	}
+	
+	/**
+	 * Compresses <code>src[0, length)</code> into <code>dst</code>.
+	 * @param table hash table of size 2^16, reused across calls
+	 * @return the size of the compressed block
+	 */
+	static public int compress(byte[] src, int length, byte[] dst, int[] table)
+	{
+		int i = 0, anchor = 0, dp = 0, limit = length - MF_LIMIT, ref, seq, h, matchLen;
+		Arrays.fill(table, -1);
+		
+		while (i < limit)
+		{
+			seq = readInt(src, i);
+			h   = hash(seq);
+			ref = table[h];
+			table[h] = i;
+			
+			if (ref < 0 || i - ref > MAX_DISTANCE || readInt(src, ref) != seq)
+			{
+				i++;
+				continue;
+			}
+			
+			for (matchLen = MIN_MATCH; i + matchLen < length - LAST_LITERALS && src[ref + matchLen] == src[i + matchLen]; matchLen++);
+			
+			dp = writeSequence(src, anchor, i - anchor, i - ref, matchLen, dst, dp);
+			i += matchLen;
+			anchor = i;
+		}
+		
+		return writeSequence(src, anchor, length - anchor, 0, 0, dst, dp);
+	}
+	
+	/**
+	 * Decompresses <code>src[0, length)</code> into <code>dst</code>.
+	 * @return the size of the decompressed block
+	 */
+	static public int decompress(byte[] src, int length, byte[] dst)
+	{
+		int sp = 0, dp = 0, token, literalLen, matchLen, offset, b;
+		
+		while (sp < length)
+		{
+			token = src[sp++] & 0xff;
+			
+			// literals
+			if ((literalLen = token >>> 4) == 15)
+			{
+				do	literalLen += (b = src[sp++] & 0xff);
+				while (b == 255);
+			}
+			
+			System.arraycopy(src, sp, dst, dp, literalLen);
+			sp += literalLen;
+			dp += literalLen;
+			
+			if (sp >= length)	break;
+			
+			// match
+			offset = (src[sp] & 0xff) | ((src[sp+1] & 0xff) << 8);
+			sp += 2;
+			
+			if ((matchLen = token & 0x0f) == 15)
+			{
+				do	matchLen += (b = src[sp++] & 0xff);
+				while (b == 255);
+			}
+			
+			matchLen += MIN_MATCH;
+			
+			if (offset >= matchLen)
+			{
+				System.arraycopy(dst, dp - offset, dst, dp, matchLen);
+				dp += matchLen;
+			}
+			else	// overlapping copy
+			{
+				for (; matchLen > 0; matchLen--, dp++)
+					dst[dp] = dst[dp - offset];
+			}
+		}
+		
+		return dp;
+	}
+	
+	/** Writes literals <code>src[anchor, anchor+literalLen)</code> followed by a match (if <code>matchLen</code> > 0). */
+	static private int writeSequence(byte[] src, int anchor, int literalLen, int offset, int matchLen, byte[] dst, int dp)
+	{
+		int tokenPos = dp++, token;
+		
+		// literals
+		if (literalLen >= 15)
+		{
+			token = 15 << 4;
+			dp = writeLength(literalLen - 15, dst, dp);
+		}
+		else
+			token = literalLen << 4;
+		
+		System.arraycopy(src, anchor, dst, dp, literalLen);
+		dp += literalLen;
+		
+		// match
+		if (matchLen > 0)
+		{
+			dst[dp++] = (byte)offset;
+			dst[dp++] = (byte)(offset >>> 8);
+			
+			if ((matchLen -= MIN_MATCH) >= 15)
+			{
+				token |= 15;
+				dp = writeLength(matchLen - 15, dst, dp);
+			}
+			else
+				token |= matchLen;
+		}
+		
+		dst[tokenPos] = (byte)token;
+		return dp;
+	}
+	
+	static private int writeLength(int length, byte[] dst, int dp)
+	{
+		for (; length >= 255; length -= 255)
+			dst[dp++] = (byte)255;
+		
+		dst[dp++] = (byte)length;
+		return dp;
+	}
+	
+	static private int readInt(byte[] b, int i)
+	{
+		return (b[i] & 0xff) | ((b[i+1] & 0xff) << 8) | ((b[i+2] & 0xff) << 16) | ((b[i+3] & 0xff) << 24);
+	}
+	
+	static private int hash(int seq)
+	{
+		return (seq * -1640531535) >>> (32 - HASH_LOG);
+	}
+	
+	static public int[] createTable()
+	{
+		return new int[1 << HASH_LOG];
+	}
+}
@@ -0,0 +1,121 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.util;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream decompressing data written by {@link JLZ4OutputStream}.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/16/2011
+ */
+public class JLZ4InputStream extends InputStream
+{
+	private DataInputStream f_in;
+	private byte[] a_block;
+	private byte[] a_compressed;
+	/** Number of bytes in the current block */
+	private int    n_block;
+	/** Position in the current block */
+	private int    i_block;
+	private boolean b_eof;
+	
+	public JLZ4InputStream(InputStream in) throws IOException
+	{
+		f_in         = new DataInputStream(in);
+		a_block      = new byte[0];
+		a_compressed = new byte[0];
+		n_block      = 0;
+		i_block      = 0;
+		b_eof        = false;
+		
+		byte[] magic = new byte[JLZ4OutputStream.MAGIC.length];
+		f_in.readFully(magic);
+		
+		for (int i=0; i<magic.length; i++)
+			if (magic[i] != JLZ4OutputStream.MAGIC[i])	throw new IOException("Not in the framed LZ4 format");
+	}
+	
+	/** @return false if there is no more block. */
+	private boolean readBlock() throws IOException
+	{
+		if (b_eof)	return false;
+		int rawLength = f_in.readInt();
+		
+		if (rawLength == 0)
+		{
+			b_eof = true;
+			return false;
+		}
+		
+		int length = f_in.readInt();
+		if (a_block.length < rawLength)	a_block = new byte[rawLength];
+		
+		if ((length & JLZ4OutputStream.FLAG_STORED) != 0)
+			f_in.readFully(a_block, 0, rawLength);
+		else
+		{
+			if (a_compressed.length < length)	a_compressed = new byte[length];
+			f_in.readFully(a_compressed, 0, length);
+			
+			if (JLZ4.decompress(a_compressed, length, a_block) != rawLength)
+				throw new IOException("Corrupted LZ4 block");
+		}
+		
+		n_block = rawLength;
+		i_block = 0;
+		
+		return true;
+	}
+	
+	public int read() throws IOException
+	{
+		if (i_block == n_block && !readBlock())	return -1;
+		return a_block[i_block++] & 0xff;
+	}
+	
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (len == 0)	return 0;
+		if (i_block == n_block && !readBlock())	return -1;
+		
+		int n = Math.min(len, n_block - i_block);
+		System.arraycopy(a_block, i_block, b, off, n);
+		i_block += n;
+		
+		return n;
+	}
+	
+	public int available()
+	{
+		return n_block - i_block;
+	}
+	
+	public void close() throws IOException
+	{
+		f_in.close();
+	}
+}
@@ -0,0 +1,124 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream compressing data in framed LZ4 blocks.
+ * A frame begins with {@link JLZ4OutputStream#MAGIC}, followed by blocks of
+ * <code>[raw length][stored length][data]</code> and ends with a block whose raw length is 0.
+ * Blocks that do not shrink are stored uncompressed, indicated by the highest bit of the stored length.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/16/2011
+ */
+public class JLZ4OutputStream extends OutputStream
+{
+	/** Magic bytes of a framed LZ4 stream ("CLZ4") */
+	static public final byte[] MAGIC = {'C', 'L', 'Z', '4'};
+	/** Flag for blocks stored uncompressed */
+	static public final int    FLAG_STORED = 0x80000000;
+	/** Default size of a block */
+	static public final int    BLOCK_SIZE  = 1 << 20;
+	
+	private DataOutputStream f_out;
+	private byte[] a_block;
+	private byte[] a_compressed;
+	private int[]  a_table;
+	private int    n_block;
+	
+	public JLZ4OutputStream(OutputStream out) throws IOException
+	{
+		this(out, BLOCK_SIZE);
+	}
+	
+	public JLZ4OutputStream(OutputStream out, int blockSize) throws IOException
+	{
+		f_out        = new DataOutputStream(out);
+		a_block      = new byte[blockSize];
+		a_compressed = new byte[JLZ4.maxCompressedLength(blockSize)];
+		a_table      = JLZ4.createTable();
+		n_block      = 0;
+		
+		f_out.write(MAGIC);
+	}
+	
+	public void write(int b) throws IOException
+	{
+		if (n_block == a_block.length)	writeBlock();
+		a_block[n_block++] = (byte)b;
+	}
+	
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		int n;
+		
+		while (len > 0)
+		{
+			if (n_block == a_block.length)	writeBlock();
+			
+			n = Math.min(len, a_block.length - n_block);
+			System.arraycopy(b, off, a_block, n_block, n);
+			n_block += n;
+			off     += n;
+			len     -= n;
+		}
+	}
+	
+	private void writeBlock() throws IOException
+	{
+		if (n_block == 0)	return;
+		int size = JLZ4.compress(a_block, n_block, a_compressed, a_table);
+		
+		f_out.writeInt(n_block);
+		
+		if (size < n_block)
+		{
+			f_out.writeInt(size);
+			f_out.write(a_compressed, 0, size);
+		}
+		else
+		{
+			f_out.writeInt(n_block | FLAG_STORED);
+			f_out.write(a_block, 0, n_block);
+		}
+		
+		n_block = 0;
+	}
+	
+	public void flush() throws IOException
+	{
+		writeBlock();
+		f_out.flush();
+	}
+	
+	public void close() throws IOException
+	{
+		writeBlock();
+		f_out.writeInt(0);
+		f_out.close();
+	}
+}
@@ -0,0 +1,152 @@
+/**
+* Copyright (c) 2011, Regents of the University of Colorado
+* All rights reserved.
+*
+* Redistribution and use in source and binary forms, with or without
+* modification, are permitted provided that the following conditions are met:
+*
+* Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+* Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+* Neither the name of the University of Colorado at Boulder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+*
+* THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+* AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+* IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+* ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+* LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+* CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+* SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+* INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+* CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+* ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+* POSSIBILITY OF SUCH DAMAGE.
+*/
+package clear.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Input stream that reads ahead from another stream on a background thread.
+ * Used to run decompression concurrently with parsing.
+ * @author Jinho D. Choi
+ * <b>Last update:</b> 9/16/2011
+ */
+public class JReadAheadInputStream extends InputStream
+{
+	/** Size of each chunk read ahead */
+	static private final int CHUNK_SIZE = 1 << 16;
+	/** Maximum number of chunks read ahead */
+	static private final int QUEUE_SIZE = 16;
+	/** Marks the end of the stream */
+	static private final byte[] EOS = new byte[0];
+	
+	private InputStream           f_in;
+	private BlockingQueue<byte[]> q_chunks;
+	private Thread                t_reader;
+	volatile private IOException  e_read;
+	
+	private byte[] a_chunk;
+	private int    n_chunk;
+	private int    i_chunk;
+	
+	public JReadAheadInputStream(InputStream in)
+	{
+		f_in     = in;
+		q_chunks = new ArrayBlockingQueue<byte[]>(QUEUE_SIZE);
+		a_chunk  = null;
+		t_reader = new Thread(new Reader(), "JReadAheadInputStream");
+		t_reader.setDaemon(true);
+		t_reader.start();
+	}
+	
+	/** @return false if there is no more chunk. */
+	private boolean nextChunk() throws IOException
+	{
+		if (a_chunk == EOS)	return false;
+		
+		try
+		{
+			a_chunk = q_chunks.take();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading ahead");
+		}
+		
+		if (a_chunk == EOS)
+		{
+			if (e_read != null)	throw e_read;
+			return false;
+		}
+		
+		n_chunk = a_chunk.length;
+		i_chunk = 0;
+		
+		return true;
+	}
+	
+	public int read() throws IOException
+	{
+		if ((a_chunk == null || i_chunk == n_chunk) && !nextChunk())	return -1;
+		return a_chunk[i_chunk++] & 0xff;
+	}
+	
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (len == 0)	return 0;
+		if ((a_chunk == null || i_chunk == n_chunk) && !nextChunk())	return -1;
+		
+		int n = Math.min(len, n_chunk - i_chunk);
+		System.arraycopy(a_chunk, i_chunk, b, off, n);
+		i_chunk += n;
+		
+		return n;
+	}
+	
+	public void close() throws IOException
+	{
+		t_reader.interrupt();
+		f_in.close();
+	}
+	
+	private class Reader implements Runnable
+	{
+		public void run()
+		{
+			byte[] chunk;
+			int n, len;
+			
+			try
+			{
+				try
+				{
+					while (true)
+					{
+						chunk = new byte[CHUNK_SIZE];
+						
+						for (len=0; len < CHUNK_SIZE && (n = f_in.read(chunk, len, CHUNK_SIZE - len)) >= 0; len += n);
+						if (len == 0)	break;
+						
+						if (len < CHUNK_SIZE)
+						{
+							byte[] tmp = new byte[len];
+							System.arraycopy(chunk, 0, tmp, 0, len);
+							chunk = tmp;
+						}
+						
+						q_chunks.put(chunk);
+						if (len < CHUNK_SIZE)	break;
+					}
+				}
+				catch (IOException e) {e_read = e;}
+				
+				q_chunks.put(EOS);
+			}
+			catch (InterruptedException e) {}
+		}
+	}
+}